@@ -0,0 +1,193 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.charset;
+
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * Encodes characters one at a time straight into a byte buffer as UTF-8,
+ * ISO-8859-1 or US-ASCII, for writers that do their own buffering (such as
+ * {@link com.evanmclean.evlib.io.UTF8BufferedWriter}). Surrogate pairs split
+ * across separate calls are handled correctly.
+ * </p>
+ * 
+ * <p>
+ * Characters that cannot be encoded in the character set (and unpaired
+ * surrogates) are written as a <code>'?'</code>, with a surrogate pair that
+ * cannot be encoded written as a single <code>'?'</code>. Not thread-safe.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class ByteEncoder
+{
+  /**
+   * The most bytes that {@link #encode(char, byte[], int)} writes for a single
+   * character.
+   */
+  public static final int MAX_BYTES = 4;
+
+  private final boolean utf8;
+  // The highest character that can be encoded.
+  private final char max;
+  private char highSurrogate;
+
+  /**
+   * Create an encoder for the character set.
+   * 
+   * @param charset
+   *        One of {@link Charsets#UTF8}, {@link Charsets#ISO88591} or
+   *        {@link Charsets#USASCII}.
+   */
+  public ByteEncoder( final Charset charset )
+  {
+    if ( Charsets.UTF8.equals(charset) )
+      this.max = Character.MAX_VALUE;
+    else if ( Charsets.ISO88591.equals(charset) )
+      this.max = 0xff;
+    else if ( Charsets.USASCII.equals(charset) )
+      this.max = 0x7f;
+    else
+      throw new IllegalArgumentException("Unsupported character set: "
+          + charset);
+    this.utf8 = (max == Character.MAX_VALUE);
+  }
+
+  /**
+   * Encode a single character into the buffer (taking into account any
+   * pending high surrogate).
+   * 
+   * @param ch
+   *        The character to encode.
+   * @param buff
+   *        The buffer to encode into, which must have room for at least
+   *        {@link #MAX_BYTES} bytes.
+   * @param pos
+   *        Where to start writing in the buffer.
+   * @return The position after the last byte written.
+   */
+  public int encode( final char ch, final byte[] buff, final int pos )
+  {
+    int ps = pos;
+    if ( !utf8 )
+    {
+      // A surrogate pair is a single character, so only one '?'.
+      final boolean low = (highSurrogate != 0)
+          && Character.isLowSurrogate(ch);
+      highSurrogate = Character.isHighSurrogate(ch) ? ch : 0;
+      if ( !low )
+        buff[ps++] = (ch <= max) ? (byte) ch : (byte) '?';
+      return ps;
+    }
+
+    if ( highSurrogate != 0 )
+    {
+      final char high = highSurrogate;
+      highSurrogate = 0;
+      if ( Character.isLowSurrogate(ch) )
+      {
+        final int cp = Character.toCodePoint(high, ch);
+        buff[ps++] = (byte) (0xf0 | (cp >> 18));
+        buff[ps++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+        buff[ps++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+        buff[ps++] = (byte) (0x80 | (cp & 0x3f));
+        return ps;
+      }
+      buff[ps++] = (byte) '?';
+    }
+
+    if ( ch < 0x80 )
+    {
+      buff[ps++] = (byte) ch;
+    }
+    else if ( ch < 0x800 )
+    {
+      buff[ps++] = (byte) (0xc0 | (ch >> 6));
+      buff[ps++] = (byte) (0x80 | (ch & 0x3f));
+    }
+    else if ( Character.isHighSurrogate(ch) )
+    {
+      highSurrogate = ch;
+    }
+    else if ( Character.isLowSurrogate(ch) )
+    {
+      buff[ps++] = (byte) '?';
+    }
+    else
+    {
+      buff[ps++] = (byte) (0xe0 | (ch >> 12));
+      buff[ps++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+      buff[ps++] = (byte) (0x80 | (ch & 0x3f));
+    }
+    return ps;
+  }
+
+  /**
+   * Writes anything still pending (the <code>'?'</code> for a UTF-8 high
+   * surrogate that never got its other half) and resets the encoder.
+   * 
+   * @param buff
+   *        The buffer to encode into, which must have room for at least one
+   *        byte.
+   * @param pos
+   *        Where to start writing in the buffer.
+   * @return The position after the last byte written.
+   */
+  public int finish( final byte[] buff, final int pos )
+  {
+    // Anything other than UTF-8 has already written the '?'.
+    final boolean dangling = utf8 && (highSurrogate != 0);
+    highSurrogate = 0;
+    if ( !dangling )
+      return pos;
+    buff[pos] = (byte) '?';
+    return pos + 1;
+  }
+
+  /**
+   * Is the encoder part way through a surrogate pair? While it is, every
+   * character must go through {@link #encode(char, byte[], int)}, otherwise
+   * ASCII characters can be copied straight into the buffer.
+   * 
+   * @return True if part way through a surrogate pair.
+   */
+  public boolean isPending()
+  {
+    return highSurrogate != 0;
+  }
+}
@@ -74,7 +74,7 @@ public final class Charsets
     USASCII = Charset.forName("US-ASCII");
     USASCII_NAME = USASCII.name();
     ISO88591 = Charset.forName("ISO-8859-1");
-    ISO88591_NAME = USASCII.name();
+    ISO88591_NAME = ISO88591.name();
     ISOLATIN1 = ISO88591;
     ISOLATIN1_NAME = ISOLATIN1.name();
     UTF8 = Charset.forName("UTF-8");
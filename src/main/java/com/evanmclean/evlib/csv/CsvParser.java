@@ -0,0 +1,567 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * Parses comma separated (CSV) text a row at a time, returning each field as a
+ * {@link CharSequence} view of the parser's buffer rather than a new string.
+ * </p>
+ * 
+ * <p>
+ * Fields may be quoted with double-quotes, in which case they can contain the
+ * separator, new lines and (doubled) double-quotes. Rows end with a CR, LF or
+ * CR/LF. Only fields containing a doubled double-quote are copied (to remove
+ * the extra quotes); all others are views straight onto the input. The views
+ * returned by {@link #getField(int)} are only valid until the next call to
+ * {@link #next()}, so use {@link #getString(int)} to keep a value.
+ * </p>
+ * 
+ * <p>
+ * The parser can work directly on a character array (e.g., an entire file
+ * already in memory, or a memory mapped file decoded into a
+ * <code>CharBuffer</code>), or read from a {@link Reader} through its own
+ * buffer (which grows if a single row does not fit). A large array can be
+ * parsed in parallel by {@link #split(char[], int, int, int) splitting} it into
+ * chunks of whole rows, and parsing each chunk with its own parser.
+ * </p>
+ * 
+ * <pre>
+ * final CsvParser csv = new CsvParser(rdr);
+ * while ( csv.next() )
+ * {
+ *   final long id = Long.parseLong(csv.getString(0));
+ *   final CharSequence name = csv.getField(1);
+ *   ...
+ * }
+ * csv.close();
+ * </pre>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CsvParser implements Closeable
+{
+  /**
+   * The default size of the buffer when reading from a reader (65536).
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+  // Returned by parseRow() when it runs out of buffer part way through a row.
+  private static final int MORE = -1;
+
+  private final Reader in;
+  private char[] buff;
+  private int pos;
+  private int lim;
+  private boolean eof;
+  private char separator = ',';
+  private long row;
+
+  // The fields of the current row, as offsets into the buffer, or into the
+  // scratch buffer for fields that had to be copied.
+  private int count;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private boolean[] copied = new boolean[16];
+  private Field[] fields = new Field[0];
+  private char[] scratch = new char[256];
+  private int scratchLen;
+
+  /**
+   * Parses part of a character array in place. The array must not be changed
+   * while it is being parsed.
+   * 
+   * @param buf
+   *        The characters to parse.
+   * @param off
+   *        The offset of the first character.
+   * @param len
+   *        The number of characters.
+   */
+  public CsvParser( final char[] buf, final int off, final int len )
+  {
+    if ( (off < 0) || (len < 0) || (off > (buf.length - len)) )
+      throw new IndexOutOfBoundsException();
+    this.in = null;
+    this.buff = buf;
+    this.pos = off;
+    this.lim = off + len;
+    this.eof = true;
+  }
+
+  /**
+   * Parses the text from a reader, with the default buffer size.
+   * 
+   * @param in
+   *        The reader.
+   */
+  public CsvParser( final Reader in )
+  {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Parses the text from a reader.
+   * 
+   * @param in
+   *        The reader.
+   * @param buffer_size
+   *        The initial size of the buffer.
+   */
+  public CsvParser( final Reader in, final int buffer_size )
+  {
+    if ( in == null )
+      throw new NullPointerException();
+    if ( buffer_size < 1 )
+      throw new IllegalArgumentException("Buffer size too small: "
+          + buffer_size);
+    this.in = in;
+    this.buff = new char[buffer_size];
+  }
+
+  /**
+   * Splits part of a character array into chunks of whole rows, which can
+   * then be parsed in parallel, each with its own parser. Finding the row
+   * boundaries is a quick pass through the array counting quotes, so it
+   * assumes double-quotes only appear in quoted fields (as written by
+   * {@link CsvWriter}).
+   * 
+   * @param buf
+   *        The characters to split.
+   * @param off
+   *        The offset of the first character.
+   * @param len
+   *        The number of characters.
+   * @param chunks
+   *        The number of chunks wanted.
+   * @return The offsets of the chunk boundaries, starting with
+   *         <code>off</code> and ending with <code>off + len</code>. Chunk
+   *         <code>i</code> is from <code>bounds[i]</code> up to
+   *         <code>bounds[i + 1]</code>. There may be fewer chunks than asked
+   *         for if the rows are long.
+   */
+  public static int[] split( final char[] buf, final int off, final int len,
+      final int chunks )
+  {
+    if ( (off < 0) || (len < 0) || (off > (buf.length - len)) )
+      throw new IndexOutOfBoundsException();
+    if ( chunks < 1 )
+      throw new IllegalArgumentException("Need at least one chunk: " + chunks);
+    final int end = off + len;
+    final int[] bounds = new int[chunks + 1];
+    bounds[0] = off;
+    int num = 1;
+    boolean quoted = false;
+    for ( int xi = off; (xi < end) && (num < chunks); ++xi )
+    {
+      final char ch = buf[xi];
+      if ( ch == '"' )
+      {
+        quoted = !quoted;
+      }
+      else if ( (ch == '\n') && !quoted )
+      {
+        final int target = off + (int) (((long) len * num) / chunks);
+        if ( (xi + 1) >= target )
+          bounds[num++] = xi + 1;
+      }
+    }
+    if ( bounds[num - 1] < end )
+      bounds[num++] = end;
+    if ( num == bounds.length )
+      return bounds;
+    final int[] ret = new int[num];
+    System.arraycopy(bounds, 0, ret, 0, num);
+    return ret;
+  }
+
+  /**
+   * Closes the underlying reader (if there is one).
+   */
+  public void close() throws IOException
+  {
+    if ( in != null )
+      in.close();
+  }
+
+  /**
+   * Returns a field of the current row as a view onto the parser's buffer,
+   * which is only valid until the next call to {@link #next()}.
+   * 
+   * @param idx
+   *        The index of the field (from zero).
+   * @return The field.
+   */
+  public CharSequence getField( final int idx )
+  {
+    if ( (idx < 0) || (idx >= count) )
+      throw new IndexOutOfBoundsException("Field " + idx + " of " + count);
+    return fields[idx];
+  }
+
+  /**
+   * The number of fields in the current row.
+   * 
+   * @return The number of fields in the current row.
+   */
+  public int getFieldCount()
+  {
+    return count;
+  }
+
+  /**
+   * The number of the current row, starting from one (zero before the first
+   * call to {@link #next()}).
+   * 
+   * @return The number of the current row.
+   */
+  public long getRow()
+  {
+    return row;
+  }
+
+  /**
+   * The character between fields. Defaults to a comma.
+   * 
+   * @return The separator.
+   */
+  public char getSeparator()
+  {
+    return separator;
+  }
+
+  /**
+   * Returns a field of the current row as a string.
+   * 
+   * @param idx
+   *        The index of the field (from zero).
+   * @return The field.
+   */
+  public String getString( final int idx )
+  {
+    return getField(idx).toString();
+  }
+
+  /**
+   * Moves on to the next row.
+   * 
+   * @return True if there was another row, false at the end of the input.
+   * @throws IOException
+   */
+  public boolean next() throws IOException
+  {
+    while ( true )
+    {
+      if ( (pos >= lim) && eof )
+      {
+        count = 0;
+        return false;
+      }
+      if ( pos < lim )
+      {
+        final int next = parseRow();
+        if ( next != MORE )
+        {
+          pos = next;
+          ++row;
+          makeFields();
+          return true;
+        }
+      }
+      fill();
+    }
+  }
+
+  /**
+   * Sets the character between fields.
+   * 
+   * @param separator
+   *        The separator.
+   */
+  public void setSeparator( final char separator )
+  {
+    if ( (separator == '"') || (separator == '\r') || (separator == '\n') )
+      throw new IllegalArgumentException("Invalid separator: " + separator);
+    this.separator = separator;
+  }
+
+  private void addField( final int start, final int end, final boolean copy )
+  {
+    if ( count >= starts.length )
+    {
+      final int size = starts.length * 2;
+      final int[] new_starts = new int[size];
+      final int[] new_ends = new int[size];
+      final boolean[] new_copied = new boolean[size];
+      System.arraycopy(starts, 0, new_starts, 0, count);
+      System.arraycopy(ends, 0, new_ends, 0, count);
+      System.arraycopy(copied, 0, new_copied, 0, count);
+      starts = new_starts;
+      ends = new_ends;
+      copied = new_copied;
+    }
+    starts[count] = start;
+    ends[count] = end;
+    copied[count] = copy;
+    ++count;
+  }
+
+  /**
+   * Moves the unparsed part of the buffer to the start (growing the buffer if
+   * it is already there), and reads more after it.
+   */
+  private void fill() throws IOException
+  {
+    if ( pos > 0 )
+    {
+      System.arraycopy(buff, pos, buff, 0, lim - pos);
+      lim -= pos;
+      pos = 0;
+    }
+    else if ( lim >= buff.length )
+    {
+      final char[] bigger = new char[buff.length * 2];
+      System.arraycopy(buff, 0, bigger, 0, lim);
+      buff = bigger;
+    }
+    final int num = in.read(buff, lim, buff.length - lim);
+    if ( num < 0 )
+      eof = true;
+    else
+      lim += num;
+  }
+
+  private void makeFields()
+  {
+    if ( fields.length < count )
+    {
+      final Field[] bigger = new Field[starts.length];
+      System.arraycopy(fields, 0, bigger, 0, fields.length);
+      for ( int xi = fields.length; xi < bigger.length; ++xi )
+        bigger[xi] = new Field();
+      fields = bigger;
+    }
+    for ( int xi = 0; xi < count; ++xi )
+    {
+      final Field field = fields[xi];
+      field.arr = copied[xi] ? scratch : buff;
+      field.off = starts[xi];
+      field.len = ends[xi] - starts[xi];
+    }
+  }
+
+  /**
+   * Parses the row starting at the current position.
+   * 
+   * @return The position after the row, or {@link #MORE} if the row is not
+   *         all in the buffer yet.
+   */
+  private int parseRow()
+  {
+    final char[] bf = buff;
+    final int end = lim;
+    final char sep = separator;
+    count = 0;
+    scratchLen = 0;
+    int xi = pos;
+    while ( true )
+    {
+      if ( (xi < end) && (bf[xi] == '"') )
+      {
+        xi = parseQuoted(xi + 1);
+        if ( xi == MORE )
+          return MORE;
+      }
+      else
+      {
+        final int start = xi;
+        while ( (xi < end) && (bf[xi] != sep) && (bf[xi] != '\r')
+            && (bf[xi] != '\n') )
+          ++xi;
+        if ( (xi >= end) && !eof )
+          return MORE;
+        addField(start, xi, false);
+      }
+
+      if ( xi >= end )
+        return xi;
+      final char ch = bf[xi++];
+      if ( ch == '\n' )
+        return xi;
+      if ( ch == '\r' )
+      {
+        if ( xi < end )
+          return (bf[xi] == '\n') ? (xi + 1) : xi;
+        return eof ? xi : MORE;
+      }
+      // Otherwise it was the separator, so on to the next field.
+    }
+  }
+
+  /**
+   * Parses a quoted field (from just after the opening quote), adding it to
+   * the fields.
+   * 
+   * @return The position after the field, or {@link #MORE}.
+   */
+  private int parseQuoted( final int start )
+  {
+    final char[] bf = buff;
+    final int end = lim;
+    final char sep = separator;
+    int xi = start;
+    // Until there is a doubled quote we just note where the field is.
+    int run = start;
+    int copyFrom = -1;
+    while ( true )
+    {
+      if ( xi >= end )
+      {
+        if ( !eof )
+          return MORE;
+        break; // Missing the closing quote, so take everything.
+      }
+      if ( bf[xi] != '"' )
+      {
+        ++xi;
+        continue;
+      }
+      if ( ((xi + 1) >= end) && !eof )
+        return MORE;
+      if ( ((xi + 1) < end) && (bf[xi + 1] == '"') )
+      {
+        // A doubled quote, so copy up to and including the first one.
+        if ( copyFrom < 0 )
+          copyFrom = scratchLen;
+        copy(bf, run, xi + 1);
+        xi += 2;
+        run = xi;
+        continue;
+      }
+      break;
+    }
+
+    final int close = Math.min(xi, end);
+    xi = close + ((close < end) ? 1 : 0);
+    // Anything between the closing quote and the separator is kept as well.
+    final int after = xi;
+    while ( (xi < end) && (bf[xi] != sep) && (bf[xi] != '\r')
+        && (bf[xi] != '\n') )
+      ++xi;
+    if ( (xi >= end) && !eof )
+      return MORE;
+
+    if ( (copyFrom < 0) && (after == xi) )
+    {
+      addField(start, close, false);
+    }
+    else
+    {
+      if ( copyFrom < 0 )
+        copyFrom = scratchLen;
+      copy(bf, run, close);
+      copy(bf, after, xi);
+      addField(copyFrom, scratchLen, true);
+    }
+    return xi;
+  }
+
+  private void copy( final char[] src, final int start, final int end )
+  {
+    final int len = end - start;
+    if ( (scratchLen + len) > scratch.length )
+    {
+      final char[] bigger = new char[Math.max(scratch.length * 2, scratchLen
+          + len)];
+      System.arraycopy(scratch, 0, bigger, 0, scratchLen);
+      scratch = bigger;
+    }
+    System.arraycopy(src, start, scratch, scratchLen, len);
+    scratchLen += len;
+  }
+
+  /**
+   * A view onto part of one of the parser's buffers.
+   */
+  private static final class Field implements CharSequence
+  {
+    char[] arr;
+    int off;
+    int len;
+
+    Field()
+    {
+      // empty
+    }
+
+    Field( final char[] arr, final int off, final int len )
+    {
+      this.arr = arr;
+      this.off = off;
+      this.len = len;
+    }
+
+    public char charAt( final int index )
+    {
+      if ( (index < 0) || (index >= len) )
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      return arr[off + index];
+    }
+
+    public int length()
+    {
+      return len;
+    }
+
+    public CharSequence subSequence( final int start, final int end )
+    {
+      if ( (start < 0) || (start > end) || (end > len) )
+        throw new IndexOutOfBoundsException();
+      return new Field(arr, off + start, end - start);
+    }
+
+    @Override
+    public String toString()
+    {
+      return new String(arr, off, len);
+    }
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.csv;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+import com.evanmclean.evlib.io.UTF8BufferedWriter;
+
+/**
+ * <p>
+ * Writes comma separated (CSV) rows, a field at a time, straight to the
+ * underlying writer without building a string for each field or row.
+ * </p>
+ * 
+ * <p>
+ * A field is quoted if it contains a comma, the separator, a double-quote
+ * (which is written as two double-quotes), white space or any character
+ * outside the printable ASCII range. The same as
+ * {@link com.evanmclean.evlib.escape.Esc#csv}. The underlying writer should be
+ * buffered. Like most writers, this is not thread-safe.
+ * </p>
+ * 
+ * <pre>
+ * final CsvWriter csv = new CsvWriter(out);
+ * csv.row(&quot;id&quot;, &quot;name&quot;);
+ * for ( Person person : people )
+ * {
+ *   csv.field(person.getId());
+ *   csv.field(person.getName());
+ *   csv.endRow();
+ * }
+ * csv.close();
+ * </pre>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CsvWriter implements Closeable, Flushable
+{
+  /**
+   * The default line separator (&quot;\r\n&quot;), as per RFC 4180.
+   */
+  public static final String DEFAULT_LINE_SEPARATOR = "\r\n";
+
+  private final Writer out;
+  private final char[] digits = new char[20];
+  private char separator = ',';
+  private String lineSeparator = DEFAULT_LINE_SEPARATOR;
+  private boolean inRow;
+
+  /**
+   * Writes UTF-8 encoded CSV to an output stream (with its own buffer).
+   * 
+   * @param out
+   *        The output stream to write to.
+   */
+  public CsvWriter( final OutputStream out )
+  {
+    this(new UTF8BufferedWriter(out));
+  }
+
+  /**
+   * Writes CSV to a writer.
+   * 
+   * @param out
+   *        The writer to write to, which should be buffered.
+   */
+  public CsvWriter( final Writer out )
+  {
+    if ( out == null )
+      throw new NullPointerException();
+    this.out = out;
+  }
+
+  /**
+   * Closes the underlying writer. Does not end a partly written row.
+   */
+  public void close() throws IOException
+  {
+    out.close();
+  }
+
+  /**
+   * Ends the current row.
+   * 
+   * @throws IOException
+   */
+  public void endRow() throws IOException
+  {
+    out.write(lineSeparator);
+    inRow = false;
+  }
+
+  /**
+   * Writes a field from part of a character array.
+   * 
+   * @param buf
+   *        The characters.
+   * @param off
+   *        The offset of the first character.
+   * @param len
+   *        The number of characters.
+   * @throws IOException
+   */
+  public void field( final char[] buf, final int off, final int len )
+    throws IOException
+  {
+    field(CharBuffer.wrap(buf, off, len), 0, len);
+  }
+
+  /**
+   * Writes a field from part of a character sequence.
+   * 
+   * @param str
+   *        The characters.
+   * @param start
+   *        The index of the first character.
+   * @param end
+   *        The index after the last character.
+   * @throws IOException
+   */
+  public void field( final CharSequence str, final int start, final int end )
+    throws IOException
+  {
+    separate();
+    writeField(out, str, start, end, separator);
+  }
+
+  /**
+   * Writes a number as a field.
+   * 
+   * @param val
+   *        The number.
+   * @throws IOException
+   */
+  public void field( final long val ) throws IOException
+  {
+    separate();
+    if ( val == Long.MIN_VALUE )
+    {
+      out.write(Long.toString(val));
+      return;
+    }
+    final char[] buf = digits;
+    int pos = buf.length;
+    long num = (val < 0) ? -val : val;
+    do
+    {
+      buf[--pos] = (char) ('0' + (num % 10));
+      num /= 10;
+    }
+    while ( num > 0 );
+    if ( val < 0 )
+      buf[--pos] = '-';
+    out.write(buf, pos, buf.length - pos);
+  }
+
+  /**
+   * Writes an object as a field. A <code>null</code> is written as an empty
+   * field, whole numbers are written directly, and anything else as its
+   * string value.
+   * 
+   * @param obj
+   *        The object.
+   * @throws IOException
+   */
+  public void field( final Object obj ) throws IOException
+  {
+    if ( obj == null )
+    {
+      separate();
+    }
+    else if ( (obj instanceof Integer) || (obj instanceof Long)
+        || (obj instanceof Short) || (obj instanceof Byte) )
+    {
+      field(((Number) obj).longValue());
+    }
+    else
+    {
+      final CharSequence str = (obj instanceof CharSequence) ? (CharSequence) obj
+          : String.valueOf(obj);
+      field(str, 0, str.length());
+    }
+  }
+
+  public void flush() throws IOException
+  {
+    out.flush();
+  }
+
+  /**
+   * The string written at the end of each row. Defaults to
+   * {@link #DEFAULT_LINE_SEPARATOR}.
+   * 
+   * @return The line separator.
+   */
+  public String getLineSeparator()
+  {
+    return lineSeparator;
+  }
+
+  /**
+   * The character written between fields. Defaults to a comma.
+   * 
+   * @return The separator.
+   */
+  public char getSeparator()
+  {
+    return separator;
+  }
+
+  /**
+   * Writes a whole row.
+   * 
+   * @param fields
+   *        The fields (see {@link #field(Object)}).
+   * @throws IOException
+   */
+  public void row( final Object... fields ) throws IOException
+  {
+    for ( final Object field : fields )
+      field(field);
+    endRow();
+  }
+
+  /**
+   * Sets the string written at the end of each row.
+   * 
+   * @param line_separator
+   *        The line separator.
+   */
+  public void setLineSeparator( final String line_separator )
+  {
+    if ( line_separator == null )
+      throw new NullPointerException();
+    this.lineSeparator = line_separator;
+  }
+
+  /**
+   * Sets the character written between fields.
+   * 
+   * @param separator
+   *        The separator.
+   */
+  public void setSeparator( final char separator )
+  {
+    if ( separator == '"' )
+      throw new IllegalArgumentException("Cannot use a quote as a separator.");
+    this.separator = separator;
+  }
+
+  /**
+   * Writes part of a character sequence to a writer as a single CSV field,
+   * quoting it if necessary (see {@link CsvWriter}), without creating any
+   * intermediate strings. Nothing is written before or after the field. For
+   * classes such as {@link com.evanmclean.evlib.sql.RsCsv} that write their
+   * own separators and line endings.
+   * 
+   * @param out
+   *        The writer to write to.
+   * @param str
+   *        The characters.
+   * @param start
+   *        The index of the first character.
+   * @param end
+   *        The index after the last character.
+   * @param separator
+   *        The separator character being used, which also causes the field to
+   *        be quoted.
+   * @throws IOException
+   */
+  public static void writeField( final Writer out, final CharSequence str,
+      final int start, final int end, final char separator )
+    throws IOException
+  {
+    int pos = start;
+    while ( (pos < end) && !special(str.charAt(pos), separator) )
+      ++pos;
+    if ( pos >= end )
+    {
+      write(out, str, start, end);
+      return;
+    }
+
+    out.write('"');
+    int run = start;
+    for ( /* empty */; pos < end; ++pos )
+      if ( str.charAt(pos) == '"' )
+      {
+        // Write up to and including the quote, which will then be written
+        // again as the start of the next run.
+        write(out, str, run, pos + 1);
+        run = pos;
+      }
+    write(out, str, run, end);
+    out.write('"');
+  }
+
+  private void separate() throws IOException
+  {
+    if ( inRow )
+      out.write(separator);
+    else
+      inRow = true;
+  }
+
+  private static boolean special( final char ch, final char separator )
+  {
+    return (ch <= ' ') || (ch > '~') || (ch == '"') || (ch == ',')
+        || (ch == separator) || Character.isWhitespace(ch);
+  }
+
+  private static void write( final Writer out, final CharSequence str,
+      final int start, final int end ) throws IOException
+  {
+    if ( start >= end )
+      return;
+    if ( str instanceof String )
+    {
+      out.write((String) str, start, end - start);
+    }
+    else if ( (str instanceof CharBuffer) && ((CharBuffer) str).hasArray() )
+    {
+      final CharBuffer cb = (CharBuffer) str;
+      out.write(cb.array(), cb.arrayOffset() + cb.position() + start, end
+          - start);
+    }
+    else
+    {
+      out.append(str, start, end);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Flattens any character converter (including a chain of them in an
+ * {@link AggregateCharConv}) into lookup tables, so converting a character is
+ * just an array lookup, with the substitution strings created once rather
+ * than for every character converted.
+ * </p>
+ * 
+ * <p>
+ * The basic multilingual plane is split into 256 pages of 256 characters.
+ * The first page (which covers ASCII and Latin-1) is built up front, the rest
+ * are built the first time a character from them is converted. Pages without
+ * any substitutions share a single empty page, so the tables stay small even
+ * for converters that escape most of the character set.
+ * </p>
+ * 
+ * <p>
+ * The source converter must always return the same substitution for the
+ * same character.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+final class CompiledCharConv implements CharConv
+{
+  private static final int PAGE_SIZE = 256;
+  private static final String[] EMPTY_PAGE = new String[PAGE_SIZE];
+
+  private final CharConv source;
+  private final String[] low;
+  private final AtomicReferenceArray<String[]> pages = new AtomicReferenceArray<String[]>(
+      PAGE_SIZE);
+  private final SafeChars safe;
+
+  CompiledCharConv( final CharConv source )
+  {
+    this.source = source;
+    this.low = build(source, 0);
+    pages.set(0, low);
+    this.safe = new SafeChars(this);
+  }
+
+  /**
+   * Compiles a chain of converters, tried in order like an
+   * {@link AggregateCharConv}.
+   * 
+   * @param convs
+   *        The converters to compile.
+   * @return The compiled converter.
+   */
+  static CompiledCharConv compile( final CharConv... convs )
+  {
+    return new CompiledCharConv((convs.length == 1) ? convs[0]
+        : new AggregateCharConv(convs));
+  }
+
+  public String conv( final char ch )
+  {
+    if ( ch < PAGE_SIZE )
+      return low[ch];
+    final int pg = ch >>> 8;
+    String[] page = pages.get(pg);
+    if ( page == null )
+    {
+      // Two threads may both build the same page, which is harmless.
+      page = build(source, pg);
+      pages.set(pg, page);
+    }
+    return page[ch & 0xFF];
+  }
+
+  /**
+   * Finds the first character that has a substitution.
+   * 
+   * @param str
+   *        The string to check.
+   * @param start
+   *        The index to start checking from.
+   * @param end
+   *        The index after the last character to check.
+   * @return The index of the first character that has a substitution, or
+   *         <code>end</code> if there are none.
+   */
+  int scan( final CharSequence str, final int start, final int end )
+  {
+    return safe.scan(str, start, end);
+  }
+
+  /**
+   * The converter this was compiled from.
+   * 
+   * @return The converter this was compiled from.
+   */
+  CharConv getSource()
+  {
+    return source;
+  }
+
+  private static String[] build( final CharConv conv, final int pg )
+  {
+    final String[] page = new String[PAGE_SIZE];
+    final int base = pg << 8;
+    boolean empty = true;
+    for ( int xi = 0; xi < PAGE_SIZE; ++xi )
+    {
+      final String sub = conv.conv((char) (base + xi));
+      if ( sub != null )
+      {
+        page[xi] = sub;
+        empty = false;
+      }
+    }
+    return empty ? EMPTY_PAGE : page;
+  }
+}
@@ -34,9 +34,13 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.evanmclean.evlib.exceptions.UnhandledException;
 import com.evanmclean.evlib.lang.Str;
 
 /**
@@ -49,6 +53,395 @@ import com.evanmclean.evlib.lang.Str;
  */
 final class Converter
 {
+  /**
+   * Writes the part of the string that needs no conversion to the output,
+   * avoiding the intermediate string that {@link Writer#append(CharSequence,
+   * int, int)} would create.
+   * 
+   * @param out
+   *        Where to write.
+   * @param str
+   *        The string to write from.
+   * @param start
+   *        The start of the part to write.
+   * @param end
+   *        The end (exclusive) of the part to write.
+   * @throws IOException
+   */
+  static void append( final Appendable out, final CharSequence str,
+      final int start, final int end ) throws IOException
+  {
+    if ( start >= end )
+      return;
+    if ( out instanceof StringBuilder )
+    {
+      ((StringBuilder) out).append(str, start, end);
+    }
+    else if ( out instanceof Writer )
+    {
+      final Writer wout = (Writer) out;
+      if ( str instanceof String )
+      {
+        wout.write((String) str, start, end - start);
+        return;
+      }
+      if ( (str instanceof CharBuffer) && ((CharBuffer) str).hasArray() )
+      {
+        final CharBuffer cb = (CharBuffer) str;
+        wout.write(cb.array(), cb.arrayOffset() + cb.position() + start, end
+            - start);
+        return;
+      }
+      for ( int xi = start; xi < end; ++xi )
+        wout.write(str.charAt(xi));
+    }
+    else
+    {
+      out.append(str, start, end);
+    }
+  }
+
+  /**
+   * Runs the appender against a string builder, for the escape methods that
+   * append to a string builder rather than an {@link Appendable}, and so have
+   * no need to throw an IOException.
+   * 
+   * @param out
+   *        The string builder to append to.
+   * @param appender
+   *        Does the appending.
+   * @return The string builder passed in.
+   */
+  static StringBuilder build( final StringBuilder out, final Appender appender )
+  {
+    try
+    {
+      appender.appendTo(out);
+    }
+    catch ( IOException ex )
+    {
+      // Cannot happen with a StringBuilder.
+      throw new UnhandledException(ex);
+    }
+    return out;
+  }
+
+  /**
+   * Writes the text for a CDATA section, see
+   * {@link #cdata(CharSequence, int, int, Appendable)}.
+   * 
+   * @param obj
+   *        The object to perform conversion on. Nothing is written if it is
+   *        <code>null</code>.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void cdata( final Object obj, final Appendable out )
+    throws IOException
+  {
+    if ( obj != null )
+    {
+      final CharSequence str = chars(obj);
+      cdata(str, 0, str.length(), out);
+    }
+  }
+
+  /**
+   * Writes the text for a CDATA section, splitting any occurrence of the CDATA
+   * end marker across two CDATA sections.
+   * 
+   * @param str
+   *        The string to convert.
+   * @param start
+   *        The start of the part of the string to convert.
+   * @param end
+   *        The end (exclusive) of the part of the string to convert.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void cdata( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    final String bad = XmlConv.CDATA_BAD;
+    final int last = end - bad.length();
+    int run = start;
+    for ( int pos = start; pos <= last; ++pos )
+      if ( (str.charAt(pos) == ']') && (str.charAt(pos + 1) == ']')
+          && (str.charAt(pos + 2) == '>') )
+      {
+        append(out, str, run, pos);
+        out.append(XmlConv.CDATA_GOOD);
+        pos += 2;
+        run = pos + 1;
+      }
+    append(out, str, run, end);
+  }
+
+  /**
+   * Returns the object as a character sequence, without calling
+   * {@link Object#toString()} if it already is one.
+   * 
+   * @param obj
+   *        A non-null object.
+   * @return The character sequence.
+   */
+  static CharSequence chars( final Object obj )
+  {
+    if ( obj instanceof CharSequence )
+      return (CharSequence) obj;
+    return Str.ifNull(obj.toString());
+  }
+
+  /**
+   * Writes the text for a mark-up comment, see
+   * {@link #comment(CharSequence, int, int, Appendable)}.
+   * 
+   * @param obj
+   *        The object to perform conversion on. Nothing is written if it is
+   *        <code>null</code>.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void comment( final Object obj, final Appendable out )
+    throws IOException
+  {
+    if ( obj != null )
+    {
+      final CharSequence str = chars(obj);
+      comment(str, 0, str.length(), out);
+    }
+  }
+
+  /**
+   * Writes the text for a mark-up comment, so that it does not contain a
+   * double dash (each dash following a dash has an underscore inserted before
+   * it). The same as repeatedly replacing &quot;<code>--</code>&quot; with
+   * &quot;<code>-_-</code>&quot;.
+   * 
+   * @param str
+   *        The string to convert.
+   * @param start
+   *        The start of the part of the string to convert.
+   * @param end
+   *        The end (exclusive) of the part of the string to convert.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void comment( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    int run = start;
+    for ( int pos = start + 1; pos < end; ++pos )
+      if ( (str.charAt(pos) == '-') && (str.charAt(pos - 1) == '-') )
+      {
+        append(out, str, run, pos);
+        out.append('_');
+        run = pos;
+      }
+    append(out, str, run, end);
+  }
+
+  /**
+   * The value of an ASCII digit. Unlike {@link Character#digit(char, int)} the
+   * digits from other scripts (such as Arabic-Indic or fullwidth digits) are
+   * not accepted, as escape sequences and character references only allow
+   * ASCII.
+   * 
+   * @param ch
+   *        The character.
+   * @param radix
+   *        Either 10 or 16.
+   * @return The value of the digit, or -1 if it is not a digit in the radix.
+   */
+  static int digit( final char ch, final int radix )
+  {
+    if ( (ch >= '0') && (ch <= '9') )
+      return ch - '0';
+    if ( radix == 16 )
+    {
+      if ( (ch >= 'a') && (ch <= 'f') )
+        return (ch - 'a') + 10;
+      if ( (ch >= 'A') && (ch <= 'F') )
+        return (ch - 'A') + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the first character in part of the string that the converter has a
+   * substitution for. Compiled converters check several characters at a time
+   * against a bitmap of the safe characters.
+   * 
+   * @param str
+   *        The string to check.
+   * @param start
+   *        The index to start checking from.
+   * @param end
+   *        The index after the last character to check.
+   * @param conv
+   *        The character conversion.
+   * @return The index of the first character with a substitution, or
+   *         <code>end</code> if there are none.
+   */
+  static int scan( final CharSequence str, final int start, final int end,
+      final CharConv conv )
+  {
+    if ( conv instanceof CompiledCharConv )
+      return ((CompiledCharConv) conv).scan(str, start, end);
+    for ( int pos = start; pos < end; ++pos )
+      if ( conv.conv(str.charAt(pos)) != null )
+        return pos;
+    return end;
+  }
+
+  /**
+   * Substitution of an object's value based on a character converter, writing
+   * the result to the output.
+   * 
+   * @param obj
+   *        The object to perform conversion on. Nothing is written if it is
+   *        <code>null</code>.
+   * @param conv
+   *        The character conversion to perform.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void sub( final Object obj, final CharConv conv, final Appendable out )
+    throws IOException
+  {
+    if ( obj != null )
+    {
+      final CharSequence str = chars(obj);
+      sub(str, 0, str.length(), conv, out);
+    }
+  }
+
+  /**
+   * Substitution of an object's value based on a character converter, but
+   * also replacing all occurances of a new line with the specified string,
+   * writing the result to the output.
+   * 
+   * @param obj
+   *        The object to perform conversion on. Nothing is written if it is
+   *        <code>null</code>.
+   * @param conv
+   *        The character conversion to perform.
+   * @param nl
+   *        The string to substitute as a newline.
+   * @param replace
+   *        If <code>true</code>, then <code>nl</code> replaces the new line
+   *        character sequence, if false it is just inserted before the
+   *        sequence.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void sub( final Object obj, final CharConv conv, final String nl,
+      final boolean replace, final Appendable out ) throws IOException
+  {
+    if ( obj != null )
+    {
+      final CharSequence str = chars(obj);
+      sub(str, 0, str.length(), conv, nl, replace, out);
+    }
+  }
+
+  /**
+   * Substitution of part of a string based on a character converter, writing
+   * the result to the output.
+   * 
+   * @param str
+   *        The string to convert.
+   * @param start
+   *        The start of the part of the string to convert.
+   * @param end
+   *        The end (exclusive) of the part of the string to convert.
+   * @param conv
+   *        The character conversion to perform.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void sub( final CharSequence str, final int start, final int end,
+      final CharConv conv, final Appendable out ) throws IOException
+  {
+    if ( out instanceof EncodedOutput )
+    {
+      // Escape and encode in one pass.
+      ((EncodedOutput) out).sub(str, start, end, conv);
+      return;
+    }
+    int pos = scan(str, start, end, conv);
+    append(out, str, start, pos);
+    while ( pos < end )
+    {
+      out.append(conv.conv(str.charAt(pos)));
+      final int next = scan(str, ++pos, end, conv);
+      append(out, str, pos, next);
+      pos = next;
+    }
+  }
+
+  /**
+   * Substitution of part of a string based on a character converter, but also
+   * replacing all occurances of a new line with the specified string, writing
+   * the result to the output. See {@link #sub(Object, CharConv, String,
+   * boolean)} for details.
+   * 
+   * @param str
+   *        The string to convert.
+   * @param start
+   *        The start of the part of the string to convert.
+   * @param end
+   *        The end (exclusive) of the part of the string to convert.
+   * @param conv
+   *        The character conversion to perform.
+   * @param nl
+   *        The string to substitute as a newline.
+   * @param replace
+   *        If <code>true</code>, then <code>nl</code> replaces the new line
+   *        character sequence, if false it is just inserted before the
+   *        sequence.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void sub( final CharSequence str, final int start, final int end,
+      final CharConv conv, final String nl, final boolean replace,
+      final Appendable out ) throws IOException
+  {
+    int run = start;
+    for ( int pos = start; pos < end; ++pos )
+    {
+      final char ch = str.charAt(pos);
+      if ( (ch == '\r') || (ch == '\n') )
+      {
+        append(out, str, run, pos);
+        out.append(nl);
+        // If not replacing, the new line is written along with the next run.
+        final int nlpos = pos;
+        if ( (ch == '\r') && ((pos + 1) < end)
+            && (str.charAt(pos + 1) == '\n') )
+          ++pos;
+        run = replace ? (pos + 1) : nlpos;
+        continue;
+      }
+      final String entity = conv.conv(ch);
+      if ( entity != null )
+      {
+        append(out, str, run, pos);
+        out.append(entity);
+        run = pos + 1;
+      }
+    }
+    append(out, str, run, end);
+  }
+
   /**
    * Simplest substitution of obj.toString() value based on a character
    * converter.
@@ -68,30 +461,18 @@ final class Converter
       return null;
     final String orig = Str.ifNull(obj.toString());
     final int len = orig.length();
-    int pos = 0;
-    String entity = null;
-    while ( pos < len )
-    {
-      if ( (entity = conv.conv(orig.charAt(pos))) != null )
-        break;
-      ++pos;
-    }
-    if ( entity == null )
+    final int pos = scan(orig, 0, len, conv);
+    if ( pos >= len )
       return orig;
 
     final StringBuilder buff = new StringBuilder(((len * 3) / 2));
-    if ( pos > 0 )
-      buff.append(orig, 0, pos);
-    buff.append(entity);
-    for ( ++pos; pos < len; ++pos )
-    {
-      final char ch = orig.charAt(pos);
-      if ( (entity = conv.conv(ch)) == null )
-        buff.append(ch);
-      else
-        buff.append(entity);
-    }
-    return buff.toString();
+    buff.append(orig, 0, pos);
+    return build(buff, new Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        sub(orig, pos, len, conv, app);
+      }
+    }).toString();
   }
 
   /**
@@ -136,14 +517,10 @@ final class Converter
     final String orig = Str.ifNull(obj.toString());
     final int len = orig.length();
     int pos = 0;
-    char ch = 0;
-    String entity = null;
     while ( pos < len )
     {
-      ch = orig.charAt(pos);
-      if ( (ch == '\r') || (ch == '\n') )
-        break;
-      if ( (entity = conv.conv(ch)) != null )
+      final char ch = orig.charAt(pos);
+      if ( (ch == '\r') || (ch == '\n') || (conv.conv(ch) != null) )
         break;
       ++pos;
     }
@@ -151,57 +528,14 @@ final class Converter
       return orig;
 
     final StringBuilder buff = new StringBuilder(((len * 3) / 2));
-    if ( pos > 0 )
-      buff.append(orig, 0, pos);
-    if ( entity != null )
-    {
-      buff.append(entity);
-      ++pos;
-    }
-    else
-    {
-      buff.append(nl);
-      if ( !replace )
-        buff.append(ch);
-      ++pos;
-      if ( (ch == '\r') && (pos < len) && (orig.charAt(pos) == '\n') )
-      {
-        if ( !replace )
-          buff.append('\n');
-        ++pos;
-      }
-    }
-    for ( /* empty */; pos < len; ++pos )
-    {
-      ch = orig.charAt(pos);
-      if ( ch == '\n' )
-      {
-        buff.append(nl);
-        if ( !replace )
-          buff.append(ch);
-      }
-      else if ( ch == '\r' )
-      {
-        buff.append(nl);
-        if ( !replace )
-          buff.append(ch);
-        if ( ((pos + 1) < len) && ((ch = orig.charAt(pos + 1)) == '\n') )
-        {
-          if ( !replace )
-            buff.append(ch);
-          ++pos;
-        }
-      }
-      else if ( (entity = conv.conv(ch)) == null )
+    buff.append(orig, 0, pos);
+    final int first = pos;
+    return build(buff, new Appender() {
+      public void appendTo( final Appendable app ) throws IOException
       {
-        buff.append(ch);
+        sub(orig, first, len, conv, nl, replace, app);
       }
-      else
-      {
-        buff.append(entity);
-      }
-    }
-    return buff.toString();
+    }).toString();
   }
 
   /**
@@ -259,28 +593,88 @@ final class Converter
       return null;
     final String orig = Str.ifNull(obj.toString());
     final int len = orig.length();
-    int pos = conv.convFrom(orig);
+    final int pos = conv.convFrom(orig, 0, len);
     if ( pos < 0 )
       return orig;
 
-    final StringBuilder buff = conv.initialise(new StringBuilder(
-        ((len * 3) / 2)), orig);
-    if ( pos > 0 )
-      buff.append(orig, 0, pos);
-    for ( /* empty */; pos < len; ++pos )
+    final StringBuilder buff = new StringBuilder(((len * 3) / 2));
+    return build(buff, new Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        xsub(orig, 0, len, pos, conv, app);
+      }
+    }).toString();
+  }
+
+  /**
+   * Substitution of an object's value based on an extended character
+   * converter, writing the result to the output.
+   * 
+   * @param obj
+   *        The object to perform conversion on. Nothing is written if it is
+   *        <code>null</code>.
+   * @param conv
+   *        The character conversion to perform.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void xsub( final Object obj, final ExtendedCharConv conv,
+      final Appendable out ) throws IOException
+  {
+    if ( obj != null )
     {
-      final char ch = orig.charAt(pos);
-      final String entity = conv.conv(ch);
-      if ( entity == null )
-        buff.append(ch);
-      else
-        buff.append(entity);
+      final CharSequence str = chars(obj);
+      xsub(str, 0, str.length(), conv, out);
     }
-    return conv.finish(buff, orig);
+  }
+
+  /**
+   * Substitution of part of a string based on an extended character
+   * converter, writing the result to the output.
+   * 
+   * @param str
+   *        The string to convert.
+   * @param start
+   *        The start of the part of the string to convert.
+   * @param end
+   *        The end (exclusive) of the part of the string to convert.
+   * @param conv
+   *        The character conversion to perform.
+   * @param out
+   *        Where to write the converted string.
+   * @throws IOException
+   */
+  static void xsub( final CharSequence str, final int start, final int end,
+      final ExtendedCharConv conv, final Appendable out ) throws IOException
+  {
+    final int pos = conv.convFrom(str, start, end);
+    if ( pos < 0 )
+      append(out, str, start, end);
+    else
+      xsub(str, start, end, pos, conv, out);
+  }
+
+  private static void xsub( final CharSequence str, final int start,
+      final int end, final int pos, final ExtendedCharConv conv,
+      final Appendable out ) throws IOException
+  {
+    conv.initialise(out);
+    append(out, str, start, pos);
+    sub(str, pos, end, conv, out);
+    conv.finish(out);
   }
 
   private Converter()
   {
     // empty
   }
+
+  /**
+   * Something to append, see {@link Converter#build}.
+   */
+  interface Appender
+  {
+    void appendTo( Appendable out ) throws IOException;
+  }
 }
@@ -34,7 +34,7 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
-import com.evanmclean.evlib.lang.Str;
+import java.io.IOException;
 
 /**
  * <p>
@@ -54,10 +54,10 @@ final class CsvConv
       return (ch == '"') ? "\"\"" : null;
     }
 
-    public int convFrom( final String str )
+    public int convFrom( final CharSequence str, final int start,
+        final int end )
     {
-      final int len = Str.length(str);
-      for ( int xi = 0; xi < len; ++xi )
+      for ( int xi = start; xi < end; ++xi )
       {
         final char ch = str.charAt(xi);
         switch ( ch )
@@ -72,14 +72,14 @@ final class CsvConv
       return -1;
     }
 
-    public String finish( final StringBuilder buff, final String str )
+    public void finish( final Appendable out ) throws IOException
     {
-      return buff.append('"').toString();
+      out.append('"');
     }
 
-    public StringBuilder initialise( final StringBuilder buff, final String str )
+    public void initialise( final Appendable out ) throws IOException
     {
-      return buff.append('"');
+      out.append('"');
     }
   };
 
@@ -0,0 +1,134 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.evanmclean.evlib.charset.Charsets;
+import com.evanmclean.evlib.io.UTF8BufferedWriter;
+
+/**
+ * <p>
+ * A buffered writer that encodes characters straight into a reusable byte
+ * buffer as UTF-8, ISO-8859-1 or US-ASCII, which is written to the underlying
+ * output stream when full (or on {@link #flush()} or {@link #close()}).
+ * </p>
+ * 
+ * <p>
+ * When passed as the output to the escaping methods that take an
+ * {@link Appendable} (e.g., {@link EscHtml#text(Object, Appendable)}), the
+ * escaping and encoding is done in a single pass over the characters, without
+ * any intermediate strings or character buffers. Runs of characters that need
+ * no escaping are found the same way as when escaping to a string, and are
+ * encoded straight into the byte buffer.
+ * </p>
+ * 
+ * <p>
+ * Characters that cannot be encoded in the character set (and unpaired
+ * surrogates) are written as a <code>'?'</code>, so when encoding to
+ * ISO-8859-1 or US-ASCII use an escaper that converts them to character
+ * references, such as {@link Esc#htmlAscii} or {@link Esc#xmlAscii}. Like most
+ * writers, this is not thread-safe.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class EncodedOutput extends UTF8BufferedWriter
+{
+  /**
+   * Create an encoding writer with the default buffer size.
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @param charset
+   *        One of {@link Charsets#UTF8}, {@link Charsets#ISO88591} or
+   *        {@link Charsets#USASCII}.
+   */
+  public EncodedOutput( final OutputStream out, final Charset charset )
+  {
+    this(out, charset, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Create an encoding writer with the specified buffer size.
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @param charset
+   *        One of {@link Charsets#UTF8}, {@link Charsets#ISO88591} or
+   *        {@link Charsets#USASCII}.
+   * @param buffer_size
+   *        The size of the byte buffer (at least 16).
+   */
+  public EncodedOutput( final OutputStream out, final Charset charset,
+      final int buffer_size )
+  {
+    super(out, charset, buffer_size);
+  }
+
+  /**
+   * Escapes and encodes part of the character sequence in a single pass. Does
+   * the same as {@link Converter#sub(CharSequence, int, int, CharConv,
+   * Appendable)}.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param conv
+   *        The conversion to apply to each character.
+   * @throws IOException
+   */
+  void sub( final CharSequence str, final int start, final int end,
+      final CharConv conv ) throws IOException
+  {
+    int pos = Converter.scan(str, start, end, conv);
+    encode(str, start, pos);
+    while ( pos < end )
+    {
+      final String sub = conv.conv(str.charAt(pos));
+      encode(sub, 0, sub.length());
+      final int next = Converter.scan(str, ++pos, end, conv);
+      encode(str, pos, next);
+      pos = next;
+    }
+  }
+}
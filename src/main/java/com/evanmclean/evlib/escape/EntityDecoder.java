@@ -0,0 +1,234 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Decodes a single mark-up character reference: a named entity (e.g.,
+ * <code>&amp;amp;</code>) looked up in a trie built from the entity tables, or
+ * a decimal (<code>&amp;#38;</code>) or hex (<code>&amp;#x26;</code>) numeric
+ * reference. The terminating semi-colon is required.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+final class EntityDecoder
+{
+  // The most digits we accept in a numeric reference.
+  private static final int MAX_DIGITS = 8;
+
+  /**
+   * The longest possible reference, so a streaming decoder knows how far
+   * ahead it may need to look.
+   */
+  final int maxLength;
+
+  private final Node root;
+
+  /**
+   * @param entities
+   *        The named entities, in the form <code>&amp;name;</code>.
+   */
+  EntityDecoder( final Collection<CharSub> entities )
+  {
+    final Builder top = new Builder();
+    int longest = "&#x".length() + MAX_DIGITS + 1;
+    for ( final CharSub entity : entities )
+    {
+      Builder bld = top;
+      final String name = entity.sub;
+      // Skip the leading '&' and trailing ';'.
+      for ( int xi = 1; xi < (name.length() - 1); ++xi )
+      {
+        final Character key = Character.valueOf(name.charAt(xi));
+        Builder next = bld.children.get(key);
+        if ( next == null )
+        {
+          next = new Builder();
+          bld.children.put(key, next);
+        }
+        bld = next;
+      }
+      bld.value = String.valueOf(entity.ch);
+      longest = Math.max(longest, name.length());
+    }
+    this.root = top.build();
+    this.maxLength = longest;
+  }
+
+  /**
+   * Decodes the reference that starts at the position (which must be an
+   * <code>'&amp;'</code>), if there is a valid one there.
+   * 
+   * @param str
+   *        The text being decoded.
+   * @param pos
+   *        The position of the <code>'&amp;'</code>.
+   * @param end
+   *        The end of the text available.
+   * @param out
+   *        Where to write the decoded character.
+   * @return The length of the reference, or zero if there was not a valid one
+   *         (and nothing was written).
+   * @throws IOException
+   */
+  int decode( final CharSequence str, final int pos, final int end,
+      final Appendable out ) throws IOException
+  {
+    int xi = pos + 1;
+    if ( (xi < end) && (str.charAt(xi) == '#') )
+      return number(str, pos, end, out);
+
+    Node node = root;
+    while ( xi < end )
+    {
+      final char ch = str.charAt(xi++);
+      if ( ch == ';' )
+      {
+        if ( node.value == null )
+          return 0;
+        out.append(node.value);
+        return xi - pos;
+      }
+      node = node.child(ch);
+      if ( node == null )
+        return 0;
+    }
+    return 0;
+  }
+
+  private static int number( final CharSequence str, final int pos,
+      final int end, final Appendable out ) throws IOException
+  {
+    int xi = pos + 2;
+    int radix = 10;
+    if ( (xi < end) && ((str.charAt(xi) == 'x') || (str.charAt(xi) == 'X')) )
+    {
+      radix = 16;
+      ++xi;
+    }
+    final int start = xi;
+    int cp = 0;
+    while ( xi < end )
+    {
+      final char ch = str.charAt(xi);
+      if ( ch == ';' )
+        break;
+      final int digit = Converter.digit(ch, radix);
+      if ( (digit < 0) || ((xi - start) >= MAX_DIGITS) )
+        return 0;
+      cp = (cp * radix) + digit;
+      // Stop before it can overflow (eight hex digits can go negative).
+      if ( cp > Character.MAX_CODE_POINT )
+        return 0;
+      ++xi;
+    }
+    // Surrogates are allowed, as the escapers write each half of a pair as a
+    // separate reference.
+    if ( (xi >= end) || (xi == start) || (cp == 0) )
+      return 0;
+    if ( cp < Character.MIN_SUPPLEMENTARY_CODE_POINT )
+    {
+      out.append((char) cp);
+    }
+    else
+    {
+      final char[] pair = Character.toChars(cp);
+      out.append(pair[0]);
+      out.append(pair[1]);
+    }
+    return (xi + 1) - pos;
+  }
+
+  private static final class Builder
+  {
+    final Map<Character, Builder> children = new TreeMap<Character, Builder>();
+    String value;
+
+    Node build()
+    {
+      final char[] keys = new char[children.size()];
+      final Node[] nodes = new Node[keys.length];
+      int xi = 0;
+      for ( final Map.Entry<Character, Builder> entry : children.entrySet() )
+      {
+        keys[xi] = entry.getKey().charValue();
+        nodes[xi] = entry.getValue().build();
+        ++xi;
+      }
+      return new Node(keys, nodes, value);
+    }
+  }
+
+  private static final class Node
+  {
+    // Sorted, for a binary search.
+    private final char[] keys;
+    private final Node[] children;
+    final String value;
+
+    Node( final char[] keys, final Node[] children, final String value )
+    {
+      this.keys = keys;
+      this.children = children;
+      this.value = value;
+    }
+
+    Node child( final char ch )
+    {
+      int lo = 0;
+      int hi = keys.length - 1;
+      while ( lo <= hi )
+      {
+        final int mid = (lo + hi) >>> 1;
+        final char key = keys[mid];
+        if ( key < ch )
+          lo = mid + 1;
+        else if ( key > ch )
+          hi = mid - 1;
+        else
+          return children[mid];
+      }
+      return null;
+    }
+  }
+}
@@ -197,6 +197,36 @@ public final class Esc
   public static final EscXml xmlAscii = new EscXml(XmlConv.XML_ASCII,
       XmlConv.XML_ASCII_ATTR);
 
+  /**
+   * <p>
+   * Makes a string safe to use as a string value in JSON. Characters outside of
+   * ASCII are left as they are (so write the output as UTF-8), except for the
+   * line and paragraph separators which are escaped so the output is also
+   * valid Javascript.
+   * </p>
+   */
+  public static final EscJson json = new EscJson(JsonConv.JSON);
+
+  /**
+   * <p>
+   * Makes a string safe to use as a string value in JSON, escaping any
+   * character that falls outside of the printable ASCII set.
+   * </p>
+   */
+  public static final EscJson jsonAscii = new EscJson(JsonConv.JSON_ASCII);
+
+  /**
+   * <p>
+   * Makes a string safe to use as a string value in JSON that is going to be
+   * embedded in an HTML page (e.g., inside a <code>&lt;script&gt;</code>
+   * element). Like {@link #json}, but also escapes the <code>&lt;</code>,
+   * <code>&gt;</code>, <code>&amp;</code> and <code>'</code> characters, so
+   * the output can never contain a <code>&lt;/script&gt;</code> or
+   * <code>&lt;!--</code>.
+   * </p>
+   */
+  public static final EscJson jsonScript = new EscJson(JsonConv.JSON_SCRIPT);
+
   /**
    * <p>
    * Makes a string safe to use as a URL parameter.
@@ -34,6 +34,10 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
 /**
  * <p>
  * Makes a string safe to use as a field within a comma separated (CSV) file.
@@ -75,4 +79,112 @@ public final class EscCsv
   {
     return Converter.xsub(obj, CsvConv.CSV);
   }
+
+  /**
+   * Makes a string safe to use as a field within a comma separated (CSV) file,
+   * writing the result straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.xsub(obj, CsvConv.CSV, out);
+  }
+
+  /**
+   * Makes a string safe to use as a field within a comma separated (CSV) file,
+   * appending the result to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Makes a string safe to use as a field within a comma separated (CSV) file
+   * on part of a character array, writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    text(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Makes a string safe to use as a field within a comma separated (CSV) file
+   * on part of a character sequence, writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.xsub(str, start, end, CsvConv.CSV, out);
+  }
+
+  /**
+   * Returns a writer that escapes (as a CSV field) everything written to it on
+   * the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out )
+  {
+    return EscapingWriter.xsub(out, CsvConv.CSV,
+      EscapingWriter.DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Returns a writer that escapes (as a CSV field) everything written to it on
+   * the fly before passing it on to the output. Up to
+   * <code>buffer_size</code> characters are held back until it is known
+   * whether the field needs quoting. A longer field is quoted regardless, which
+   * is still valid CSV.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @param buffer_size
+   *        The maximum number of characters to hold back.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out, final int buffer_size )
+  {
+    return EscapingWriter.xsub(out, CsvConv.CSV, buffer_size);
+  }
 }
@@ -34,6 +34,10 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
 /**
  * <p>
  * Performs character escaping suitable for HTML output.
@@ -74,6 +78,95 @@ public final class EscHtml
     return Converter.sub(obj, attrConv);
   }
 
+  /**
+   * Performs escaping for an HTML attribute, writing the result straight to the
+   * output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, attrConv, out);
+  }
+
+  /**
+   * Performs escaping for an HTML attribute, appending the result to the string
+   * builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder attr( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        attr(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Performs escaping for an HTML attribute on part of a character array,
+   * writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    attr(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Performs escaping for an HTML attribute on part of a character sequence,
+   * writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, attrConv, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for an HTML attribute) everything written to
+   * it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter attrWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, attrConv);
+  }
+
   /**
    * Performs escaping for an HTML comment.
    * 
@@ -86,6 +179,55 @@ public final class EscHtml
     return Converter.sub(obj, MlConv.COMMENT_BAD, MlConv.COMMENT_GOOD);
   }
 
+  /**
+   * Performs escaping for an HTML comment, writing the result straight to the
+   * output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void comment( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.comment(obj, out);
+  }
+
+  /**
+   * Performs escaping for an HTML comment, appending the result to the string
+   * builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder comment( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        comment(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Returns a writer that escapes (for an HTML comment) everything written to
+   * it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter commentWriter( final Writer out )
+  {
+    return EscapingWriter.comment(out);
+  }
+
   /**
    * Performs escaping for general HTML text.
    * 
@@ -98,6 +240,95 @@ public final class EscHtml
     return Converter.sub(obj, textConv);
   }
 
+  /**
+   * Performs escaping for general HTML text, writing the result straight to the
+   * output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, textConv, out);
+  }
+
+  /**
+   * Performs escaping for general HTML text, appending the result to the string
+   * builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Performs escaping for general HTML text on part of a character array,
+   * writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    text(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Performs escaping for general HTML text on part of a character sequence,
+   * writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, textConv, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for general HTML text) everything written to
+   * it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, textConv);
+  }
+
   /**
    * <p>
    * Performs escaping for general HTML text, and also inserts a
@@ -127,6 +358,42 @@ public final class EscHtml
     return Converter.sub(obj, textConv, br, false);
   }
 
+  /**
+   * Performs escaping for general HTML text, inserting a line break element
+   * before each new line, writing the result straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void textbr( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, textConv, br, false, out);
+  }
+
+  /**
+   * Performs escaping for general HTML text, inserting a line break element
+   * before each new line, appending the result to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder textbr( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        textbr(obj, app);
+      }
+    });
+  }
+
   /**
    * <p>
    * Performs escaping for general HTML text, and also inserts or replaces a
@@ -158,4 +425,79 @@ public final class EscHtml
   {
     return Converter.sub(obj, textConv, br, replace);
   }
+
+  /**
+   * Performs escaping for general HTML text, inserting or replacing a line
+   * break element for each new line, writing the result straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param replace
+   *        If <code>true</code> then replace the newline character(s), else
+   *        just insert the element before it.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void textbr( final Object obj, final boolean replace,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(obj, textConv, br, replace, out);
+  }
+
+  /**
+   * Performs escaping for general HTML text, inserting or replacing a line
+   * break element for each new line, appending the result to the string
+   * builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param replace
+   *        If <code>true</code> then replace the newline character(s), else
+   *        just insert the element before it.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder textbr( final Object obj, final boolean replace,
+      final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        textbr(obj, replace, app);
+      }
+    });
+  }
+
+  /**
+   * Returns a writer that escapes (for general HTML text, inserting a line
+   * break element before each new line) everything written to it on the fly
+   * before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textbrWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, textConv, br, false);
+  }
+
+  /**
+   * Returns a writer that escapes (for general HTML text, inserting or
+   * replacing a line break element for each new line) everything written to it
+   * on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @param replace
+   *        If <code>true</code> then replace the newline character(s), else
+   *        just insert the element before it.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textbrWriter( final Writer out, final boolean replace )
+  {
+    return EscapingWriter.sub(out, textConv, br, replace);
+  }
 }
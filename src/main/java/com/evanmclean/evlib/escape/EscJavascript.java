@@ -34,6 +34,10 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
 /**
  * <p>
  * Makes a string safe to use as a string literal inside a piece of Javascript
@@ -65,4 +69,96 @@ public final class EscJavascript
   {
     return Converter.sub(obj, JavaConv.JAVASCRIPT);
   }
+
+  /**
+   * Makes a string safe to use as a string literal inside a piece of Javascript
+   * code, writing the result straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, JavaConv.JAVASCRIPT, out);
+  }
+
+  /**
+   * Makes a string safe to use as a string literal inside a piece of Javascript
+   * code, appending the result to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Makes a string safe to use as a string literal inside a piece of
+   * Javascript code on part of a character array, writing the result straight
+   * to the
+   * output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    text(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Makes a string safe to use as a string literal inside a piece of Javascript
+   * code on part of a character sequence, writing the result straight to the
+   * output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, JavaConv.JAVASCRIPT, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for a Javascript string literal) everything
+   * written to it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, JavaConv.JAVASCRIPT);
+  }
 }
@@ -0,0 +1,226 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * <p>
+ * Makes a string safe to use as a string value in JSON.
+ * </p>
+ * 
+ * <p>
+ * Use the <code>text</code> methods to escape the contents of a string (without
+ * adding enclosing double quotes), or the <code>quote</code> methods to write a
+ * complete JSON string value.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class EscJson
+{
+  private final CharConv conv;
+
+  EscJson( final CharConv conv )
+  {
+    this.conv = conv;
+  }
+
+  /**
+   * Makes a quoted JSON string value.
+   * 
+   * @param obj
+   * @return The escaped string enclosed in double quotes, or <code>null</code>
+   *         (the JSON literal, not a <code>null</code> reference) if
+   *         <code>obj</code> was <code>null</code>.
+   */
+  public String quote( final Object obj )
+  {
+    if ( obj == null )
+      return "null";
+    final String str = obj.toString();
+    return quote(str, new StringBuilder(str.length() + 8)).toString();
+  }
+
+  /**
+   * Writes a quoted JSON string value straight to the output.
+   * 
+   * @param obj
+   *        The JSON literal <code>null</code> is written if <code>null</code>.
+   * @param out
+   *        Where to write the quoted and escaped text.
+   * @throws IOException
+   */
+  public void quote( final Object obj, final Appendable out )
+    throws IOException
+  {
+    if ( obj == null )
+    {
+      out.append("null");
+      return;
+    }
+    final CharSequence str = Converter.chars(obj);
+    out.append('"');
+    Converter.sub(str, 0, str.length(), conv, out);
+    out.append('"');
+  }
+
+  /**
+   * Appends a quoted JSON string value to the string builder.
+   * 
+   * @param obj
+   *        The JSON literal <code>null</code> is appended if <code>null</code>.
+   * @param out
+   *        Where to append the quoted and escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder quote( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        quote(obj, app);
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * Makes a string safe to use inside a JSON string value (does not add
+   * enclosing double quotes).
+   * </p>
+   * 
+   * @param obj
+   * @return The substituted string, or <code>null</code> if <code>obj</code>
+   *         was <code>null</code>.
+   */
+  public String text( final Object obj )
+  {
+    return Converter.sub(obj, conv);
+  }
+
+  /**
+   * Makes a string safe to use inside a JSON string value, writing the result
+   * straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, conv, out);
+  }
+
+  /**
+   * Makes a string safe to use inside a JSON string value, appending the result
+   * to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Makes part of a character array safe to use inside a JSON string value,
+   * writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    text(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Makes part of a character sequence safe to use inside a JSON string value,
+   * writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, conv, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for a JSON string value) everything written
+   * to it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, conv);
+  }
+}
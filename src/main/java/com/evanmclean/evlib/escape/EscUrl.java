@@ -34,17 +34,28 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.BitSet;
 
 import com.evanmclean.evlib.charset.Charsets;
 import com.evanmclean.evlib.exceptions.UnhandledException;
-import com.evanmclean.evlib.util.TreeSetIgnoreCase;
 
 /**
  * <p>
- * Makes a string safe to use as a URL parameter.
+ * Makes a string safe to use as a URL parameter, and decodes URL parameters.
+ * </p>
+ * 
+ * <p>
+ * UTF-8, ISO-8859-1 and US-ASCII are encoded directly, without any
+ * intermediate byte arrays. Other character sets use a new encoder (or
+ * decoder) for each call.
  * </p>
  * 
  * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
@@ -53,28 +64,144 @@ import com.evanmclean.evlib.util.TreeSetIgnoreCase;
  */
 public final class EscUrl
 {
-  private final BitSet safe;
-  private final char[] hex = "0123456789ABCDEF".toCharArray();
-  private final TreeSetIgnoreCase safeCharsets = new TreeSetIgnoreCase();
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private final SafeChars safe;
 
   EscUrl()
   {
-    safe = new BitSet(256);
+    final BitSet bits = new BitSet(256);
     for ( int xi = 'a'; xi <= 'z'; ++xi )
-      safe.set(xi);
+      bits.set(xi);
     for ( int xi = 'A'; xi <= 'Z'; ++xi )
-      safe.set(xi);
+      bits.set(xi);
     for ( int xi = '0'; xi <= '9'; ++xi )
-      safe.set(xi);
-    safe.set('.');
-    safe.set('-');
-    safe.set('*');
-    safe.set('_');
+      bits.set(xi);
+    bits.set('.');
+    bits.set('-');
+    bits.set('*');
+    bits.set('_');
+    safe = new SafeChars(bits);
+  }
 
-    safeCharsets.add("UTF-8");
-    safeCharsets.add("US-ASCII");
-    safeCharsets.add("ISO-8859-1");
-    safeCharsets.add("ISO-LATIN-1");
+  /**
+   * <p>
+   * Decodes a URL parameter (such as from a query string) that was encoded
+   * using UTF-8. Both <code>'+'</code> and <code>%20</code> are decoded as a
+   * space. Anything that is not a valid escape sequence is left as is, and
+   * any bytes that are not valid UTF-8 are decoded as the replacement
+   * character (<code>'&#xFFFD;'</code>).
+   * </p>
+   * 
+   * @param obj
+   * @return The decoded string, or <code>null</code> if <code>obj</code> was
+   *         <code>null</code>.
+   */
+  public String decode( final Object obj )
+  {
+    return decode(obj, Charsets.UTF8);
+  }
+
+  /**
+   * <p>
+   * Decodes a URL parameter (such as from a query string) that was encoded
+   * using the specified character set.
+   * </p>
+   * 
+   * @param obj
+   * @param cs
+   *        The character set to use.
+   * @return The decoded string, or <code>null</code> if <code>obj</code> was
+   *         <code>null</code>.
+   */
+  public String decode( final Object obj, final Charset cs )
+  {
+    if ( obj == null )
+      return null;
+    final String orig = obj.toString();
+    if ( (orig.indexOf('%') < 0) && (orig.indexOf('+') < 0) )
+      return orig;
+    final StringBuilder buff = new StringBuilder(orig.length());
+    return Converter.build(buff, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        decode(orig, cs, app);
+      }
+    }).toString();
+  }
+
+  /**
+   * <p>
+   * Decodes a URL parameter (such as from a query string) that was encoded
+   * using the specified character set, writing the result straight to the
+   * output.
+   * </p>
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param cs
+   *        The character set to use.
+   * @param out
+   *        Where to write the decoded text.
+   * @throws IOException
+   */
+  public void decode( final Object obj, final Charset cs, final Appendable out )
+    throws IOException
+  {
+    if ( obj == null )
+      return;
+    final CharSequence str = Converter.chars(obj);
+    final int len = str.length();
+    byte[] bytes = null;
+    int run = 0;
+    int pos = 0;
+    while ( pos < len )
+    {
+      final char ch = str.charAt(pos);
+      if ( ch == '+' )
+      {
+        Converter.append(out, str, run, pos);
+        out.append(' ');
+        run = ++pos;
+      }
+      else if ( (ch == '%') && (escaped(str, pos, len) >= 0) )
+      {
+        Converter.append(out, str, run, pos);
+        if ( bytes == null )
+          bytes = new byte[(len - pos) / 3];
+        int num = 0;
+        int bt;
+        while ( (bt = escaped(str, pos, len)) >= 0 )
+        {
+          bytes[num++] = (byte) bt;
+          pos += 3;
+        }
+        decode(bytes, num, cs, out);
+        run = pos;
+      }
+      else
+      {
+        ++pos;
+      }
+    }
+    Converter.append(out, str, run, len);
+  }
+
+  /**
+   * <p>
+   * Decodes a URL parameter (such as from a query string) that was encoded
+   * using the specified character set.
+   * </p>
+   * 
+   * @param obj
+   * @param charset
+   *        The character set to use.
+   * @return The decoded string, or <code>null</code> if <code>obj</code> was
+   *         <code>null</code>.
+   */
+  public String decode( final Object obj, final String charset )
+  {
+    return decode(obj, Charsets.get(charset));
   }
 
   /**
@@ -90,7 +217,26 @@ public final class EscUrl
    */
   public String text( final Object obj )
   {
-    return text(obj, Charsets.UTF8_NAME);
+    return text(obj, Charsets.UTF8);
+  }
+
+  /**
+   * <p>
+   * Makes a string safe to use as a URL parameter, using UTF-8 encoding for
+   * extended unicode characters if necessary, writing the result straight to
+   * the output.
+   * </p>
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    text(obj, Charsets.UTF8, out);
   }
 
   /**
@@ -107,7 +253,118 @@ public final class EscUrl
    */
   public String text( final Object obj, final Charset cs )
   {
-    return text(obj, cs.name());
+    if ( obj == null )
+      return null;
+    final String orig = obj.toString();
+    final int len = orig.length();
+    if ( (max(cs) >= 0) && (safe.scan(orig, 0, len) >= len) )
+      return orig;
+    return text(orig, cs, new StringBuilder((len * 3) / 2)).toString();
+  }
+
+  /**
+   * <p>
+   * Makes a string safe to use as a URL parameter, using the specified
+   * character set for encoding extended unicode characters if necessary,
+   * writing the result straight to the output.
+   * </p>
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param cs
+   *        The character set to use.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Charset cs, final Appendable out )
+    throws IOException
+  {
+    if ( obj == null )
+      return;
+    final CharSequence str = Converter.chars(obj);
+    final int max = max(cs);
+    if ( max < 0 )
+    {
+      final ByteBuffer bytes = encoder(cs).encode(CharBuffer.wrap(str));
+      while ( bytes.hasRemaining() )
+        percent(bytes.get() & 0xFF, out);
+      return;
+    }
+
+    final int len = str.length();
+    int pos = 0;
+    while ( pos < len )
+    {
+      final int next = safe.scan(str, pos, len);
+      Converter.append(out, str, pos, next);
+      if ( next >= len )
+        break;
+      pos = next;
+      final char ch = str.charAt(pos++);
+      final boolean pair = Character.isHighSurrogate(ch) && (pos < len)
+          && Character.isLowSurrogate(str.charAt(pos));
+      if ( (ch < 0x80) || ((ch <= max) && (max < 0x100)) )
+      {
+        percent(ch, out);
+      }
+      else if ( max < 0x100 )
+      {
+        // Cannot be encoded in the character set (a pair being one character).
+        percent('?', out);
+        if ( pair )
+          ++pos;
+      }
+      else if ( ch < 0x800 )
+      {
+        percent(0xc0 | (ch >> 6), out);
+        percent(0x80 | (ch & 0x3f), out);
+      }
+      else if ( pair )
+      {
+        final int cp = Character.toCodePoint(ch, str.charAt(pos++));
+        percent(0xf0 | (cp >> 18), out);
+        percent(0x80 | ((cp >> 12) & 0x3f), out);
+        percent(0x80 | ((cp >> 6) & 0x3f), out);
+        percent(0x80 | (cp & 0x3f), out);
+      }
+      else if ( Character.isHighSurrogate(ch) || Character.isLowSurrogate(ch) )
+      {
+        percent('?', out);
+      }
+      else
+      {
+        percent(0xe0 | (ch >> 12), out);
+        percent(0x80 | ((ch >> 6) & 0x3f), out);
+        percent(0x80 | (ch & 0x3f), out);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Makes a string safe to use as a URL parameter, using the specified
+   * character set for encoding extended unicode characters if necessary,
+   * appending the result to the string builder.
+   * </p>
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param cs
+   *        The character set to use.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final Charset cs,
+      final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, cs, app);
+      }
+    });
   }
 
   /**
@@ -124,44 +381,96 @@ public final class EscUrl
    */
   public String text( final Object obj, final String charset )
   {
-    if ( obj == null )
-      return null;
-    final String orig = obj.toString();
-    final int len = orig.length();
-    int pos = 0;
-    if ( safeCharsets.contains(charset) )
-      while ( pos < len )
+    return text(obj, Charsets.get(charset));
+  }
+
+  private void decode( final byte[] bytes, final int num, final Charset cs,
+      final Appendable out ) throws IOException
+  {
+    final int max = max(cs);
+    if ( (max >= 0) && (max < 0x100) )
+    {
+      for ( int xi = 0; xi < num; ++xi )
       {
-        if ( !safe.get(orig.charAt(pos)) )
-          break;
-        ++pos;
+        final int bt = bytes[xi] & 0xFF;
+        out.append((bt <= max) ? (char) bt : '\uFFFD');
       }
-    if ( pos >= len )
-      return orig;
+      return;
+    }
     try
     {
-      final StringBuffer buff = new StringBuffer((len * 2) / 3);
-      buff.append(orig, 0, pos);
-      final byte[] arr = orig.substring(pos).getBytes(charset);
-      for ( int xi = 0; xi < arr.length; ++xi )
-      {
-        final int bt = (arr[xi]) & 0xFF;
-        if ( safe.get(bt) )
-        {
-          buff.append((char) bt);
-        }
-        else
-        {
-          buff.append('%');
-          buff.append(hex[(bt >> 4) & 0x0F]);
-          buff.append(hex[bt & 0x0F]);
-        }
-      }
-      return buff.toString();
+      out.append(decoder(cs).decode(ByteBuffer.wrap(bytes, 0, num)));
     }
-    catch ( UnsupportedEncodingException ex )
+    catch ( CharacterCodingException ex )
     {
+      // Cannot happen as we are replacing bad input.
       throw new UnhandledException(ex);
     }
   }
+
+  /**
+   * A new decoder, as decoders are not thread-safe. Not cached, as the common
+   * character sets are decoded directly.
+   */
+  private static CharsetDecoder decoder( final Charset cs )
+  {
+    return cs.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /**
+   * A new encoder, as encoders are not thread-safe. Not cached, as the common
+   * character sets are encoded directly.
+   */
+  private static CharsetEncoder encoder( final Charset cs )
+  {
+    return cs.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private void percent( final int bt, final Appendable out )
+    throws IOException
+  {
+    if ( safe.isSafe((char) bt) )
+    {
+      out.append((char) bt);
+    }
+    else
+    {
+      out.append('%');
+      out.append(HEX[(bt >> 4) & 0x0F]);
+      out.append(HEX[bt & 0x0F]);
+    }
+  }
+
+  /**
+   * The value of the escape sequence (e.g., <code>%2F</code>) at the position,
+   * or -1 if there is not a valid one there.
+   */
+  private static int escaped( final CharSequence str, final int pos,
+      final int len )
+  {
+    if ( ((pos + 2) >= len) || (str.charAt(pos) != '%') )
+      return -1;
+    final int hi = Converter.digit(str.charAt(pos + 1), 16);
+    final int lo = Converter.digit(str.charAt(pos + 2), 16);
+    if ( (hi < 0) || (lo < 0) )
+      return -1;
+    return (hi << 4) | lo;
+  }
+
+  /**
+   * The highest character that can be encoded directly for the character set
+   * (no limit being for UTF-8), or -1 if it needs an encoder.
+   */
+  private static int max( final Charset cs )
+  {
+    if ( Charsets.UTF8.equals(cs) )
+      return Character.MAX_VALUE;
+    if ( Charsets.ISO88591.equals(cs) )
+      return 0xFF;
+    if ( Charsets.USASCII.equals(cs) )
+      return 0x7F;
+    return -1;
+  }
 }
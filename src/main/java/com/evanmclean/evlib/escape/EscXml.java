@@ -34,6 +34,10 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
 /**
  * <p>
  * Escapes character escaping suitable for XML output.
@@ -76,6 +80,95 @@ public final class EscXml
     return Converter.sub(obj, attrConv);
   }
 
+  /**
+   * Performs escaping for an XML attribute, writing the result straight to the
+   * output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, attrConv, out);
+  }
+
+  /**
+   * Performs escaping for an XML attribute, appending the result to the string
+   * builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder attr( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        attr(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Performs escaping for an XML attribute on part of a character array,
+   * writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    attr(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Performs escaping for an XML attribute on part of a character sequence,
+   * writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void attr( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, attrConv, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for an XML attribute) everything written to
+   * it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter attrWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, attrConv);
+  }
+
   /**
    * Performs escaping for text inside an XML CDATA element.
    * 
@@ -94,6 +187,55 @@ public final class EscXml
     return orig.replace(XmlConv.CDATA_BAD, XmlConv.CDATA_GOOD);
   }
 
+  /**
+   * Performs escaping for text inside an XML CDATA element, writing the result
+   * straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void cdata( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.cdata(obj, out);
+  }
+
+  /**
+   * Performs escaping for text inside an XML CDATA element, appending the
+   * result to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder cdata( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        cdata(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Returns a writer that escapes (for text inside an XML CDATA element)
+   * everything written to it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter cdataWriter( final Writer out )
+  {
+    return EscapingWriter.cdata(out);
+  }
+
   /**
    * Performs escaping for text inside an XML comment.
    * 
@@ -106,6 +248,55 @@ public final class EscXml
     return Converter.sub(obj, MlConv.COMMENT_BAD, MlConv.COMMENT_GOOD);
   }
 
+  /**
+   * Performs escaping for text inside an XML comment, writing the result
+   * straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void comment( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.comment(obj, out);
+  }
+
+  /**
+   * Performs escaping for text inside an XML comment, appending the result to
+   * the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder comment( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        comment(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Returns a writer that escapes (for text inside an XML comment) everything
+   * written to it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter commentWriter( final Writer out )
+  {
+    return EscapingWriter.comment(out);
+  }
+
   /**
    * Performs escaping for text inside an XML text element.
    * 
@@ -117,4 +308,93 @@ public final class EscXml
   {
     return Converter.sub(obj, textConv);
   }
+
+  /**
+   * Performs escaping for text inside an XML text element, writing the result
+   * straight to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    Converter.sub(obj, textConv, out);
+  }
+
+  /**
+   * Performs escaping for text inside an XML text element, appending the result
+   * to the string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the escaped text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Performs escaping for text inside an XML text element on part of a
+   * character array, writing the result straight to the output.
+   * 
+   * @param buf
+   *        The characters to escape.
+   * @param off
+   *        The offset of the first character to escape.
+   * @param len
+   *        The number of characters to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final char[] buf, final int off, final int len,
+      final Appendable out ) throws IOException
+  {
+    text(CharBuffer.wrap(buf, off, len), 0, len, out);
+  }
+
+  /**
+   * Performs escaping for text inside an XML text element on part of a
+   * character sequence, writing the result straight to the output.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @param out
+   *        Where to write the escaped text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    Converter.sub(str, start, end, textConv, out);
+  }
+
+  /**
+   * Returns a writer that escapes (for text inside an XML text element)
+   * everything written to it on the fly before passing it on to the output.
+   * 
+   * @param out
+   *        The writer to write the escaped text to.
+   * @return The escaping writer.
+   */
+  public EscapingWriter textWriter( final Writer out )
+  {
+    return EscapingWriter.sub(out, textConv);
+  }
 }
@@ -0,0 +1,498 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * <p>
+ * A writer that escapes everything written to it on the fly before passing it
+ * on to the underlying writer, so arbitrarily large text can be escaped
+ * without holding it all in memory. The output is the same as escaping the
+ * concatenation of everything written in one go (e.g., with
+ * {@link EscXml#text(Object)}), no matter how the text is split between write
+ * calls. The one exception is the CSV writer, which quotes a field longer
+ * than its buffer even if it did not need quoting (see
+ * {@link EscCsv#textWriter(Writer, int)}).
+ * </p>
+ * 
+ * <p>
+ * Obtain one from the relevant escaper, e.g.,
+ * <code>Esc.xml.textWriter(out)</code> or
+ * <code>Esc.csv.textWriter(out)</code>.
+ * </p>
+ * 
+ * <p>
+ * Call {@link #finish()} at the end of each escaped value if the underlying
+ * writer is going to be used for anything else (such as the next field in a
+ * CSV line), or {@link #close()} to finish and close the underlying writer.
+ * Like most writers, this is not thread-safe.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public abstract class EscapingWriter extends FilterWriter
+{
+  /**
+   * The default number of characters that a CSV escaping writer will hold
+   * back while deciding whether the field needs to be quoted (1024).
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private final char[] single = new char[1];
+  private boolean closed;
+
+  EscapingWriter( final Writer out )
+  {
+    super(out);
+  }
+
+  @Override
+  public Writer append( final CharSequence csq ) throws IOException
+  {
+    if ( csq == null )
+      return append("null");
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public Writer append( final CharSequence csq, final int start, final int end )
+    throws IOException
+  {
+    if ( csq == null )
+      return append("null", start, end);
+    if ( (start < 0) || (start > end) || (end > csq.length()) )
+      throw new IndexOutOfBoundsException();
+    ensureOpen();
+    escape(csq, start, end);
+    return this;
+  }
+
+  /**
+   * Finishes the escaped value (if needed) and closes the underlying writer.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if ( closed )
+      return;
+    try
+    {
+      end();
+    }
+    finally
+    {
+      closed = true;
+      out.close();
+    }
+  }
+
+  /**
+   * Writes anything needed to complete the escaped value (such as the closing
+   * quote of a CSV field) and resets the writer, but does not close the
+   * underlying writer. Anything written after this is escaped as a new value.
+   * 
+   * @throws IOException
+   */
+  public void finish() throws IOException
+  {
+    ensureOpen();
+    end();
+  }
+
+  /**
+   * Flushes the underlying writer. Note that a CSV escaping writer may be
+   * holding back some characters until it knows whether the field needs to be
+   * quoted.
+   */
+  @Override
+  public void flush() throws IOException
+  {
+    ensureOpen();
+    out.flush();
+  }
+
+  @Override
+  public void write( final char[] cbuf, final int off, final int len )
+    throws IOException
+  {
+    if ( (off < 0) || (len < 0) || (off > (cbuf.length - len)) )
+      throw new IndexOutOfBoundsException();
+    ensureOpen();
+    escape(CharBuffer.wrap(cbuf), off, off + len);
+  }
+
+  @Override
+  public void write( final int ch ) throws IOException
+  {
+    single[0] = (char) ch;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write( final String str, final int off, final int len )
+    throws IOException
+  {
+    append(str, off, off + len);
+  }
+
+  /**
+   * Called when the current value is finished, to write anything held back
+   * and reset the state ready for the next value.
+   * 
+   * @throws IOException
+   */
+  void end() throws IOException
+  {
+    // empty
+  }
+
+  /**
+   * Escapes part of the character sequence to the underlying writer.
+   * 
+   * @param str
+   *        The characters to escape.
+   * @param start
+   *        The index of the first character to escape.
+   * @param end
+   *        The index after the last character to escape.
+   * @throws IOException
+   */
+  abstract void escape( CharSequence str, int start, int end )
+    throws IOException;
+
+  private void ensureOpen() throws IOException
+  {
+    if ( closed )
+      throw new IOException("Stream closed");
+  }
+
+  /**
+   * Creates an escaping writer that does the same as
+   * {@link Converter#cdata(Object, Appendable)}.
+   */
+  static EscapingWriter cdata( final Writer out )
+  {
+    return new CdataWriter(out);
+  }
+
+  /**
+   * Creates an escaping writer that does the same as
+   * {@link Converter#comment(Object, Appendable)}.
+   */
+  static EscapingWriter comment( final Writer out )
+  {
+    return new CommentWriter(out);
+  }
+
+  /**
+   * Creates an escaping writer that does the same as
+   * {@link Converter#sub(Object, CharConv, Appendable)}.
+   */
+  static EscapingWriter sub( final Writer out, final CharConv conv )
+  {
+    return new SubWriter(out, conv);
+  }
+
+  /**
+   * Creates an escaping writer that does the same as
+   * {@link Converter#sub(Object, CharConv, String, boolean, Appendable)}.
+   */
+  static EscapingWriter sub( final Writer out, final CharConv conv,
+      final String nl, final boolean replace )
+  {
+    return new NewLineWriter(out, conv, nl, replace);
+  }
+
+  /**
+   * Creates an escaping writer that does the same as
+   * {@link Converter#xsub(Object, ExtendedCharConv, Appendable)}, holding
+   * back up to <code>buffer_size</code> characters until it is known whether
+   * the value needs converting. If the value gets longer than that without
+   * needing it, it is converted anyway (e.g., an unnecessarily quoted CSV
+   * field, which is still valid).
+   */
+  static EscapingWriter xsub( final Writer out, final ExtendedCharConv conv,
+      final int buffer_size )
+  {
+    if ( buffer_size < 0 )
+      throw new IllegalArgumentException("Buffer size negative: "
+          + buffer_size);
+    return new ExtendedWriter(out, conv, buffer_size);
+  }
+
+  private static final class CdataWriter extends EscapingWriter
+  {
+    // What is written in place of the '>' of a "]]>", given the "]]" has
+    // already been written.
+    private static final String GOOD_TAIL = XmlConv.CDATA_GOOD.substring(2);
+
+    // The number of consecutive ']' just written (at most 2).
+    private int brackets;
+
+    CdataWriter( final Writer out )
+    {
+      super(out);
+    }
+
+    @Override
+    void end()
+    {
+      brackets = 0;
+    }
+
+    @Override
+    void escape( final CharSequence str, final int start, final int end )
+      throws IOException
+    {
+      int run = start;
+      for ( int pos = start; pos < end; ++pos )
+      {
+        final char ch = str.charAt(pos);
+        if ( ch == ']' )
+        {
+          if ( brackets < 2 )
+            ++brackets;
+        }
+        else
+        {
+          if ( (ch == '>') && (brackets == 2) )
+          {
+            Converter.append(out, str, run, pos);
+            out.write(GOOD_TAIL);
+            run = pos + 1;
+          }
+          brackets = 0;
+        }
+      }
+      Converter.append(out, str, run, end);
+    }
+  }
+
+  private static final class CommentWriter extends EscapingWriter
+  {
+    private boolean dash;
+
+    CommentWriter( final Writer out )
+    {
+      super(out);
+    }
+
+    @Override
+    void end()
+    {
+      dash = false;
+    }
+
+    @Override
+    void escape( final CharSequence str, final int start, final int end )
+      throws IOException
+    {
+      int run = start;
+      for ( int pos = start; pos < end; ++pos )
+        if ( str.charAt(pos) == '-' )
+        {
+          if ( dash )
+          {
+            Converter.append(out, str, run, pos);
+            out.write('_');
+            run = pos;
+          }
+          dash = true;
+        }
+        else
+        {
+          dash = false;
+        }
+      Converter.append(out, str, run, end);
+    }
+  }
+
+  private static final class ExtendedWriter extends EscapingWriter
+  {
+    private final ExtendedCharConv conv;
+    private final char[] buff;
+    private int len;
+    private boolean converting;
+
+    ExtendedWriter( final Writer out, final ExtendedCharConv conv,
+        final int buffer_size )
+    {
+      super(out);
+      this.conv = conv;
+      this.buff = new char[buffer_size];
+    }
+
+    @Override
+    void end() throws IOException
+    {
+      if ( converting )
+      {
+        conv.finish(out);
+        converting = false;
+      }
+      else if ( len > 0 )
+      {
+        out.write(buff, 0, len);
+      }
+      len = 0;
+    }
+
+    @Override
+    void escape( final CharSequence str, final int start, final int end )
+      throws IOException
+    {
+      if ( converting )
+      {
+        Converter.sub(str, start, end, conv, out);
+        return;
+      }
+
+      final int pos = conv.convFrom(str, start, end);
+      if ( pos < 0 )
+      {
+        final int num = end - start;
+        if ( num <= (buff.length - len) )
+        {
+          for ( int xi = start; xi < end; ++xi )
+            buff[len++] = str.charAt(xi);
+          return;
+        }
+      }
+
+      // Everything held back so far needed no conversion.
+      conv.initialise(out);
+      out.write(buff, 0, len);
+      len = 0;
+      converting = true;
+      if ( pos < 0 )
+      {
+        Converter.sub(str, start, end, conv, out);
+      }
+      else
+      {
+        Converter.append(out, str, start, pos);
+        Converter.sub(str, pos, end, conv, out);
+      }
+    }
+  }
+
+  private static final class NewLineWriter extends EscapingWriter
+  {
+    private final CharConv conv;
+    private final String nl;
+    private final boolean replace;
+
+    // Whether the last character written was a carriage return.
+    private boolean cr;
+
+    NewLineWriter( final Writer out, final CharConv conv, final String nl,
+        final boolean replace )
+    {
+      super(out);
+      this.conv = conv;
+      this.nl = nl;
+      this.replace = replace;
+    }
+
+    @Override
+    void end()
+    {
+      cr = false;
+    }
+
+    @Override
+    void escape( final CharSequence str, final int start, final int end )
+      throws IOException
+    {
+      int run = start;
+      for ( int pos = start; pos < end; ++pos )
+      {
+        final char ch = str.charAt(pos);
+        if ( (ch == '\n') && cr )
+        {
+          // The second half of a CR/LF, already handled with the CR.
+          cr = false;
+          if ( replace )
+          {
+            Converter.append(out, str, run, pos);
+            run = pos + 1;
+          }
+          continue;
+        }
+        cr = (ch == '\r');
+        if ( cr || (ch == '\n') )
+        {
+          Converter.append(out, str, run, pos);
+          out.write(nl);
+          // If not replacing, the new line is written along with the next run.
+          run = replace ? (pos + 1) : pos;
+          continue;
+        }
+        final String entity = conv.conv(ch);
+        if ( entity != null )
+        {
+          Converter.append(out, str, run, pos);
+          out.write(entity);
+          run = pos + 1;
+        }
+      }
+      Converter.append(out, str, run, end);
+    }
+  }
+
+  private static final class SubWriter extends EscapingWriter
+  {
+    private final CharConv conv;
+
+    SubWriter( final Writer out, final CharConv conv )
+    {
+      super(out);
+      this.conv = conv;
+    }
+
+    @Override
+    void escape( final CharSequence str, final int start, final int end )
+      throws IOException
+    {
+      Converter.sub(str, start, end, conv, out);
+    }
+  }
+}
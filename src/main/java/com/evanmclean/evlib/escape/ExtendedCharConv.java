@@ -34,6 +34,8 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+
 /**
  * An extended converter used for some more specialised conversions.
  * 
@@ -49,34 +51,32 @@ interface ExtendedCharConv extends CharConv
    * 
    * @param str
    *        The string to be converted.
+   * @param start
+   *        The start of the part of the string to be converted.
+   * @param end
+   *        The end (exclusive) of the part of the string to be converted.
    * @return The position to begin conversion from, or -1 if the string does not
    *         require conversion.
    */
-  int convFrom( final String str );
+  int convFrom( final CharSequence str, final int start, final int end );
 
   /**
-   * Initialise the StringBuilder buffer before we start the conversion. This is
-   * a good spot to put anything that prefix the converted string, such as a
-   * double-quote.
+   * Called before we start the conversion. This is a good spot to write
+   * anything that prefixes the converted string, such as a double-quote.
    * 
-   * @param buff
-   *        An empty buffer.
-   * @param str
-   *        The string that will be converted.
-   * @return Should normally return <code>buff</code>.
+   * @param out
+   *        Where the converted string is being written.
+   * @throws IOException
    */
-  StringBuilder initialise( StringBuilder buff, String str );
+  void initialise( Appendable out ) throws IOException;
 
   /**
-   * Finish-off the StringBuilder buffer after we've done the conversion. This
-   * is a good spot to put anything that suffix the converted string, such as a
-   * double-quote.
+   * Called after we've done the conversion. This is a good spot to write
+   * anything that suffixes the converted string, such as a double-quote.
    * 
-   * @param buff
-   *        The buffer containing the converted string.
-   * @param str
-   *        The string that was converted.
-   * @return Normally return <code>buff.toString()</code>.
+   * @param out
+   *        Where the converted string is being written.
+   * @throws IOException
    */
-  String finish( StringBuilder buff, String str );
+  void finish( Appendable out ) throws IOException;
 }
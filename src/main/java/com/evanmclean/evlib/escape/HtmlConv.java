@@ -35,6 +35,8 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.evanmclean.evlib.escape;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>
@@ -56,6 +58,9 @@ final class HtmlConv extends MlConv
   static final CharConv HTML_ASCII;
   static final CharConv HTML_ASCII_ATTR;
 
+  // All the named entities.
+  static final List<CharSub> ENTITIES;
+
   static final String BR = "<br>";
   static final String XBR = "<br/>";
 
@@ -65,16 +70,18 @@ final class HtmlConv extends MlConv
     subs.add(new CharSub('<', "&lt;"));
     subs.add(new CharSub('&', "&amp;"));
 
-    HTML_MIN = new AggregateCharConv(new CharSubConv(subs), ISO_CONV);
+    HTML_MIN = CompiledCharConv.compile(new CharSubConv(subs), ISO_CONV);
 
     subs.add(new CharSub('"', "&quot;"));
-    HTML_MIN_ATTR = new AggregateCharConv(new CharSubConv(subs), ISO_CONV_ATTR);
+    HTML_MIN_ATTR = CompiledCharConv.compile(new CharSubConv(subs),
+      ISO_CONV_ATTR);
 
     subs.add(new CharSub('>', "&gt;"));
     final CharSubConv basic_entity_conv = new CharSubConv(subs);
 
-    HTML_BASIC = new AggregateCharConv(basic_entity_conv, ISO_CONV);
-    HTML_BASIC_ATTR = new AggregateCharConv(basic_entity_conv, ISO_CONV_ATTR);
+    HTML_BASIC = CompiledCharConv.compile(basic_entity_conv, ISO_CONV);
+    HTML_BASIC_ATTR = CompiledCharConv.compile(basic_entity_conv,
+      ISO_CONV_ATTR);
 
     subs.add(new CharSub('\u00A0', "&nbsp;"));
     subs.add(new CharSub('\u00A1', "&iexcl;"));
@@ -326,11 +333,14 @@ final class HtmlConv extends MlConv
     subs.add(new CharSub('\u20AC', "&euro;"));
 
     final CharSubConv full_entity_conv = new CharSubConv(subs);
-    HTML_FULL = new AggregateCharConv(full_entity_conv, ISO_CONV);
-    HTML_FULL_ATTR = new AggregateCharConv(full_entity_conv, ISO_CONV_ATTR);
+    HTML_FULL = CompiledCharConv.compile(full_entity_conv, ISO_CONV);
+    HTML_FULL_ATTR = CompiledCharConv.compile(full_entity_conv, ISO_CONV_ATTR);
+
+    HTML_ASCII = CompiledCharConv.compile(full_entity_conv, ASCII_CONV);
+    HTML_ASCII_ATTR = CompiledCharConv.compile(full_entity_conv,
+      ASCII_CONV_ATTR);
 
-    HTML_ASCII = new AggregateCharConv(full_entity_conv, ASCII_CONV);
-    HTML_ASCII_ATTR = new AggregateCharConv(full_entity_conv, ASCII_CONV_ATTR);
+    ENTITIES = Collections.unmodifiableList(subs);
   }
 
   private HtmlConv()
@@ -82,11 +82,11 @@ final class JavaConv extends MlConv
     subs.add(new CharSub('"', "\\\""));
     subs.add(new CharSub('\\', "\\\\"));
 
-    JAVA = new AggregateCharConv(new CharSubConv(subs), unicode_conv);
+    JAVA = CompiledCharConv.compile(new CharSubConv(subs), unicode_conv);
 
     subs.add(new CharSub('\'', "\\'"));
 
-    JAVASCRIPT = new AggregateCharConv(new CharSubConv(subs), unicode_conv);
+    JAVASCRIPT = CompiledCharConv.compile(new CharSubConv(subs), unicode_conv);
   }
 
   private JavaConv()
@@ -0,0 +1,143 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * The various character converters for JSON string values.
+ * </p>
+ * 
+ * <p>
+ * Unlike the Javascript converter, the single quote is never escaped (as
+ * <code>\'</code> is not valid JSON), and characters outside of ASCII are left
+ * as they are except for {@link #JSON_ASCII}. The line and paragraph separators
+ * (U+2028 and U+2029) are always escaped, so the output is also safe to use as
+ * Javascript.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+final class JsonConv
+{
+  static final CharConv JSON;
+  static final CharConv JSON_ASCII;
+  static final CharConv JSON_SCRIPT;
+
+  static
+  {
+    final ArrayList<CharSub> subs = new ArrayList<CharSub>();
+    subs.add(new CharSub('\b', "\\b"));
+    subs.add(new CharSub('\t', "\\t"));
+    subs.add(new CharSub('\n', "\\n"));
+    subs.add(new CharSub('\f', "\\f"));
+    subs.add(new CharSub('\r', "\\r"));
+    subs.add(new CharSub('"', "\\\""));
+    subs.add(new CharSub('\\', "\\\\"));
+    final CharConv basic = new CharSubConv(subs);
+
+    JSON = CompiledCharConv.compile(basic, new UnicodeConv() {
+      @Override
+      boolean unsafe( final char ch )
+      {
+        return (ch < ' ') || (ch == '\u2028') || (ch == '\u2029');
+      }
+    });
+
+    JSON_ASCII = CompiledCharConv.compile(basic, new UnicodeConv() {
+      @Override
+      boolean unsafe( final char ch )
+      {
+        return (ch < ' ') || (ch > '~');
+      }
+    });
+
+    JSON_SCRIPT = CompiledCharConv.compile(basic, new UnicodeConv() {
+      @Override
+      boolean unsafe( final char ch )
+      {
+        switch ( ch )
+        {
+          case '<':
+          case '>':
+          case '&':
+          case '\'':
+          case '\u2028':
+          case '\u2029':
+            return true;
+          default:
+            return ch < ' ';
+        }
+      }
+    });
+  }
+
+  private JsonConv()
+  {
+    // empty
+  }
+
+  /**
+   * Converts unsafe characters to a <code>\</code><code>uXXXX</code> escape.
+   */
+  private abstract static class UnicodeConv implements CharConv
+  {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    UnicodeConv()
+    {
+      // empty
+    }
+
+    public String conv( final char ch )
+    {
+      if ( !unsafe(ch) )
+        return null;
+      final char[] arr = new char[6];
+      arr[0] = '\\';
+      arr[1] = 'u';
+      arr[2] = HEX[(ch >> 12) & 0xF];
+      arr[3] = HEX[(ch >> 8) & 0xF];
+      arr[4] = HEX[(ch >> 4) & 0xF];
+      arr[5] = HEX[ch & 0xF];
+      return new String(arr);
+    }
+
+    abstract boolean unsafe( char ch );
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.util.BitSet;
+
+/**
+ * Finds the first character in a string that needs escaping, checking eight
+ * characters at a time against a bitmap of the safe characters below 256. The
+ * common case of a string that needs no escaping at all is then just a quick
+ * run through the string, without any calls to the converter.
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+final class SafeChars
+{
+  private static final int LOW = 256;
+
+  // One bit for each character below 256, set if it is safe.
+  private final long[] bits = new long[LOW / 64];
+  // Decides the characters from 256 up, or null if they are all unsafe.
+  private final CharConv high;
+
+  /**
+   * A character is safe if the converter has no substitution for it.
+   * 
+   * @param conv
+   *        The converter.
+   */
+  SafeChars( final CharConv conv )
+  {
+    for ( char ch = 0; ch < LOW; ++ch )
+      if ( conv.conv(ch) == null )
+        bits[ch >>> 6] |= 1L << ch;
+    this.high = conv;
+  }
+
+  /**
+   * A character is safe if it is set in the bit set. Characters from 256 up
+   * are never safe.
+   * 
+   * @param safe
+   *        The safe characters.
+   */
+  SafeChars( final BitSet safe )
+  {
+    for ( int ch = safe.nextSetBit(0); (ch >= 0) && (ch < LOW); ch = safe
+        .nextSetBit(ch + 1) )
+      bits[ch >>> 6] |= 1L << ch;
+    this.high = null;
+  }
+
+  /**
+   * Whether the character is safe.
+   * 
+   * @param ch
+   *        The character.
+   * @return True if the character does not need escaping.
+   */
+  boolean isSafe( final char ch )
+  {
+    if ( ch < LOW )
+      return ((bits[ch >>> 6] >>> ch) & 1L) != 0;
+    return (high != null) && (high.conv(ch) == null);
+  }
+
+  /**
+   * Finds the first character that needs escaping.
+   * 
+   * @param str
+   *        The string to check.
+   * @param start
+   *        The index to start checking from.
+   * @param end
+   *        The index after the last character to check.
+   * @return The index of the first character that needs escaping, or
+   *         <code>end</code> if there are none.
+   */
+  int scan( final CharSequence str, final int start, final int end )
+  {
+    final long[] bt = bits;
+    int pos = start;
+    while ( pos < end )
+    {
+      // Eight at a time while they are all safe characters below 256.
+      for ( final int last = end - 8; pos <= last; pos += 8 )
+      {
+        final char c0 = str.charAt(pos);
+        final char c1 = str.charAt(pos + 1);
+        final char c2 = str.charAt(pos + 2);
+        final char c3 = str.charAt(pos + 3);
+        final char c4 = str.charAt(pos + 4);
+        final char c5 = str.charAt(pos + 5);
+        final char c6 = str.charAt(pos + 6);
+        final char c7 = str.charAt(pos + 7);
+        if ( (c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) >= LOW )
+          break;
+        // The shift only uses the bottom six bits of the character.
+        if ( (((bt[c0 >>> 6] >>> c0) & (bt[c1 >>> 6] >>> c1)
+            & (bt[c2 >>> 6] >>> c2) & (bt[c3 >>> 6] >>> c3)
+            & (bt[c4 >>> 6] >>> c4) & (bt[c5 >>> 6] >>> c5)
+            & (bt[c6 >>> 6] >>> c6) & (bt[c7 >>> 6] >>> c7)) & 1L) == 0 )
+          break;
+      }
+
+      // Then one at a time through the block that stopped us.
+      final int stop = Math.min(end, pos + 8);
+      for ( ; pos < stop; ++pos )
+        if ( !isSafe(str.charAt(pos)) )
+          return pos;
+    }
+    return end;
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * <p>
+ * Decodes the character references in mark-up text such as HTML or XML: named
+ * entities (e.g., <code>&amp;lt;</code>), and decimal (
+ * <code>&amp;#60;</code>) or hex (<code>&amp;#x3C;</code>) numeric references.
+ * Anything that is not a valid reference (including a missing semi-colon or
+ * an unknown entity name) is left as is.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class UnescMl
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final EntityDecoder decoder;
+
+  UnescMl( final EntityDecoder decoder )
+  {
+    this.decoder = decoder;
+  }
+
+  /**
+   * Returns a reader that decodes the text from another reader on the fly.
+   * 
+   * @param in
+   *        The reader to decode.
+   * @return The decoding reader. Closing it closes <code>in</code>.
+   */
+  public Reader reader( final Reader in )
+  {
+    if ( in == null )
+      throw new NullPointerException();
+    return new DecodingReader(in, decoder);
+  }
+
+  /**
+   * Decodes the character references in the text.
+   * 
+   * @param obj
+   * @return The decoded string (the same string if there is nothing to
+   *         decode), or <code>null</code> if <code>obj</code> was
+   *         <code>null</code>.
+   */
+  public String text( final Object obj )
+  {
+    if ( obj == null )
+      return null;
+    final String orig = obj.toString();
+    if ( orig.indexOf('&') < 0 )
+      return orig;
+    return text(orig, new StringBuilder(orig.length())).toString();
+  }
+
+  /**
+   * Decodes the character references in the text, writing the result straight
+   * to the output.
+   * 
+   * @param obj
+   *        Nothing is written if <code>null</code>.
+   * @param out
+   *        Where to write the decoded text.
+   * @throws IOException
+   */
+  public void text( final Object obj, final Appendable out )
+    throws IOException
+  {
+    if ( obj != null )
+    {
+      final CharSequence str = Converter.chars(obj);
+      text(str, 0, str.length(), out);
+    }
+  }
+
+  /**
+   * Decodes the character references in the text, appending the result to the
+   * string builder.
+   * 
+   * @param obj
+   *        Nothing is appended if <code>null</code>.
+   * @param out
+   *        Where to append the decoded text.
+   * @return The string builder passed in.
+   */
+  public StringBuilder text( final Object obj, final StringBuilder out )
+  {
+    return Converter.build(out, new Converter.Appender() {
+      public void appendTo( final Appendable app ) throws IOException
+      {
+        text(obj, app);
+      }
+    });
+  }
+
+  /**
+   * Decodes the character references in part of a character sequence, writing
+   * the result straight to the output.
+   * 
+   * @param str
+   *        The characters to decode.
+   * @param start
+   *        The index of the first character to decode.
+   * @param end
+   *        The index after the last character to decode.
+   * @param out
+   *        Where to write the decoded text.
+   * @throws IOException
+   */
+  public void text( final CharSequence str, final int start, final int end,
+      final Appendable out ) throws IOException
+  {
+    int run = start;
+    int pos = start;
+    while ( pos < end )
+      if ( str.charAt(pos) == '&' )
+      {
+        Converter.append(out, str, run, pos);
+        final int len = decoder.decode(str, pos, end, out);
+        if ( len > 0 )
+        {
+          pos += len;
+          run = pos;
+        }
+        else
+        {
+          run = pos++;
+        }
+      }
+      else
+      {
+        ++pos;
+      }
+    Converter.append(out, str, run, end);
+  }
+
+  private static final class DecodingReader extends Reader
+  {
+    private final Reader in;
+    private final EntityDecoder decoder;
+    private final char[] buff = new char[BUFFER_SIZE];
+    private final CharBuffer chars = CharBuffer.wrap(buff);
+    private int pos;
+    private int lim;
+    private boolean eof;
+    // A decoded reference that did not fit in the caller's buffer.
+    private final StringBuilder pending = new StringBuilder(2);
+
+    DecodingReader( final Reader in, final EntityDecoder decoder )
+    {
+      super(in);
+      this.in = in;
+      this.decoder = decoder;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      in.close();
+    }
+
+    @Override
+    public int read( final char[] cbuf, final int off, final int len )
+      throws IOException
+    {
+      if ( (off < 0) || (len < 0) || (off > (cbuf.length - len)) )
+        throw new IndexOutOfBoundsException();
+      if ( len == 0 )
+        return 0;
+      int num = 0;
+      while ( num < len )
+      {
+        if ( pending.length() > 0 )
+        {
+          cbuf[off + num++] = pending.charAt(0);
+          pending.deleteCharAt(0);
+          continue;
+        }
+        if ( pos >= lim )
+        {
+          // Don't block for more once we have something to return.
+          if ( eof || ((num > 0) && !in.ready()) )
+            break;
+          fill();
+          continue;
+        }
+        if ( buff[pos] != '&' )
+        {
+          // Copy straight across up to the next reference.
+          final int stop = Math.min(lim, pos + (len - num));
+          final int from = pos;
+          while ( (pos < stop) && (buff[pos] != '&') )
+            ++pos;
+          System.arraycopy(buff, from, cbuf, off + num, pos - from);
+          num += pos - from;
+          continue;
+        }
+        if ( ((lim - pos) < decoder.maxLength) && !eof )
+        {
+          // Make sure the whole reference is in the buffer.
+          fill();
+          continue;
+        }
+        final int ref = decoder.decode(chars, pos, lim, pending);
+        if ( ref > 0 )
+        {
+          pos += ref;
+        }
+        else
+        {
+          cbuf[off + num++] = '&';
+          ++pos;
+        }
+      }
+      return ((num == 0) && eof) ? -1 : num;
+    }
+
+    @Override
+    public boolean ready() throws IOException
+    {
+      return (pending.length() > 0) || (pos < lim) || in.ready();
+    }
+
+    /**
+     * Moves what is left to the start of the buffer, and reads more after it.
+     */
+    private void fill() throws IOException
+    {
+      if ( pos > 0 )
+      {
+        System.arraycopy(buff, pos, buff, 0, lim - pos);
+        lim -= pos;
+        pos = 0;
+      }
+      final int num = in.read(buff, lim, buff.length - lim);
+      if ( num < 0 )
+        eof = true;
+      else
+        lim += num;
+    }
+  }
+}
@@ -35,6 +35,8 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.evanmclean.evlib.escape;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * <p>
@@ -53,6 +55,9 @@ final class XmlConv extends MlConv
   static final CharConv XML_ASCII;
   static final CharConv XML_ASCII_ATTR;
 
+  // All the named entities.
+  static final List<CharSub> ENTITIES;
+
   static final String CDATA_BAD = "]]>";
   static final String CDATA_GOOD = "]]]><![CDATA[]>";
 
@@ -67,10 +72,12 @@ final class XmlConv extends MlConv
 
     final CharSubConv entity_conv = new CharSubConv(subs);
 
-    XML = new AggregateCharConv(entity_conv, ISO_CONV);
-    XML_ATTR = new AggregateCharConv(entity_conv, ISO_CONV_ATTR);
-    XML_ASCII = new AggregateCharConv(entity_conv, ASCII_CONV);
-    XML_ASCII_ATTR = new AggregateCharConv(entity_conv, ASCII_CONV_ATTR);
+    XML = CompiledCharConv.compile(entity_conv, ISO_CONV);
+    XML_ATTR = CompiledCharConv.compile(entity_conv, ISO_CONV_ATTR);
+    XML_ASCII = CompiledCharConv.compile(entity_conv, ASCII_CONV);
+    XML_ASCII_ATTR = CompiledCharConv.compile(entity_conv, ASCII_CONV_ATTR);
+
+    ENTITIES = Collections.unmodifiableList(subs);
   }
 
   private XmlConv()
@@ -0,0 +1,205 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * How {@link Files#copy(java.io.File, java.io.File, boolean, CopyStrategy,
+ * boolean)} moves the bytes of a file. Which is fastest depends on the
+ * platform and the size of the file; {@link #AUTO} is a good choice for most.
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public enum CopyStrategy
+{
+  /**
+   * Uses {@link #STREAM} for files smaller than {@link #AUTO_THRESHOLD} bytes,
+   * where the set up cost of a transfer outweighs anything it saves, and
+   * {@link #TRANSFER_TO} for anything larger.
+   */
+  AUTO
+  {
+    @Override
+    void copy( final FileChannel from, final FileChannel to, final long size )
+      throws IOException
+    {
+      if ( size < AUTO_THRESHOLD )
+        STREAM.copy(from, to, size);
+      else
+        TRANSFER_TO.copy(from, to, size);
+    }
+  },
+  /**
+   * Reads and writes the file through a buffer.
+   */
+  STREAM
+  {
+    @Override
+    void copy( final FileChannel from, final FileChannel to, final long size )
+      throws IOException
+    {
+      final ByteBuffer buff = ByteBuffer.allocate((int) Math.max(1L, Math.min(
+        size, BUFFER_SIZE)));
+      long position = 0;
+      int zeros_looped = 0;
+      while ( position < size )
+      {
+        buff.clear();
+        if ( buff.remaining() > (size - position) )
+          buff.limit((int) (size - position));
+        final int read = from.read(buff);
+        if ( read < 0 )
+          throw new IOException("File changed size while copying");
+        if ( read == 0 )
+        {
+          if ( ++zeros_looped > 10 )
+            throw new IOException("Error while reading file");
+          continue;
+        }
+        zeros_looped = 0;
+        buff.flip();
+        while ( buff.hasRemaining() )
+          to.write(buff);
+        position += read;
+      }
+    }
+  },
+  /**
+   * Uses {@link FileChannel#transferFrom}, in chunks of at most
+   * {@link #CHUNK_SIZE} bytes.
+   */
+  TRANSFER_FROM
+  {
+    @Override
+    void copy( final FileChannel from, final FileChannel to, final long size )
+      throws IOException
+    {
+      long position = 0;
+      int zeros_looped = 0;
+      while ( position < size )
+      {
+        final long count = Math.min(size - position, CHUNK_SIZE);
+        final long read = to.transferFrom(from, position, count);
+        if ( read > 0 )
+        {
+          position += read;
+          zeros_looped = 0;
+        }
+        else
+        {
+          checkZero(from, position, ++zeros_looped);
+        }
+      }
+    }
+  },
+  /**
+   * Uses {@link FileChannel#transferTo}, in chunks of at most
+   * {@link #CHUNK_SIZE} bytes. Where the platform supports it (e.g., Linux)
+   * this lets the operating system copy the file without it passing through
+   * the JVM at all.
+   */
+  TRANSFER_TO
+  {
+    @Override
+    void copy( final FileChannel from, final FileChannel to, final long size )
+      throws IOException
+    {
+      long position = 0;
+      int zeros_looped = 0;
+      while ( position < size )
+      {
+        final long count = Math.min(size - position, CHUNK_SIZE);
+        final long written = from.transferTo(position, count, to);
+        if ( written > 0 )
+        {
+          position += written;
+          zeros_looped = 0;
+        }
+        else
+        {
+          checkZero(from, position, ++zeros_looped);
+        }
+      }
+    }
+  };
+
+  /**
+   * Files smaller than this are copied with {@link #STREAM} by {@link #AUTO}
+   * (64KiB).
+   */
+  public static final long AUTO_THRESHOLD = 64L * 1024L;
+
+  /**
+   * The most bytes asked for in a single transfer (64MiB). Some platforms
+   * cannot transfer more than 2GiB at once, and smaller chunks stop a single
+   * transfer from tying up the operating system for too long.
+   */
+  public static final long CHUNK_SIZE = 64L * 1024L * 1024L;
+
+  /**
+   * The size of the buffer used by {@link #STREAM} (64KiB).
+   */
+  static final long BUFFER_SIZE = 64L * 1024L;
+
+  /**
+   * Copies the first <code>size</code> bytes of one channel to another, both
+   * starting at position zero.
+   * 
+   * @param from
+   * @param to
+   * @param size
+   * @throws IOException
+   */
+  abstract void copy( FileChannel from, FileChannel to, long size )
+    throws IOException;
+
+  /**
+   * Called when a transfer moved no bytes. Fails straight away if the file has
+   * shrunk, otherwise allows a few attempts before giving up.
+   */
+  static void checkZero( final FileChannel from, final long position,
+      final int zeros_looped ) throws IOException
+  {
+    if ( position >= from.size() )
+      throw new IOException("File changed size while copying");
+    if ( zeros_looped > 10 )
+      throw new IOException("Error while reading file");
+  }
+}
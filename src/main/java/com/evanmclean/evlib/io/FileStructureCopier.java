@@ -36,9 +36,23 @@ package com.evanmclean.evlib.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
+ * <p>
  * Recursively copies a set of files. Can implement your own error handling.
+ * </p>
+ * 
+ * <p>
+ * The copy can also be performed by a pool of threads (see
+ * {@link #copy(File, File, int)}), in which case the {@link #filter},
+ * {@link #postCopy} and {@link #errorHandler} methods are called from multiple
+ * threads at once, so any overrides must be thread-safe.
+ * </p>
  * 
  * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
  *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
@@ -69,21 +83,8 @@ public class FileStructureCopier
     if ( !filter(from, to) )
       return true;
 
-    if ( to.exists() )
-    {
-      if ( !to.isDirectory() )
-      {
-        errorHandler(from, to, new IOException("Not a directory: "
-            + to.toString()));
-        return false;
-      }
-    }
-    else if ( !to.mkdirs() )
-    {
-      errorHandler(from, to, new IOException("Could not create directory: "
-          + to.toString()));
+    if ( !makeFolder(from, to) )
       return false;
-    }
 
     postCopy(from, to);
 
@@ -116,6 +117,78 @@ public class FileStructureCopier
     return okay;
   }
 
+  /**
+   * <p>
+   * Perform recursive copying using a pool of threads, so many files are
+   * copied at once. Sub-folders are copied as separate tasks, and the files in
+   * each folder are shared out in batches, so both deep and wide structures
+   * are spread across the threads.
+   * </p>
+   * 
+   * <p>
+   * Unlike {@link #copy(File, File)}, the paths are not made canonical, so
+   * symbolic links are copied as the files and folders they point to but
+   * under their own names. If the {@link #errorHandler} throws an exception no
+   * new files are started, and the exception is thrown once the files already
+   * being copied have finished. The order that files are copied in is not
+   * defined, but a folder is always created (and passed to {@link #postCopy})
+   * before any of its contents are copied.
+   * </p>
+   * 
+   * @param from
+   * @param to
+   * @param threads
+   *        The number of threads to copy with. If one or less, this does the
+   *        same as {@link #copy(File, File)}.
+   * @return False if there was an error copying any file at all.
+   * @throws IOException
+   *         Other errors.
+   */
+  public final boolean copy( final File from, final File to, final int threads )
+    throws IOException
+  {
+    if ( threads <= 1 )
+      return copy(from, to);
+    if ( !from.isDirectory() )
+      return simpleFileCopy(from, to);
+
+    final ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try
+    {
+      return new ParallelCopy(exec).run(from, to);
+    }
+    finally
+    {
+      exec.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates the destination folder if needed.
+   * 
+   * @return False if there was an error.
+   */
+  private boolean makeFolder( final File from, final File to )
+    throws IOException
+  {
+    if ( to.exists() )
+    {
+      if ( !to.isDirectory() )
+      {
+        errorHandler(from, to, new IOException("Not a directory: "
+            + to.toString()));
+        return false;
+      }
+    }
+    else if ( !to.mkdirs() )
+    {
+      errorHandler(from, to, new IOException("Could not create directory: "
+          + to.toString()));
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Performs simple, standard copy of file.
    * 
@@ -183,4 +256,114 @@ public class FileStructureCopier
   {
     // empty
   }
+
+  /**
+   * Copies a folder structure with an executor. Each task copies either a
+   * folder (creating it and queueing up tasks for its contents) or a batch of
+   * files. Tasks never wait on each other, the calling thread just waits until
+   * there are no tasks left.
+   */
+  private final class ParallelCopy
+  {
+    // The most files copied by a single task.
+    private static final int BATCH_SIZE = 32;
+
+    private final TaskTracker tasks;
+    private volatile boolean okay = true;
+
+    ParallelCopy( final ExecutorService exec )
+    {
+      tasks = new TaskTracker(exec);
+    }
+
+    boolean run( final File from, final File to ) throws IOException
+    {
+      submitFolder(from, to);
+      try
+      {
+        tasks.await();
+      }
+      catch ( InterruptedException ex )
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted copying " + from);
+      }
+      return okay;
+    }
+
+    /**
+     * Copies the folder, and queues up its contents.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    void copyFolder( final File from, final File to ) throws IOException
+    {
+      if ( !filter(from, to) )
+        return;
+      if ( !makeFolder(from, to) )
+      {
+        okay = false;
+        return;
+      }
+      postCopy(from, to);
+
+      final String[] names = from.list();
+      if ( names == null )
+      {
+        okay = false;
+        errorHandler(from, to, new IOException("Could not list directory: "
+            + from.toString()));
+        return;
+      }
+
+      List<File> batch = new ArrayList<File>();
+      for ( String name : names )
+      {
+        if ( tasks.isAborted() )
+          return;
+        final File from_file = new File(from, name);
+        if ( from_file.isDirectory() )
+        {
+          submitFolder(from_file, new File(to, name));
+        }
+        else
+        {
+          batch.add(from_file);
+          if ( batch.size() >= BATCH_SIZE )
+          {
+            submitFiles(batch, to);
+            batch = new ArrayList<File>();
+          }
+        }
+      }
+      if ( !batch.isEmpty() )
+        submitFiles(batch, to);
+    }
+
+    private void submitFiles( final List<File> files, final File to )
+    {
+      tasks.submit(new TaskTracker.Task() {
+        @SuppressWarnings( "synthetic-access" )
+        public void run() throws IOException
+        {
+          for ( File from_file : files )
+          {
+            if ( tasks.isAborted() )
+              return;
+            if ( !simpleFileCopy(from_file, new File(to, from_file.getName())) )
+              okay = false;
+          }
+        }
+      });
+    }
+
+    private void submitFolder( final File from, final File to )
+    {
+      tasks.submit(new TaskTracker.Task() {
+        public void run() throws IOException
+        {
+          copyFolder(from, to);
+        }
+      });
+    }
+  }
 }
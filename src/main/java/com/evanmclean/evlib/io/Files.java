@@ -42,6 +42,7 @@ import java.lang.reflect.Method;
 import java.nio.channels.FileChannel;
 
 import com.evanmclean.evlib.exceptions.UnhandledException;
+import com.evanmclean.evlib.lang.Str;
 
 /**
  * Perform various file related operations. Also see {@link Folders}.
@@ -58,8 +59,8 @@ public final class Files
    * </p>
    * 
    * <p>
-   * Uses the java.nio.channels logic to efficiently copy a file without having
-   * to create ancillary temporary buffers and such.
+   * Uses the java.nio.channels logic to efficiently copy a file (see
+   * {@link CopyStrategy#AUTO}).
    * </p>
    * 
    * @param from
@@ -79,8 +80,8 @@ public final class Files
    * </p>
    * 
    * <p>
-   * Uses the java.nio.channels logic to efficiently copy a file without having
-   * to create ancillary temporary buffers and such.
+   * Uses the java.nio.channels logic to efficiently copy a file (see
+   * {@link CopyStrategy#AUTO}).
    * </p>
    * 
    * @param from
@@ -93,6 +94,38 @@ public final class Files
    */
   public static void copy( final File from, final File to,
       final boolean preserve_date ) throws IOException
+  {
+    copy(from, to, preserve_date, CopyStrategy.AUTO, false);
+  }
+
+  /**
+   * <p>
+   * Efficient file copy, using the specified strategy to move the bytes.
+   * </p>
+   * 
+   * <p>
+   * If <code>sync</code> is true the destination file is forced to the
+   * storage device before it is closed (like <code>fsync</code>), so the copy
+   * survives a crash once this returns. This is much slower, particularly for
+   * lots of small files.
+   * </p>
+   * 
+   * @param from
+   *        Source file to copy.
+   * @param to
+   *        Destination file that will be overwritten.
+   * @param preserve_date
+   *        If true then the last modified date is preserved.
+   * @param strategy
+   *        How to copy the bytes.
+   * @param sync
+   *        If true the destination is written to the storage device before
+   *        returning.
+   * @throws IOException
+   */
+  public static void copy( final File from, final File to,
+      final boolean preserve_date, final CopyStrategy strategy,
+      final boolean sync ) throws IOException
   {
     final FileChannel fromc = new FileInputStream(from).getChannel();
     try
@@ -100,24 +133,19 @@ public final class Files
       final FileChannel toc = new FileOutputStream(to).getChannel();
       try
       {
-        final long size = fromc.size();
-        long position = 0;
-        int zeros_looped = 0;
-        while ( position < size )
+        try
         {
-          final long read = toc.transferFrom(fromc, position, size - position);
-          if ( read > 0 )
-          {
-            position += read;
-            zeros_looped = 0;
-          }
-          else
-          {
-            ++zeros_looped;
-            if ( zeros_looped > 10 )
-              throw new IOException("Error while reading file: " + from);
-          }
+          strategy.copy(fromc, toc, fromc.size());
         }
+        catch ( IOException ex )
+        {
+          final IOException ioex = new IOException(ex.getMessage() + ": "
+              + from);
+          ioex.initCause(ex);
+          throw ioex;
+        }
+        if ( sync )
+          toc.force(true);
       }
       finally
       {
@@ -289,6 +317,49 @@ public final class Files
     }
   }
 
+  /**
+   * Get the extension of the file (not including the '.'), or an empty string
+   * if none. A name starting with a '.' and with no other '.' in it (e.g.,
+   * <code>.profile</code>) has no extension.
+   * 
+   * @param filename
+   * @return The file extension, or <code>null</code> if the file name is
+   *         <code>null</code>.
+   */
+  public static String getExtension( final String filename )
+  {
+    if ( filename == null )
+      return null;
+    final int extpos = filename.lastIndexOf('.');
+    if ( extpos <= 0 )
+      return Str.EMPTY;
+
+    // Check that we are still in the base file part.
+    final int len = filename.length();
+    for ( int xi = extpos + 1; xi < len; ++xi )
+    {
+      final char ch = filename.charAt(xi);
+      switch ( ch )
+      {
+        case '/':
+        case '\\':
+          return Str.EMPTY;
+      }
+    }
+
+    // Check that we are not at the start of the base file part. (i.e., The base
+    // filename starts with a '.' and has no extension.
+    if ( extpos > 0 )
+      switch ( filename.charAt(extpos - 1) )
+      {
+        case '/':
+        case '\\':
+          return Str.EMPTY;
+      }
+
+    return filename.substring(extpos + 1);
+  }
+
   /**
    * Checks the path specified is a zero length file, an empty folder or does
    * not exist.
@@ -0,0 +1,455 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.evanmclean.evlib.security.Digests;
+
+/**
+ * <p>
+ * Incrementally synchronises a folder structure to a destination, copying only
+ * the files that are new or have changed, so re-copying a large structure
+ * where little has changed is cheap. Unlike {@link Folders#copy(File, File)},
+ * the destination may already exist and have content.
+ * </p>
+ * 
+ * <p>
+ * By default a file is considered changed if its size or last modified date
+ * differs from the destination file. If {@link #setCompareContents(boolean)}
+ * is set, files of the same size are compared by a digest of their contents
+ * instead of their dates. Files and folders in the destination that are not in
+ * the source (orphans) are left alone unless
+ * {@link #setDeleteOrphans(boolean)} is set. With
+ * {@link #setDryRun(boolean)} nothing is changed, but the returned
+ * {@link Report} lists what would have been done.
+ * </p>
+ * 
+ * <p>
+ * Like {@link FileStructureCopier}, the {@link #filter} and
+ * {@link #errorHandler} methods can be overridden.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class FolderSync
+{
+  private boolean compareContents;
+  private boolean deleteOrphans;
+  private boolean dryRun;
+  private long modifiedTolerance;
+
+  public FolderSync()
+  {
+    // empty
+  }
+
+  /**
+   * Compare files of the same size by a digest of their contents instead of by
+   * their last modified dates (default false). A file whose contents are the
+   * same but whose date differs is not copied, but the destination date is
+   * updated.
+   * 
+   * @param compare_contents
+   */
+  public void setCompareContents( final boolean compare_contents )
+  {
+    compareContents = compare_contents;
+  }
+
+  /**
+   * Delete files and folders in the destination that do not exist in the
+   * source (default false).
+   * 
+   * @param delete_orphans
+   */
+  public void setDeleteOrphans( final boolean delete_orphans )
+  {
+    deleteOrphans = delete_orphans;
+  }
+
+  /**
+   * Do not change anything, just report what would be done (default false).
+   * 
+   * @param dry_run
+   */
+  public void setDryRun( final boolean dry_run )
+  {
+    dryRun = dry_run;
+  }
+
+  /**
+   * How many milliseconds the last modified dates can differ by and still be
+   * considered the same (default zero). Useful when the destination is on a
+   * file system that stores dates with less precision than the source (e.g.,
+   * 2000 for FAT).
+   * 
+   * @param millis
+   */
+  public void setModifiedTolerance( final long millis )
+  {
+    modifiedTolerance = millis;
+  }
+
+  /**
+   * Synchronise the destination with the source.
+   * 
+   * @param from
+   *        The folder (or file) to synchronise from.
+   * @param to
+   *        The folder (or file) to synchronise to. Created if it does not
+   *        exist.
+   * @return What was (or for a dry run, would have been) done.
+   * @throws IOException
+   *         Errors passed on by {@link #errorHandler}.
+   */
+  public final Report sync( final File from, final File to )
+    throws IOException
+  {
+    if ( !from.exists() )
+      throw new IOException("Does not exist: " + from.toString());
+    final Report report = new Report(dryRun);
+    if ( from.isDirectory() )
+      syncFolder(from, to, report);
+    else
+      syncFile(from, to, report);
+    return report;
+  }
+
+  /**
+   * By default, throws the IOException that was passed in to it. Can be
+   * overridden to perform other behaviour. If it returns normally the file is
+   * recorded as failed in the report and the synchronisation continues.
+   * 
+   * @param from
+   * @param to
+   * @param exception
+   * @throws IOException
+   */
+  protected void errorHandler( @SuppressWarnings( "unused" ) final File from,
+      @SuppressWarnings( "unused" ) final File to, final IOException exception )
+    throws IOException
+  {
+    throw exception;
+  }
+
+  /**
+   * Can be overridden to filter which files and folders to synchronise. A
+   * destination file or folder that is filtered out is never deleted as an
+   * orphan. For orphans, <code>from</code> is where the source would have
+   * been.
+   * 
+   * @param from
+   * @param to
+   * @return Return true if we should synchronise this file or folder.
+   */
+  protected boolean filter( @SuppressWarnings( "unused" ) final File from,
+      @SuppressWarnings( "unused" ) final File to )
+  {
+    return true;
+  }
+
+  /**
+   * Works out if the source file needs to be copied over an existing
+   * destination file, fixing the date of the destination file if the contents
+   * are the same.
+   */
+  private boolean changed( final File from, final File to ) throws IOException
+  {
+    if ( from.length() != to.length() )
+      return true;
+    final long from_mod = from.lastModified();
+    final long diff = Math.abs(from_mod - to.lastModified());
+    if ( diff <= modifiedTolerance )
+      return compareContents && (!Digests.md5(from).equals(Digests.md5(to)));
+    if ( !compareContents )
+      return true;
+    if ( !Digests.md5(from).equals(Digests.md5(to)) )
+      return true;
+    if ( (!dryRun) && (from_mod != 0L) )
+      to.setLastModified(from_mod);
+    return false;
+  }
+
+  private void delete( final File from, final File to, final Report report )
+    throws IOException
+  {
+    try
+    {
+      if ( !dryRun )
+      {
+        if ( to.isDirectory() )
+          Folders.del(to);
+        else
+          Files.del(to);
+      }
+      report.deleted.add(to);
+    }
+    catch ( IOException ex )
+    {
+      report.failed.add(to);
+      errorHandler(from, to, ex);
+    }
+  }
+
+  private void syncFile( final File from, final File to, final Report report )
+    throws IOException
+  {
+    if ( !filter(from, to) )
+      return;
+    try
+    {
+      if ( to.isDirectory() )
+      {
+        if ( !dryRun )
+          Folders.del(to);
+        report.deleted.add(to);
+      }
+      else if ( to.exists() && (!changed(from, to)) )
+      {
+        ++report.unchanged;
+        return;
+      }
+      if ( !dryRun )
+        Files.copy(from, to);
+      report.copied.add(to);
+      report.bytesCopied += from.length();
+    }
+    catch ( IOException ex )
+    {
+      report.failed.add(to);
+      errorHandler(from, to, ex);
+    }
+  }
+
+  private void syncFolder( final File from, final File to, final Report report )
+    throws IOException
+  {
+    if ( !filter(from, to) )
+      return;
+
+    final boolean exists = to.isDirectory();
+    if ( (!exists) && to.exists() )
+    {
+      // A file in the way.
+      delete(from, to, report);
+      if ( (!dryRun) && to.exists() )
+        return;
+    }
+    if ( !exists )
+    {
+      if ( !(dryRun || to.mkdirs()) )
+      {
+        report.failed.add(to);
+        errorHandler(from, to, new IOException("Could not create directory: "
+            + to.toString()));
+        return;
+      }
+      report.createdFolders.add(to);
+    }
+
+    final String[] names = from.list();
+    if ( names == null )
+    {
+      report.failed.add(to);
+      errorHandler(from, to, new IOException("Could not list directory: "
+          + from.toString()));
+      return;
+    }
+
+    for ( String name : names )
+    {
+      final File from_file = new File(from, name);
+      final File to_file = new File(to, name);
+      if ( from_file.isDirectory() )
+        syncFolder(from_file, to_file, report);
+      else
+        syncFile(from_file, to_file, report);
+    }
+
+    if ( deleteOrphans && exists )
+    {
+      final String[] to_names = to.list();
+      if ( to_names != null )
+      {
+        final Set<String> from_names = new HashSet<String>(names.length);
+        Collections.addAll(from_names, names);
+        for ( String name : to_names )
+          if ( !from_names.contains(name) )
+          {
+            final File from_file = new File(from, name);
+            final File to_file = new File(to, name);
+            if ( filter(from_file, to_file) )
+              delete(from_file, to_file, report);
+          }
+      }
+    }
+  }
+
+  /**
+   * What was done by a synchronisation, or for a dry run, what would have been
+   * done.
+   */
+  public static final class Report
+  {
+    private final boolean dryRun;
+    final List<File> copied = new ArrayList<File>();
+    final List<File> createdFolders = new ArrayList<File>();
+    final List<File> deleted = new ArrayList<File>();
+    final List<File> failed = new ArrayList<File>();
+    long bytesCopied;
+    int unchanged;
+
+    Report( final boolean dry_run )
+    {
+      this.dryRun = dry_run;
+    }
+
+    /**
+     * The total size of the files copied.
+     * 
+     * @return The total size of the files copied.
+     */
+    public long getBytesCopied()
+    {
+      return bytesCopied;
+    }
+
+    /**
+     * The destination files that were copied, in the order they were copied.
+     * 
+     * @return The destination files that were copied.
+     */
+    public List<File> getCopied()
+    {
+      return Collections.unmodifiableList(copied);
+    }
+
+    /**
+     * The destination folders that were created.
+     * 
+     * @return The destination folders that were created.
+     */
+    public List<File> getCreatedFolders()
+    {
+      return Collections.unmodifiableList(createdFolders);
+    }
+
+    /**
+     * The destination files and folders that were deleted, either as orphans
+     * or because they were in the way of a folder or file of the same name.
+     * 
+     * @return The destination files and folders that were deleted.
+     */
+    public List<File> getDeleted()
+    {
+      return Collections.unmodifiableList(deleted);
+    }
+
+    /**
+     * The destination files and folders that could not be synchronised (only
+     * if {@link FolderSync#errorHandler} has been overridden to not throw).
+     * 
+     * @return The destination files and folders that could not be
+     *         synchronised.
+     */
+    public List<File> getFailed()
+    {
+      return Collections.unmodifiableList(failed);
+    }
+
+    /**
+     * The number of files that did not need copying.
+     * 
+     * @return The number of files that did not need copying.
+     */
+    public int getUnchanged()
+    {
+      return unchanged;
+    }
+
+    /**
+     * Was this a dry run, where nothing was actually changed?
+     * 
+     * @return True if this was a dry run.
+     */
+    public boolean isDryRun()
+    {
+      return dryRun;
+    }
+
+    /**
+     * Were there no failures?
+     * 
+     * @return True if there were no failures.
+     */
+    public boolean isOkay()
+    {
+      return failed.isEmpty();
+    }
+
+    /**
+     * A readable listing of what was done, one line per file or folder.
+     */
+    @Override
+    public String toString()
+    {
+      final StringBuilder sb = new StringBuilder();
+      if ( dryRun )
+        sb.append("Dry run\n");
+      for ( File file : deleted )
+        sb.append("delete ").append(file).append('\n');
+      for ( File file : createdFolders )
+        sb.append("mkdir  ").append(file).append('\n');
+      for ( File file : copied )
+        sb.append("copy   ").append(file).append('\n');
+      for ( File file : failed )
+        sb.append("failed ").append(file).append('\n');
+      sb.append(copied.size()).append(" copied (").append(bytesCopied)
+          .append(" bytes), ").append(unchanged).append(" unchanged, ")
+          .append(deleted.size()).append(" deleted, ").append(failed.size())
+          .append(" failed\n");
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import com.evanmclean.evlib.util.TreeSetIgnoreCase;
+
+/**
+ * <p>
+ * Walks a folder structure, returning the files and folders in it (but not the
+ * starting folder itself) one at a time from an iterator. The walk is lazy: a
+ * folder is only listed when the iterator gets to its contents, so stopping
+ * part way through (e.g., once the file being looked for is found) avoids
+ * listing the rest of the structure.
+ * </p>
+ * 
+ * <p>
+ * Folders are returned before their contents (unless
+ * {@link #setIncludeFolders(boolean)} is false). The order of the entries
+ * within a folder is whatever {@link File#list()} returns. Folders that cannot
+ * be listed are treated as empty.
+ * </p>
+ * 
+ * <pre>
+ * final FolderWalker walker = new FolderWalker(root);
+ * walker.setMaxDepth(2);
+ * walker.setExtensions(&quot;jpg&quot;, &quot;png&quot;);
+ * for ( File file : walker )
+ *   ...
+ * </pre>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class FolderWalker implements Iterable<File>
+{
+  private final File root;
+  private int maxDepth = Integer.MAX_VALUE;
+  private boolean includeFolders = true;
+  private FileFilter filter;
+  private FileFilter folderFilter;
+  private TreeSetIgnoreCase exts;
+  private Pattern glob;
+
+  /**
+   * Create a walker for everything in the folder.
+   * 
+   * @param root
+   *        The folder to walk. If it is not a folder (or does not exist) there
+   *        is nothing to walk.
+   */
+  public FolderWalker( final File root )
+  {
+    this.root = root;
+  }
+
+  /**
+   * A new iterator that walks the folder structure. It does not support
+   * {@link Iterator#remove()}.
+   * 
+   * @return A new iterator that walks the folder structure.
+   */
+  public Iterator<File> iterator()
+  {
+    return new Walk();
+  }
+
+  /**
+   * Only return files (not folders) with one of the extensions (see
+   * {@link Files#getExtension(String)}), ignoring case. The same as the
+   * matching done by
+   * {@link com.evanmclean.evlib.swing.filechooser.ExtFilesFilter}.
+   * 
+   * @param extensions
+   *        The extensions (not including the '.'). If none, any extension is
+   *        allowed.
+   */
+  public void setExtensions( final String... extensions )
+  {
+    if ( extensions.length <= 0 )
+    {
+      exts = null;
+    }
+    else
+    {
+      exts = new TreeSetIgnoreCase();
+      for ( String ext : extensions )
+        exts.add(ext);
+    }
+  }
+
+  /**
+   * Only return the files and folders that are accepted by the filter. Does not
+   * affect which folders are walked into (see {@link #setFolderFilter}).
+   * 
+   * @param filter
+   *        The filter, or <code>null</code> for all.
+   */
+  public void setFilter( final FileFilter filter )
+  {
+    this.filter = filter;
+  }
+
+  /**
+   * Only walk into the folders that are accepted by the filter. Does not affect
+   * which folders are returned (see {@link #setFilter}).
+   * 
+   * @param folder_filter
+   *        The filter, or <code>null</code> for all.
+   */
+  public void setFolderFilter( final FileFilter folder_filter )
+  {
+    folderFilter = folder_filter;
+  }
+
+  /**
+   * Only return files (not folders) whose name matches the glob pattern, where
+   * <code>*</code> matches any number of characters and <code>?</code>
+   * matches any single character. Case sensitive.
+   * 
+   * @param pattern
+   *        The pattern (e.g., <code>"*.log"</code> or
+   *        <code>"report-??.csv"</code>), or <code>null</code> for all.
+   */
+  public void setGlob( final String pattern )
+  {
+    glob = (pattern == null) ? null : Pattern.compile(globToRegex(pattern),
+      Pattern.DOTALL);
+  }
+
+  /**
+   * Include folders in what is returned (default true). Folders are still
+   * walked into when they are not returned.
+   * 
+   * @param include_folders
+   */
+  public void setIncludeFolders( final boolean include_folders )
+  {
+    includeFolders = include_folders;
+  }
+
+  /**
+   * How deep to walk (default unlimited). A depth of one returns only what is
+   * directly in the starting folder, two includes the contents of its
+   * sub-folders, and so on.
+   * 
+   * @param max_depth
+   */
+  public void setMaxDepth( final int max_depth )
+  {
+    if ( max_depth < 1 )
+      throw new IllegalArgumentException("Maximum depth less than one: "
+          + max_depth);
+    maxDepth = max_depth;
+  }
+
+  private boolean accept( final File file, final boolean is_folder )
+  {
+    if ( is_folder )
+    {
+      if ( !includeFolders )
+        return false;
+    }
+    else
+    {
+      if ( (exts != null)
+          && (!exts.contains(Files.getExtension(file.getName()))) )
+        return false;
+      if ( (glob != null) && (!glob.matcher(file.getName()).matches()) )
+        return false;
+    }
+    return (filter == null) || filter.accept(file);
+  }
+
+  private static String globToRegex( final String pattern )
+  {
+    final StringBuilder sb = new StringBuilder();
+    final int len = pattern.length();
+    int run = 0;
+    for ( int xi = 0; xi < len; ++xi )
+    {
+      final char ch = pattern.charAt(xi);
+      if ( (ch == '*') || (ch == '?') )
+      {
+        if ( run < xi )
+          sb.append(Pattern.quote(pattern.substring(run, xi)));
+        sb.append((ch == '*') ? ".*" : ".");
+        run = xi + 1;
+      }
+    }
+    if ( run < len )
+      sb.append(Pattern.quote(pattern.substring(run)));
+    return sb.toString();
+  }
+
+  /**
+   * A folder being walked. It is not listed until the first time its contents
+   * are needed.
+   */
+  private static final class Level
+  {
+    final File folder;
+    String[] names;
+    int pos;
+
+    Level( final File folder )
+    {
+      this.folder = folder;
+    }
+  }
+
+  private final class Walk implements Iterator<File>
+  {
+    private final ArrayList<Level> stack = new ArrayList<Level>();
+    private File next;
+
+    @SuppressWarnings( "synthetic-access" )
+    Walk()
+    {
+      stack.add(new Level(root));
+    }
+
+    public boolean hasNext()
+    {
+      if ( next == null )
+        next = advance();
+      return next != null;
+    }
+
+    public File next()
+    {
+      if ( !hasNext() )
+        throw new NoSuchElementException();
+      final File ret = next;
+      next = null;
+      return ret;
+    }
+
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    private File advance()
+    {
+      while ( !stack.isEmpty() )
+      {
+        final int depth = stack.size();
+        final Level level = stack.get(depth - 1);
+        if ( level.names == null )
+        {
+          level.names = level.folder.list();
+          if ( level.names == null )
+            level.names = new String[0];
+        }
+        if ( level.pos >= level.names.length )
+        {
+          stack.remove(depth - 1);
+          continue;
+        }
+
+        final File file = new File(level.folder, level.names[level.pos]);
+        level.names[level.pos++] = null;
+        final boolean is_folder = file.isDirectory();
+        if ( is_folder && (depth < maxDepth)
+            && ((folderFilter == null) || folderFilter.accept(file)) )
+          stack.add(new Level(file));
+        if ( accept(file, is_folder) )
+          return file;
+      }
+      return null;
+    }
+  }
+}
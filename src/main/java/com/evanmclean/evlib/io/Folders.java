@@ -36,6 +36,7 @@ package com.evanmclean.evlib.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.SecureRandom;
 
 import com.evanmclean.evlib.lang.Sys;
@@ -59,7 +60,7 @@ public final class Folders
     }
 
     @Override
-    protected void errorHandler( final File file )
+    protected synchronized void errorHandler( final File file )
     {
       if ( errFile == null )
         errFile = file;
@@ -97,12 +98,31 @@ public final class Folders
    *         doesn't exist.
    */
   public static void clear( final File folder ) throws IOException
+  {
+    clear(folder, 1);
+  }
+
+  /**
+   * Clear the contents of a folder using a pool of threads (see
+   * {@link RecursiveDelete#deleteChildren(File, int)}).
+   * 
+   * @param folder
+   *        The folder to delete.
+   * @param threads
+   *        The number of threads to delete with.
+   * @throws IOException
+   *         If unable to fully delete the contents of the folder or the folder
+   *         doesn't exist.
+   */
+  public static void clear( final File folder, final int threads )
+    throws IOException
   {
     if ( (!folder.exists()) || (!folder.isDirectory()) )
       throw new IOException(folder.toString());
 
     final MyRD rd = new MyRD();
-    rd.deleteChildren(folder);
+    if ( !rd.deleteChildren(folder, threads) && (rd.errFile == null) )
+      throw new InterruptedIOException("Interrupted clearing " + folder);
     if ( rd.errFile != null )
       throw new IOException("Unable to delete " + rd.errFile.toString());
   }
@@ -114,7 +134,8 @@ public final class Folders
    *        Where to copy from.
    * @param to
    *        Where to copy to. This folder should either not exist or be an empty
-   *        folder.
+   *        folder. To copy into a folder that already has content, only
+   *        copying what has changed, see {@link FolderSync}.
    * @throws IOException
    *         If there was an error.
    */
@@ -300,9 +321,28 @@ public final class Folders
    *         If unable to fully delete the folder.
    */
   public static void del( final File path ) throws IOException
+  {
+    del(path, 1);
+  }
+
+  /**
+   * Delete the folder (if it exists) and all its contents using a pool of
+   * threads (see {@link RecursiveDelete#deleteAll(File, int)}). Note, if given
+   * a file, it will just delete the file.
+   * 
+   * @param path
+   *        The folder to delete.
+   * @param threads
+   *        The number of threads to delete with.
+   * @throws IOException
+   *         If unable to fully delete the folder.
+   */
+  public static void del( final File path, final int threads )
+    throws IOException
   {
     final MyRD rd = new MyRD();
-    rd.deleteAll(path);
+    if ( !rd.deleteAll(path, threads) && (rd.errFile == null) )
+      throw new InterruptedIOException("Interrupted deleting " + path);
     if ( rd.errFile != null )
       throw new IOException("Unable to delete " + rd.errFile.toString());
   }
@@ -550,6 +590,25 @@ public final class Folders
    *         already exists and is not a folder.
    */
   public static void mksClear( final File folder ) throws IOException
+  {
+    mksClear(folder, 1);
+  }
+
+  /**
+   * If the folder already exists, clear its contents using a pool of threads
+   * (see {@link #clear(File, int)}), otherwise create it and all necessary
+   * parent folders.
+   * 
+   * @param folder
+   *        Folder to create or clear.
+   * @param threads
+   *        The number of threads to delete with.
+   * @throws IOException
+   *         If it could create or delete whatever it needed to, or the path
+   *         already exists and is not a folder.
+   */
+  public static void mksClear( final File folder, final int threads )
+    throws IOException
   {
     if ( !folder.exists() )
     {
@@ -559,7 +618,7 @@ public final class Folders
     {
       if ( !folder.isDirectory() )
         throw new IOException("Not a folder: " + folder.toString());
-      clear(folder);
+      clear(folder, threads);
     }
   }
 
@@ -620,40 +679,19 @@ public final class Folders
 
   private static boolean _isAllEmpty( final File folder )
   {
-    boolean has_subfolders = false;
-    final File[] paths = folder.listFiles();
-    for ( File path : paths )
-    {
-      if ( path.isDirectory() )
-        has_subfolders = true;
-      else if ( path.isFile() )
-        return path.length() <= 0;
-      else
+    final FolderWalker walker = new FolderWalker(folder);
+    walker.setIncludeFolders(false);
+    for ( File path : walker )
+      if ( (!path.isFile()) || (path.length() > 0) )
         return false;
-    }
-
-    if ( has_subfolders )
-      for ( File path : paths )
-        if ( path.isDirectory() )
-          if ( !_isAllEmpty(path) )
-            return false;
-
     return true;
   }
 
   private static boolean _isOnlyFolders( final File folder )
   {
-    final File[] paths = folder.listFiles();
-    for ( File path : paths )
-      if ( !path.isDirectory() )
-        return false;
-
-    // At this point, either empty or only contains folders.
-    for ( File path : paths )
-      if ( !_isOnlyFolders(path) )
-        return false;
-
-    return true;
+    final FolderWalker walker = new FolderWalker(folder);
+    walker.setIncludeFolders(false);
+    return !walker.iterator().hasNext();
   }
 
   private Folders()
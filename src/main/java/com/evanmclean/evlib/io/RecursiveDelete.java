@@ -35,9 +35,26 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.evanmclean.evlib.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.evanmclean.evlib.exceptions.UnhandledException;
 
 /**
+ * <p>
  * Delete entire contents of a folder, with optional error handling.
+ * </p>
+ * 
+ * <p>
+ * The delete can also be performed by a pool of threads (see
+ * {@link #deleteAll(File, int)} and {@link #deleteChildren(File, int)}), in
+ * which case the {@link #errorHandler} method is called from multiple threads
+ * at once, so any override must be thread-safe.
+ * </p>
  * 
  * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
  *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
@@ -104,6 +121,35 @@ public class RecursiveDelete
     return ret;
   }
 
+  /**
+   * <p>
+   * Deletes the specified file/directory, plus any sub-directories, using a
+   * pool of threads so many files are deleted at once. Sub-directories are
+   * deleted as separate tasks, and the files in each directory are shared out
+   * in batches, so both deep and wide structures are spread across the
+   * threads. Each directory is deleted once everything in it has been.
+   * </p>
+   * 
+   * <p>
+   * If not continuing on error, no new files are started after the first
+   * error. If the calling thread is interrupted it stops waiting and returns
+   * false (with the thread's interrupt status set), and the delete is
+   * abandoned.
+   * </p>
+   * 
+   * @param base
+   * @param threads
+   *        The number of threads to delete with. If one or less, this does the
+   *        same as {@link #deleteAll(File)}.
+   * @return False if any errors.
+   */
+  public boolean deleteAll( final File base, final int threads )
+  {
+    if ( (threads <= 1) || (!base.isDirectory()) )
+      return deleteAll(base);
+    return deleteParallel(base, true, threads);
+  }
+
   /**
    * Perform recursive delete of all children of the specified directory.
    * 
@@ -132,6 +178,23 @@ public class RecursiveDelete
     return ret;
   }
 
+  /**
+   * Perform recursive delete of all children of the specified directory using
+   * a pool of threads. See {@link #deleteAll(File, int)}.
+   * 
+   * @param base
+   * @param threads
+   *        The number of threads to delete with. If one or less, this does the
+   *        same as {@link #deleteChildren(File)}.
+   * @return False if there was an error deleting any file at all.
+   */
+  public boolean deleteChildren( final File base, final int threads )
+  {
+    if ( (threads <= 1) || (!base.isDirectory()) )
+      return deleteChildren(base);
+    return deleteParallel(base, false, threads);
+  }
+
   /**
    * Indicates if we continue despite any errors that occurred during file
    * copying. The default to true.
@@ -164,4 +227,185 @@ public class RecursiveDelete
   {
     // empty
   }
+
+  private boolean deleteParallel( final File base, final boolean include_base,
+      final int threads )
+  {
+    final ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try
+    {
+      return new ParallelDelete(exec).run(base, include_base);
+    }
+    finally
+    {
+      exec.shutdownNow();
+    }
+  }
+
+  /**
+   * A directory being deleted. Counts the tasks still working on its contents
+   * (plus one for the task listing it), and is deleted itself when that gets
+   * to zero.
+   */
+  private static final class Folder
+  {
+    final File dir;
+    final Folder parent;
+    final boolean delete;
+    final AtomicInteger remaining = new AtomicInteger(1);
+
+    Folder( final File dir, final Folder parent, final boolean delete )
+    {
+      this.dir = dir;
+      this.parent = parent;
+      this.delete = delete;
+    }
+  }
+
+  /**
+   * Deletes a folder structure with an executor. Each task lists a directory
+   * (queueing up tasks for its contents) or deletes a batch of files. The last
+   * task to finish with a directory deletes it. Tasks never wait on each
+   * other, the calling thread just waits until there are no tasks left.
+   */
+  private final class ParallelDelete
+  {
+    // The most files deleted by a single task.
+    private static final int BATCH_SIZE = 256;
+
+    private final TaskTracker tasks;
+    private volatile boolean okay = true;
+
+    ParallelDelete( final ExecutorService exec )
+    {
+      tasks = new TaskTracker(exec);
+    }
+
+    boolean run( final File base, final boolean include_base )
+    {
+      submitFolder(new Folder(base, null, include_base));
+      try
+      {
+        tasks.await();
+      }
+      catch ( InterruptedException ex )
+      {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      catch ( IOException ex )
+      {
+        // Cannot happen, none of the tasks throw one.
+        throw new UnhandledException(ex);
+      }
+      return okay;
+    }
+
+    /**
+     * Lists the folder, and queues up its contents.
+     */
+    void deleteFolder( final Folder folder )
+    {
+      try
+      {
+        // If it cannot be listed, deleting the folder will fail.
+        final String[] names = folder.dir.list();
+        if ( names == null )
+          return;
+
+        List<File> batch = new ArrayList<File>();
+        for ( String name : names )
+        {
+          if ( tasks.isAborted() )
+            return;
+          final File file = new File(folder.dir, name);
+          if ( file.isDirectory() )
+          {
+            submitFolder(new Folder(file, folder, true));
+          }
+          else
+          {
+            batch.add(file);
+            if ( batch.size() >= BATCH_SIZE )
+            {
+              submitFiles(batch, folder);
+              batch = new ArrayList<File>();
+            }
+          }
+        }
+        if ( !batch.isEmpty() )
+          submitFiles(batch, folder);
+      }
+      finally
+      {
+        release(folder);
+      }
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    private void failed( final File file )
+    {
+      okay = false;
+      if ( !continueOnError )
+        tasks.abort();
+      errorHandler(file);
+    }
+
+    /**
+     * Finished with the folder, deleting it (and so on up the tree) if nothing
+     * else is still working on its contents.
+     */
+    private void release( final Folder folder )
+    {
+      Folder fldr = folder;
+      while ( (fldr != null) && (fldr.remaining.decrementAndGet() == 0) )
+      {
+        if ( tasks.isAborted() )
+          return;
+        if ( fldr.delete && (!Files.delhard(fldr.dir)) )
+          failed(fldr.dir);
+        fldr = fldr.parent;
+      }
+    }
+
+    private void submit( final Folder folder, final TaskTracker.Task task )
+    {
+      if ( folder != null )
+        folder.remaining.incrementAndGet();
+      tasks.submit(task);
+    }
+
+    private void submitFiles( final List<File> files, final Folder folder )
+    {
+      submit(folder, new TaskTracker.Task() {
+        public void run()
+        {
+          try
+          {
+            for ( File file : files )
+            {
+              if ( tasks.isAborted() )
+                return;
+              if ( !Files.delhard(file) )
+                failed(file);
+            }
+          }
+          finally
+          {
+            release(folder);
+          }
+        }
+      });
+    }
+
+    private void submitFolder( final Folder folder )
+    {
+      submit(folder.parent, new TaskTracker.Task() {
+        public void run()
+        {
+          deleteFolder(folder);
+        }
+      });
+    }
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs tasks on an executor and waits for them all to finish, for the parallel
+ * modes of {@link FileStructureCopier} and {@link RecursiveDelete}. Tasks may
+ * submit further tasks. The first task to throw an exception aborts the
+ * remaining tasks, and the exception is rethrown by {@link #await()}.
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+final class TaskTracker
+{
+  interface Task
+  {
+    void run() throws IOException;
+  }
+
+  private final ExecutorService exec;
+  private final Object lock = new Object();
+  private int pending;
+  private volatile boolean aborted;
+  private Throwable error;
+
+  TaskTracker( final ExecutorService exec )
+  {
+    this.exec = exec;
+  }
+
+  /**
+   * Stops any tasks that have not started yet from being run.
+   */
+  void abort()
+  {
+    aborted = true;
+  }
+
+  /**
+   * Waits until there are no tasks left.
+   * 
+   * @throws IOException
+   *         The first exception thrown by a task, if it was one.
+   * @throws InterruptedException
+   *         If interrupted while waiting, in which case the remaining tasks
+   *         are aborted.
+   */
+  void await() throws IOException, InterruptedException
+  {
+    synchronized ( lock )
+    {
+      try
+      {
+        while ( pending > 0 )
+          lock.wait();
+      }
+      catch ( InterruptedException ex )
+      {
+        aborted = true;
+        throw ex;
+      }
+      if ( error instanceof IOException )
+        throw (IOException) error;
+      if ( error instanceof RuntimeException )
+        throw (RuntimeException) error;
+      if ( error instanceof Error )
+        throw (Error) error;
+    }
+  }
+
+  /**
+   * @return True if a task has failed or {@link #abort()} has been called.
+   */
+  boolean isAborted()
+  {
+    return aborted;
+  }
+
+  /**
+   * Queues up the task, which is skipped if aborted by the time it would run.
+   */
+  void submit( final Task task )
+  {
+    synchronized ( lock )
+    {
+      ++pending;
+    }
+    try
+    {
+      exec.execute(new Runnable() {
+        @SuppressWarnings( "synthetic-access" )
+        public void run()
+        {
+          try
+          {
+            if ( !aborted )
+              task.run();
+          }
+          catch ( Throwable ex )
+          {
+            synchronized ( lock )
+            {
+              aborted = true;
+              if ( error == null )
+                error = ex;
+            }
+          }
+          finally
+          {
+            done();
+          }
+        }
+      });
+    }
+    catch ( RuntimeException ex )
+    {
+      aborted = true;
+      done();
+      throw ex;
+    }
+  }
+
+  private void done()
+  {
+    synchronized ( lock )
+    {
+      if ( --pending == 0 )
+        lock.notifyAll();
+    }
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.evanmclean.evlib.charset.ByteEncoder;
+import com.evanmclean.evlib.charset.Charsets;
+
+/**
+ * <p>
+ * A buffered writer that encodes characters directly to UTF-8 into a reusable
+ * byte buffer, which is written to the underlying output stream when full (or
+ * on {@link #flush()} or {@link #close()}).
+ * </p>
+ * 
+ * <p>
+ * Unlike wrapping an <code>OutputStreamWriter</code> in a
+ * <code>BufferedWriter</code>, characters are only copied once (from the
+ * string, character sequence or array straight into the byte buffer), and
+ * none of the write methods allocate any objects. Surrogate pairs split across separate write
+ * calls are handled correctly. An unpaired surrogate is written as a
+ * <code>'?'</code>.
+ * </p>
+ * 
+ * <p>
+ * Subclasses can also encode to ISO-8859-1 or US-ASCII (see
+ * {@link com.evanmclean.evlib.escape.EncodedOutput}), in which case
+ * characters that cannot be encoded are written as a <code>'?'</code>. Like
+ * most writers, this is not thread-safe.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class UTF8BufferedWriter extends Writer
+{
+  /**
+   * The default size of the byte buffer (8192).
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  private OutputStream out;
+  private final Charset charset;
+  private final ByteEncoder encoder;
+  private final byte[] buff;
+  private int pos;
+
+  /**
+   * Create a UTF-8 writer with the default buffer size.
+   * 
+   * @param out
+   *        The output stream to write to.
+   */
+  public UTF8BufferedWriter( final OutputStream out )
+  {
+    this(out, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Create a UTF-8 writer with the specified buffer size.
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @param buffer_size
+   *        The size of the byte buffer (at least 16).
+   */
+  public UTF8BufferedWriter( final OutputStream out, final int buffer_size )
+  {
+    this(out, Charsets.UTF8, buffer_size);
+  }
+
+  /**
+   * Create a writer for a subclass that encodes to a different character set.
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @param charset
+   *        One of {@link Charsets#UTF8}, {@link Charsets#ISO88591} or
+   *        {@link Charsets#USASCII}.
+   * @param buffer_size
+   *        The size of the byte buffer (at least 16).
+   */
+  protected UTF8BufferedWriter( final OutputStream out, final Charset charset,
+      final int buffer_size )
+  {
+    if ( out == null )
+      throw new NullPointerException();
+    if ( buffer_size < 16 )
+      throw new IllegalArgumentException("Buffer size too small: "
+          + buffer_size);
+    this.encoder = new ByteEncoder(charset);
+    this.out = out;
+    this.charset = charset;
+    this.buff = new byte[buffer_size];
+  }
+
+  @Override
+  public Writer append( final char ch ) throws IOException
+  {
+    write(ch);
+    return this;
+  }
+
+  @Override
+  public Writer append( final CharSequence csq ) throws IOException
+  {
+    if ( csq == null )
+      write("null");
+    else
+      append(csq, 0, csq.length());
+    return this;
+  }
+
+  @Override
+  public Writer append( final CharSequence csq, final int start, final int end )
+    throws IOException
+  {
+    if ( csq == null )
+      return append("null", start, end);
+    if ( (start < 0) || (start > end) || (end > csq.length()) )
+      throw new IndexOutOfBoundsException();
+    encode(csq, start, end);
+    return this;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    if ( out == null )
+      return;
+    try
+    {
+      flushBuffer();
+      pos = encoder.finish(buff, pos);
+      flushBuffer();
+      out.close();
+    }
+    finally
+    {
+      out = null;
+    }
+  }
+
+  /**
+   * Writes any buffered bytes to the output stream and flushes the stream. Note
+   * that the first half of a surrogate pair is held back until the second half
+   * is written.
+   */
+  @Override
+  public void flush() throws IOException
+  {
+    flushBuffer();
+    out.flush();
+  }
+
+  /**
+   * Writes any buffered bytes to the output stream, without flushing the
+   * output stream itself.
+   * 
+   * @throws IOException
+   */
+  public void flushBuffer() throws IOException
+  {
+    ensureOpen();
+    if ( pos > 0 )
+    {
+      out.write(buff, 0, pos);
+      pos = 0;
+    }
+  }
+
+  /**
+   * The character set being written.
+   * 
+   * @return The character set being written.
+   */
+  public Charset getCharset()
+  {
+    return charset;
+  }
+
+  @Override
+  public void write( final char[] cbuf, final int off, final int len )
+    throws IOException
+  {
+    if ( (off < 0) || (len < 0) || (off > (cbuf.length - len)) )
+      throw new IndexOutOfBoundsException();
+    ensureOpen();
+    final byte[] bf = buff;
+    final int limit = bf.length - 4;
+    final int end = off + len;
+    int ps = pos;
+    int xi = off;
+    while ( xi < end )
+    {
+      if ( ps >= limit )
+      {
+        out.write(bf, 0, ps);
+        ps = 0;
+      }
+      if ( !encoder.isPending() )
+      {
+        // Fast path for runs of ASCII.
+        final int stop = Math.min(end, xi + (limit - ps));
+        while ( xi < stop )
+        {
+          final char ch = cbuf[xi];
+          if ( ch >= 0x80 )
+            break;
+          bf[ps++] = (byte) ch;
+          ++xi;
+        }
+        if ( (xi >= end) || (ps >= limit) )
+          continue;
+      }
+      ps = encoder.encode(cbuf[xi++], bf, ps);
+    }
+    pos = ps;
+  }
+
+  @Override
+  public void write( final int ch ) throws IOException
+  {
+    ensureOpen();
+    if ( pos >= (buff.length - 4) )
+    {
+      out.write(buff, 0, pos);
+      pos = 0;
+    }
+    if ( (ch < 0x80) && (!encoder.isPending()) )
+      buff[pos++] = (byte) ch;
+    else
+      pos = encoder.encode((char) ch, buff, pos);
+  }
+
+  @Override
+  public void write( final String str ) throws IOException
+  {
+    write(str, 0, str.length());
+  }
+
+  @Override
+  public void write( final String str, final int off, final int len )
+    throws IOException
+  {
+    if ( (off < 0) || (len < 0) || (off > (str.length() - len)) )
+      throw new IndexOutOfBoundsException();
+    encode(str, off, off + len);
+  }
+
+  /**
+   * Encodes part of the character sequence straight into the byte buffer, the
+   * same as {@link #write(char[], int, int)} but for strings and other
+   * character sequences.
+   * 
+   * @param str
+   *        The characters to encode.
+   * @param start
+   *        The index of the first character to encode.
+   * @param end
+   *        The index after the last character to encode.
+   * @throws IOException
+   */
+  protected final void encode( final CharSequence str, final int start,
+      final int end ) throws IOException
+  {
+    ensureOpen();
+    final byte[] bf = buff;
+    final int limit = bf.length - 4;
+    int ps = pos;
+    int xi = start;
+    while ( xi < end )
+    {
+      if ( ps >= limit )
+      {
+        out.write(bf, 0, ps);
+        ps = 0;
+      }
+      if ( !encoder.isPending() )
+      {
+        // Fast path for runs of ASCII.
+        final int stop = Math.min(end, xi + (limit - ps));
+        while ( xi < stop )
+        {
+          final char ch = str.charAt(xi);
+          if ( ch >= 0x80 )
+            break;
+          bf[ps++] = (byte) ch;
+          ++xi;
+        }
+        if ( (xi >= end) || (ps >= limit) )
+          continue;
+      }
+      ps = encoder.encode(str.charAt(xi++), bf, ps);
+    }
+    pos = ps;
+  }
+
+  private void ensureOpen() throws IOException
+  {
+    if ( out == null )
+      throw new IOException("Writer closed.");
+  }
+}
@@ -0,0 +1,1569 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import com.evanmclean.evlib.exceptions.UnhandledException;
+import com.evanmclean.evlib.io.UTF8BufferedWriter;
+import com.evanmclean.evlib.lang.Arr;
+import com.evanmclean.evlib.lang.Obj;
+import com.evanmclean.evlib.lang.Str;
+import com.evanmclean.evlib.util.DatePattern;
+import com.evanmclean.evlib.util.TreeMapIgnoreCase;
+import com.evanmclean.evlib.util.TreeSetIgnoreCase;
+
+/**
+ * <p>
+ * The common engine behind {@link RsXml}, {@link RsJson} and {@link RsCsv}.
+ * Reads a result set and writes one output record for each input record, or
+ * sub-records to any level, based on break values of columns that can change
+ * for each row.
+ * </p>
+ * 
+ * <p>
+ * The column selection, break columns, column aliases, value formatting and
+ * write limits are all handled here, so they behave the same way for every
+ * output format.
+ * </p>
+ * 
+ * <p>
+ * A writer's configuration is not changed by writing, so a single configured
+ * writer can be used as a template that is shared between threads, with each
+ * export calling {@link #forResultSet(ResultSet)} to get its own copy to
+ * write with. The default date, time and timestamp formatting uses
+ * {@link DatePattern}, which is thread-safe and writes straight to the output.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public abstract class AbstractRsWriter implements Cloneable
+{
+  final class Meta
+  {
+    boolean first = true;
+    boolean gotobjs;
+    boolean eors;
+    int read;
+    int totalRead;
+    int written;
+    int totalWritten;
+    int indent;
+    int numcols;
+    int lastlevel;
+
+    // If we can write values directly, without going through getValue.
+    final boolean direct = !overrides(AbstractRsWriter.this.getClass(),
+      "getValue");
+
+    // If we can write date, time and timestamp values directly, without going
+    // through the get methods.
+    final boolean directDate = direct
+        && !overrides(AbstractRsWriter.this.getClass(), "getDate");
+    final boolean directTime = direct
+        && !overrides(AbstractRsWriter.this.getClass(), "getTime");
+    final boolean directTimestamp = direct
+        && !overrides(AbstractRsWriter.this.getClass(), "getTimestamp");
+
+    // If floating point and decimal values come out of getValue as plain
+    // numbers (no formatting subclass has changed how they look).
+    final boolean directNumber = direct
+        && !overrides(AbstractRsWriter.this.getClass(), "getDouble",
+          "trimTrailingZeros");
+
+    // The patterns used to write date, time and timestamp values directly for
+    // the current write, or null if they have to go through getValue.
+    DatePattern datePattern;
+    DatePattern timePattern;
+    DatePattern timestampPattern;
+
+    // Scratch space for writing integers directly.
+    final char[] digits = new char[20];
+
+    // The column indicies to be written at each level.
+    int[][] cols;
+
+    // The column names for each column index.
+    String[] columnNames;
+
+    // The column SQL types.
+    int[] columnTypes;
+
+    // The output names (element names, field names, etc) to be used for each
+    // column index.
+    String[] outputNames;
+
+    // The break column indicies to be used for each level.
+    int[][] brk;
+
+    // The previous values for each break value.
+    Object[][] prev;
+
+    // The objects for the current row.
+    Object[] objs;
+
+    @SuppressWarnings( "synthetic-access" )
+    @edu.umd.cs.findbugs.annotations.SuppressWarnings( "DM_CONVERT_CASE" )
+    Meta() throws SQLException
+    {
+      if ( rs == null )
+        throw new IllegalStateException("No result set has been set.");
+      // If neither before first nor after last, assume it is already
+      // positioned on a row.
+      boolean positioned = false;
+      try
+      {
+        if ( rs.isBeforeFirst() )
+          eors = !rs.next();
+        else
+        {
+          eors = rs.isAfterLast();
+          positioned = !eors;
+        }
+      }
+      catch ( SQLException ex )
+      {
+        // Assuming it does not support isBeforeFirst or isAfterLast.
+        eors = !rs.next();
+      }
+
+      if ( eors )
+        return;
+
+      final ResultSetMetaData rsmeta = rs.getMetaData();
+      numcols = rsmeta.getColumnCount();
+
+      final Map<String, Integer> colidxs = new TreeMapIgnoreCase<Integer>();
+
+      columnNames = new String[numcols + 1];
+      columnNames[0] = null;
+      columnTypes = new int[numcols + 1];
+      columnTypes[0] = 0;
+      outputNames = new String[numcols + 1];
+      outputNames[0] = null;
+      objs = new Object[numcols + 1];
+      objs[0] = null;
+      try
+      {
+        readCols();
+      }
+      catch ( SQLException ex )
+      {
+        // An empty result set is neither before first nor after last either.
+        if ( !(positioned && isEmpty()) )
+          throw ex;
+        eors = true;
+        return;
+      }
+
+      for ( int xi = 1; xi <= numcols; ++xi )
+      {
+        final String name = rsmeta.getColumnName(xi);
+        colidxs.put(name, xi);
+        columnNames[xi] = name;
+        columnTypes[xi] = rsmeta.getColumnType(xi);
+        String outname = null;
+        if ( columnAliases != null )
+          outname = columnAliases.get(name);
+        if ( outname == null )
+          outname = lowercase ? name.toLowerCase() : name;
+        outputNames[xi] = outname;
+      }
+
+      final boolean[] seen = new boolean[numcols + 1];
+      Arrays.fill(seen, false);
+
+      lastlevel = recordNames.length - 1;
+      cols = new int[recordNames.length][];
+      brk = new int[recordNames.length][];
+      prev = new Object[recordNames.length][];
+
+      for ( int lvl = 0; lvl < recordNames.length; ++lvl )
+      {
+        // Initiase cols for this level.
+        if ( (columns == null) || (columns[lvl] == null)
+            || (columns[lvl].size() <= 0) )
+        {
+          int len = 0;
+          for ( int xi = 1; xi <= numcols; ++xi )
+            if ( !seen[xi] )
+              ++len;
+          final int[] arr = new int[len];
+          int nextidx = 0;
+          for ( int xi = 1; xi <= numcols; ++xi )
+            if ( !seen[xi] )
+            {
+              arr[nextidx++] = xi;
+              seen[xi] = true;
+            }
+          cols[lvl] = resize(arr, nextidx);
+        }
+        else
+        {
+          final int[] arr = new int[columns[lvl].size()];
+          int nextidx = 0;
+          for ( String column : columns[lvl] )
+          {
+            final Integer idx = colidxs.get(column);
+            if ( idx != null )
+            {
+              arr[nextidx++] = idx;
+              seen[idx] = true;
+            }
+          }
+          cols[lvl] = resize(arr, nextidx);
+        }
+
+        // Initialise brk for this level.
+        if ( (breakColumns == null) || (breakColumns.length <= lvl) )
+        {
+          brk[lvl] = new int[0];
+          prev[lvl] = null;
+        }
+        else
+        {
+          final int[] arr = new int[breakColumns[lvl].size()];
+          int nextidx = 0;
+          for ( String column : breakColumns[lvl] )
+          {
+            final Integer idx = colidxs.get(column);
+            if ( idx != null )
+              arr[nextidx++] = idx;
+          }
+          brk[lvl] = resize(arr, nextidx);
+
+          final Object[] oarr = new Object[brk[lvl].length];
+          for ( int xi = 0; xi < oarr.length; ++xi )
+            oarr[xi] = objs[brk[lvl][xi]];
+          prev[lvl] = oarr;
+        }
+      }
+    }
+
+    int findBreakLevel()
+    {
+      int brklvl = lastlevel;
+      for ( int lvlxi = 0; lvlxi <= lastlevel; ++lvlxi )
+      {
+        final int[] brks = brk[lvlxi];
+        final Object[] prevs = prev[lvlxi];
+        for ( int xi = 0; xi < brks.length; ++xi )
+        {
+          final Object obj = objs[brks[xi]];
+          if ( brklvl == lastlevel )
+            if ( !Obj.equals(obj, prevs[xi]) )
+              brklvl = lvlxi;
+          prevs[xi] = obj;
+        }
+      }
+      return brklvl;
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    boolean next() throws SQLException
+    {
+      if ( eors )
+        return false;
+      ++read;
+      ++totalRead;
+      if ( !rs.next() )
+      {
+        eors = true;
+        return false;
+      }
+      readCols();
+      return true;
+    }
+
+    /**
+     * The pattern to write a value of the specified SQL type straight to the
+     * output, or null if it has to go through getValue.
+     */
+    DatePattern directPattern( final int sql_type )
+    {
+      switch ( sql_type )
+      {
+        case Types.DATE:
+          return datePattern;
+        case Types.TIME:
+          return timePattern;
+        case Types.TIMESTAMP:
+          return timestampPattern;
+      }
+      return null;
+    }
+
+    /**
+     * Called when there is no current row to read, to check if that is because
+     * the result set is empty. Only an empty result set is not on its last row
+     * and has no next row.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    private boolean isEmpty()
+    {
+      try
+      {
+        return (!rs.isLast()) && (!rs.next());
+      }
+      catch ( SQLException ex )
+      {
+        return false;
+      }
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    private void readCols() throws SQLException
+    {
+      for ( int xi = 1; xi <= numcols; ++xi )
+      {
+        Object obj = rs.getObject(xi);
+        if ( (obj != null) && rs.wasNull() )
+          obj = null;
+        objs[xi] = obj;
+      }
+      gotobjs = true;
+    }
+
+    private int[] resize( final int[] arr, final int size )
+    {
+      final int arrlen = Arr.length(arr);
+      if ( arrlen < size )
+        throw new IllegalStateException();
+      if ( arrlen == size )
+        return arr;
+      final int[] ret = new int[size];
+      System.arraycopy(arr, 0, ret, 0, size);
+      return ret;
+    }
+  }
+
+  /**
+   * The default format used (&quot;yyyy-MM-dd&quot;) to convert a date column
+   * to a string.
+   */
+  public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
+
+  /**
+   * The default format used (&quot;HH:mm:ss.SSS&quot;) to convert a time column
+   * to a string.
+   */
+  public static final String DEFAULT_TIME_FORMAT = "HH:mm:ss.SSS";
+
+  /**
+   * The default format used (&quot;yyyy-MM-dd HH:mm:ss.SSS&quot;) to convert a
+   * timestamp column to a string.
+   */
+  public static final String DEFAULT_TIMESTAMP_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+  static final String[] EMPTY_STRING_ARRAY = new String[0];
+
+  private ResultSet rs;
+  Meta meta;
+  private boolean lowercase = true;
+  String[] recordNames;
+  private Set<String>[] columns;
+  private Set<String>[] breakColumns;
+  private Map<String, String> columnAliases;
+  private DatePattern datePattern = new DatePattern(DEFAULT_DATE_FORMAT);
+  private DatePattern timePattern = new DatePattern(DEFAULT_TIME_FORMAT);
+  private DatePattern timestampPattern = new DatePattern(
+      DEFAULT_TIMESTAMP_FORMAT);
+  // Only used if set instead of a pattern.
+  private DateFormat dateFormat;
+  private DateFormat timeFormat;
+  private DateFormat timestampFormat;
+
+  AbstractRsWriter()
+  {
+    // empty
+  }
+
+  /**
+   * Clear all the column aliases.
+   */
+  public void clearColumnAliases()
+  {
+    columnAliases = null;
+  }
+
+  /**
+   * Indicates if we have reached the end of the record set.
+   * 
+   * @return True if we have reached the end of the record set.
+   * @throws SQLException
+   */
+  public boolean eors() throws SQLException
+  {
+    return getMeta().eors;
+  }
+
+  /**
+   * The break columns being used.
+   * 
+   * @return The break columns being used, or an empty array if none have been
+   *         specified yet.
+   */
+  public String[][] getBreakColumns()
+  {
+    if ( Arr.length(breakColumns) <= 0 )
+      return new String[0][];
+    final String[][] arr = new String[breakColumns.length][];
+    for ( int xi = 0; xi < arr.length; ++xi )
+    {
+      final Set<String> cols = breakColumns[xi];
+      final int len = cols.size();
+      arr[xi] = cols.toArray(new String[len]);
+    }
+    return arr;
+  }
+
+  /**
+   * By default, the column name is used as the output name (element name,
+   * field name or heading), however aliases can be used.
+   * 
+   * @return Return the array map of column names and alias values that will be
+   *         used.
+   */
+  public String[][] getColumnAliases()
+  {
+    final int len = (columnAliases == null) ? 0 : columnAliases.size();
+    if ( len <= 0 )
+      return new String[0][];
+    final String[][] arr = new String[len][];
+    int xi = -1;
+    for ( Map.Entry<String, String> entry : columnAliases.entrySet() )
+    {
+      final String[] subarr = new String[2];
+      subarr[0] = entry.getKey();
+      subarr[1] = entry.getValue();
+      arr[++xi] = subarr;
+    }
+    return arr;
+  }
+
+  /**
+   * The columns to be written at each level.
+   * 
+   * @return The columns to be written at each level, or an empty array if none
+   *         have been specified yet.
+   */
+  public String[][] getColumns()
+  {
+    if ( Arr.length(columns) <= 0 )
+      return new String[0][];
+    final String[][] arr = new String[columns.length][];
+    for ( int xi = 0; xi < arr.length; ++xi )
+    {
+      final Set<String> cols = columns[xi];
+      final int len = cols.size();
+      arr[xi] = cols.toArray(new String[len]);
+    }
+    return arr;
+  }
+
+  /**
+   * Creates a new writer with the same configuration as this one, to write
+   * the specified result set. The new writer can be used independently of
+   * this one (and of any other copies), so this writer can be configured once
+   * and shared between threads as a template, as long as its configuration is
+   * not changed while copies are being made.
+   * 
+   * @param new_rs
+   *        Result set for the new writer to use.
+   * @return A new writer for the result set.
+   */
+  public AbstractRsWriter forResultSet( final ResultSet new_rs )
+  {
+    final AbstractRsWriter copy;
+    try
+    {
+      copy = (AbstractRsWriter) clone();
+    }
+    catch ( CloneNotSupportedException ex )
+    {
+      // Cannot happen, we are cloneable.
+      throw new UnhandledException(ex);
+    }
+    copy.setResultSet(new_rs);
+    return copy;
+  }
+
+  /**
+   * For formatting object used to convert date columns to strings. If a date
+   * pattern is being used, it is replaced by an equivalent formatting object,
+   * so that any changes made to the object returned (such as its time zone)
+   * are used. Date columns are then formatted the slower way, synchronized on
+   * the object (see {@link #setDateFormat(DateFormat)}).
+   * 
+   * @return The date formatting object.
+   */
+  public DateFormat getDateFormat()
+  {
+    if ( dateFormat == null )
+    {
+      dateFormat = datePattern.toDateFormat();
+      datePattern = null;
+    }
+    return dateFormat;
+  }
+
+  /**
+   * The pattern used to convert date columns to strings (default
+   * {@link #DEFAULT_DATE_FORMAT}).
+   * 
+   * @return The date pattern, or null if a formatting object has been set
+   *         using {@link #setDateFormat(DateFormat)} or obtained using
+   *         {@link #getDateFormat()}.
+   */
+  public DatePattern getDatePattern()
+  {
+    return datePattern;
+  }
+
+  /**
+   * Return the specified object from the last row read.
+   * 
+   * @param name
+   *        The column name.
+   * @return The specified object.
+   */
+  public Object getObject( final String name )
+  {
+    final Meta md = meta;
+    if ( (md == null) || (!md.gotobjs) )
+      throw new IllegalStateException();
+    for ( int xi = 1; xi < md.columnNames.length; ++xi )
+      if ( name.equalsIgnoreCase(md.columnNames[xi]) )
+        return md.objs[xi];
+    throw new IllegalArgumentException();
+  }
+
+  /**
+   * Return the objects from the last row read.
+   * 
+   * @return The objects.
+   */
+  public Object[] getObjects()
+  {
+    final Meta md = meta;
+    if ( (md == null) || (!md.gotobjs) )
+      throw new IllegalStateException();
+    final Object[] orig = md.objs;
+    final Object[] objs = new Object[orig.length - 1];
+    System.arraycopy(orig, 1, objs, 0, objs.length);
+    return objs;
+  }
+
+  /**
+   * The record names being used.
+   * 
+   * @return The record names being used, or an empty array if none have been
+   *         specified yet.
+   */
+  public String[] getRecordNames()
+  {
+    if ( (recordNames == null) || (recordNames.length <= 0) )
+      return EMPTY_STRING_ARRAY;
+    final String[] arr = new String[recordNames.length];
+    System.arraycopy(recordNames, 0, arr, 0, recordNames.length);
+    return arr;
+  }
+
+  /**
+   * Gets the result set to be read, or null if it has not been set yet.
+   * 
+   * @return Gets the result set to be read, or null if it has not been set yet.
+   */
+  public ResultSet getResultSet()
+  {
+    return rs;
+  }
+
+  /**
+   * For formatting object used to convert time columns to strings. If a time
+   * pattern is being used, it is replaced by an equivalent formatting object,
+   * as for {@link #getDateFormat()}.
+   * 
+   * @return The formatting object.
+   */
+  public DateFormat getTimeFormat()
+  {
+    if ( timeFormat == null )
+    {
+      timeFormat = timePattern.toDateFormat();
+      timePattern = null;
+    }
+    return timeFormat;
+  }
+
+  /**
+   * The pattern used to convert time columns to strings (default
+   * {@link #DEFAULT_TIME_FORMAT}).
+   * 
+   * @return The time pattern, or null if a formatting object has been set
+   *         using {@link #setTimeFormat(DateFormat)} or obtained using
+   *         {@link #getTimeFormat()}.
+   */
+  public DatePattern getTimePattern()
+  {
+    return timePattern;
+  }
+
+  /**
+   * For formatting object used to convert timestamp columns to strings. If a
+   * timestamp pattern is being used, it is replaced by an equivalent
+   * formatting object, as for {@link #getDateFormat()}.
+   * 
+   * @return The formatting object.
+   */
+  public DateFormat getTimestampFormat()
+  {
+    if ( timestampFormat == null )
+    {
+      timestampFormat = timestampPattern.toDateFormat();
+      timestampPattern = null;
+    }
+    return timestampFormat;
+  }
+
+  /**
+   * The pattern used to convert timestamp columns to strings (default
+   * {@link #DEFAULT_TIMESTAMP_FORMAT}).
+   * 
+   * @return The timestamp pattern, or null if a formatting object has been
+   *         set using {@link #setTimestampFormat(DateFormat)} or obtained
+   *         using {@link #getTimestampFormat()}.
+   */
+  public DatePattern getTimestampPattern()
+  {
+    return timestampPattern;
+  }
+
+  /**
+   * Indicates if all column names (not including aliased columns) are forced to
+   * lowercase before being used as output names (default true).
+   * 
+   * @return True if output names are always lowercase.
+   */
+  public boolean isLowercase()
+  {
+    return lowercase;
+  }
+
+  /**
+   * The number of individual rows read from the record set in the last write
+   * operation.
+   * 
+   * @return int
+   */
+  public int read()
+  {
+    return (meta == null) ? 0 : meta.read;
+  }
+
+  /**
+   * By default, the column name is used as the output name (element name,
+   * field name or heading), however aliases can be used.
+   * 
+   * @param column_aliases
+   *        The column names and aliases to be used.
+   */
+  public void setColumnAliases(
+      final Map<? extends String, ? extends String> column_aliases )
+  {
+    if ( (column_aliases == null) || (column_aliases.size() <= 0) )
+    {
+      clearColumnAliases();
+      return;
+    }
+
+    final Map<String, String> aliases = new TreeMapIgnoreCase<String>();
+    for ( Map.Entry<? extends String, ? extends String> alias : column_aliases
+        .entrySet() )
+    {
+      final String col = Str.trimToNull(alias.getKey());
+      final String al = Str.trimToNull(alias.getValue());
+      if ( (col == null) || (al == null) )
+        throw new IllegalArgumentException(
+            "Record name cannot be null or a blank string.");
+      aliases.put(col, al);
+    }
+    columnAliases = aliases;
+  }
+
+  /**
+   * By default, the column name is used as the output name (element name,
+   * field name or heading), however aliases can be used.
+   * 
+   * @param column_aliases
+   *        The column names and aliases to be used.
+   */
+  public void setColumnAliases( final String[][] column_aliases )
+  {
+    if ( Arr.length(column_aliases) <= 0 )
+    {
+      clearColumnAliases();
+      return;
+    }
+
+    final Map<String, String> aliases = new TreeMapIgnoreCase<String>();
+    for ( String[] alias : column_aliases )
+    {
+      if ( (alias == null) || (alias.length != 2) )
+        throw new IllegalArgumentException("Invalid column alias entry.");
+      final String col = Str.trimToNull(alias[0]);
+      final String al = Str.trimToNull(alias[1]);
+      if ( (col == null) || (al == null) )
+        throw new IllegalArgumentException(
+            "Record name cannot be null or a blank string.");
+      aliases.put(col, al);
+    }
+    columnAliases = aliases;
+  }
+
+  /**
+   * For formatting object used to convert date columns to strings, used
+   * instead of a date pattern. As formatting objects are not thread-safe,
+   * formatting is synchronized on the object, so {@link #setDatePattern} is
+   * preferred.
+   * 
+   * @param date_format
+   */
+  public void setDateFormat( final DateFormat date_format )
+  {
+    if ( date_format == null )
+      throw new NullPointerException();
+    dateFormat = date_format;
+    datePattern = null;
+  }
+
+  /**
+   * The pattern used to convert date columns to strings (default
+   * {@link #DEFAULT_DATE_FORMAT}).
+   * 
+   * @param date_pattern
+   */
+  public void setDatePattern( final DatePattern date_pattern )
+  {
+    if ( date_pattern == null )
+      throw new NullPointerException();
+    datePattern = date_pattern;
+    dateFormat = null;
+  }
+
+  /**
+   * Set if all column names (not including aliased columns) are forced to
+   * lowercase before being used as output names (default true).
+   * 
+   * @param lwrcase
+   *        True if all column names are forced to lowercase before being
+   *        written.
+   */
+  public void setLowercase( final boolean lwrcase )
+  {
+    lowercase = lwrcase;
+  }
+
+  /**
+   * Sets the record name to be used, thus writing one record per row returned
+   * in the result set, and including all columns.
+   * 
+   * @param record_name
+   *        The single record name to be used.
+   */
+  public void setRecord( final String record_name )
+  {
+    final String rec_name = Str.trimToNull(record_name);
+    if ( rec_name == null )
+      throw new IllegalArgumentException(
+          "Record name cannot be null or a blank string.");
+    final String[] arr = new String[1];
+    arr[0] = rec_name;
+
+    recordNames = arr;
+    breakColumns = null;
+    columns = null;
+  }
+
+  /**
+   * Sets the single record name to be used, thus writing one record per row
+   * returned in the result set, and including only the specified columns.
+   * 
+   * @param record_name
+   *        The single record name to be used.
+   * @param columns_filter
+   *        The only columns that will be written in the output.
+   */
+  public void setRecord( final String record_name, final String[] columns_filter )
+  {
+    // Process record name.
+    final String rec_name = Str.trimToNull(record_name);
+    if ( rec_name == null )
+      throw new IllegalArgumentException(
+          "Record name cannot be null or a blank string.");
+    final String[] rn = new String[1];
+    rn[0] = rec_name;
+
+    // Process columns.
+    if ( Arr.length(columns_filter) <= 0 )
+      throw new IllegalArgumentException(
+          "Number of columns cannot be zero for record.");
+    final Set<String> cols = new TreeSetIgnoreCase();
+    for ( String val : columns_filter )
+    {
+      final String str = Str.trimToNull(val);
+      if ( str == null )
+        throw new IllegalArgumentException("Invalid column name for record.");
+      cols.add(str);
+    }
+    final Set<String>[] co = new TreeSetIgnoreCase[1];
+    co[0] = cols;
+
+    recordNames = rn;
+    breakColumns = null;
+    columns = co;
+  }
+
+  /**
+   * Sets the details of the records to be written, with sub-records
+   * possible.
+   * 
+   * @param record_names
+   *        The record names to be used for each level.
+   * @param break_columns
+   *        The columns used at each level to indicate when a new sub record is
+   *        to be written. The length of this array is one less than then
+   *        record_names.
+   * @param columns_filter
+   *        The columns to be written at each record level. It's length is
+   *        usually equal to the length of the record names array, however if it
+   *        is one less, then all the columns that have not been specified so
+   *        far are written in the lowest level record.
+   */
+  public void setRecords( final String[] record_names,
+      final String[][] break_columns, final String[][] columns_filter )
+  {
+    // Process record names.
+    if ( Arr.length(record_names) <= 0 )
+      throw new IllegalArgumentException("Record names must be specified.");
+    final String[] rn = new String[record_names.length];
+    for ( int xi = 0; xi < rn.length; ++xi )
+    {
+      rn[xi] = Str.trimToNull(record_names[xi]);
+      if ( rn[xi] == null )
+        throw new IllegalArgumentException(
+            "Record name cannot be null or a blank string.");
+    }
+
+    // Process break_columns.
+    if ( Arr.length(break_columns) != (rn.length - 1) )
+      throw new IllegalArgumentException(
+          "Break columns array cannot be null and must be one less than the number of record names.");
+    final Set<String>[] brkcols = new TreeSetIgnoreCase[rn.length - 1];
+    if ( rn.length > 1 )
+    {
+      for ( int xi = 0; xi < brkcols.length; ++xi )
+      {
+        final String[] co = break_columns[xi];
+        if ( Arr.length(co) <= 0 )
+          throw new IllegalArgumentException(
+              "Number of break columns cannot be zero for record: " + rn[xi]);
+        final Set<String> set = new TreeSetIgnoreCase();
+        for ( String val : co )
+        {
+          final String str = Str.trimToNull(val);
+          if ( str == null )
+            throw new IllegalArgumentException(
+                "Invalid break column name for record: " + rn[xi]);
+          set.add(str);
+        }
+        brkcols[xi] = set;
+      }
+    }
+
+    // Process columns.
+    final int collen = Arr.length(columns_filter);
+    if ( (collen < (rn.length - 1)) || (collen > rn.length) )
+      throw new IllegalArgumentException(
+          "Columns array cannot be null and must match or be one less than the number of record names.");
+    final Set<String>[] cols = new TreeSetIgnoreCase[rn.length];
+    for ( int xi = 0; xi < rn.length; ++xi )
+    {
+      final String[] co = (xi >= collen) ? null : columns_filter[xi];
+      if ( (co == null) || (co.length <= 0) )
+      {
+        if ( (xi + 1) < rn.length )
+          throw new IllegalArgumentException(
+              "Number of columns cannot be zero for record: " + rn[xi]);
+        cols[xi] = null;
+      }
+      else
+      {
+        final Set<String> set = new TreeSetIgnoreCase();
+        for ( String val : co )
+        {
+          final String str = Str.trimToNull(val);
+          if ( str == null )
+            throw new IllegalArgumentException(
+                "Invalid column name for record: " + rn[xi]);
+          set.add(str);
+        }
+        cols[xi] = set;
+      }
+    }
+
+    recordNames = rn;
+    breakColumns = brkcols;
+    columns = cols;
+  }
+
+  /**
+   * Sets the result set to be read for producing the output.
+   * 
+   * @param new_rs
+   *        The result set to be read to produce the output. May not be null.
+   */
+  public void setResultSet( final ResultSet new_rs )
+  {
+    if ( new_rs == null )
+      throw new IllegalArgumentException(
+          "Cannot set result set parameter to null.");
+    rs = new_rs;
+    meta = null;
+  }
+
+  /**
+   * For formatting object used to convert time columns to strings, used
+   * instead of a time pattern. As formatting objects are not thread-safe,
+   * formatting is synchronized on the object, so {@link #setTimePattern} is
+   * preferred.
+   * 
+   * @param time_format
+   */
+  public void setTimeFormat( final DateFormat time_format )
+  {
+    if ( time_format == null )
+      throw new NullPointerException();
+    timeFormat = time_format;
+    timePattern = null;
+  }
+
+  /**
+   * The pattern used to convert time columns to strings (default
+   * {@link #DEFAULT_TIME_FORMAT}).
+   * 
+   * @param time_pattern
+   */
+  public void setTimePattern( final DatePattern time_pattern )
+  {
+    if ( time_pattern == null )
+      throw new NullPointerException();
+    timePattern = time_pattern;
+    timeFormat = null;
+  }
+
+  /**
+   * For formatting object used to convert timestamp columns to strings, used
+   * instead of a timestamp pattern. As formatting objects are not
+   * thread-safe, formatting is synchronized on the object, so
+   * {@link #setTimestampPattern} is preferred.
+   * 
+   * @param timestamp_format
+   */
+  public void setTimestampFormat( final DateFormat timestamp_format )
+  {
+    if ( timestamp_format == null )
+      throw new NullPointerException();
+    timestampFormat = timestamp_format;
+    timestampPattern = null;
+  }
+
+  /**
+   * The pattern used to convert timestamp columns to strings (default
+   * {@link #DEFAULT_TIMESTAMP_FORMAT}).
+   * 
+   * @param timestamp_pattern
+   */
+  public void setTimestampPattern( final DatePattern timestamp_pattern )
+  {
+    if ( timestamp_pattern == null )
+      throw new NullPointerException();
+    timestampPattern = timestamp_pattern;
+    timestampFormat = null;
+  }
+
+  /**
+   * The total number of individual rows read from the record set across all
+   * write operations.
+   * 
+   * @return Total rows read.
+   */
+  public int totalRead()
+  {
+    return (meta == null) ? 0 : meta.totalRead;
+  }
+
+  /**
+   * The total number of top level records written in across all write
+   * operations. If there is only one record level being used, this will be the
+   * same as the {@link #totalRead()} value.
+   * 
+   * @return Total top level records written.
+   */
+  public int totalWritten()
+  {
+    return (meta == null) ? 0 : meta.totalWritten;
+  }
+
+  /**
+   * Write all remaining records from the result set to the specified writer.
+   * If all rows have already been written, then an empty document (e.g., just
+   * the container, if the output format has one) will be written. Use
+   * {@link #eors} to avoid this.
+   * 
+   * @param out
+   *        The writer to write to.
+   * @throws IOException
+   * @throws SQLException
+   */
+  public void write( final Writer out ) throws IOException, SQLException
+  {
+    write(out, 0);
+  }
+
+  /**
+   * Write records from the result set to the specified writer. If all rows
+   * have already been written, then an empty document (e.g., just the
+   * container, if the output format has one) will be written. Use
+   * {@link #eors} to avoid this.
+   * 
+   * @param out
+   *        The writer to write to.
+   * @param limit
+   *        The maximum number of (top-level) records to write (or 0 for all
+   *        remaining records).
+   * @return True if there are still more records to be written.
+   * @throws IOException
+   * @throws SQLException
+   */
+  public boolean write( final Writer out, final int limit )
+    throws IOException,
+      SQLException
+  {
+    return write(out, out, out, limit, false);
+  }
+
+  /**
+   * Write all remaining records from the result set, UTF-8 encoded, to the
+   * specified output stream. If all rows have already been written, then an
+   * empty document (e.g., just the container, if the output format has one)
+   * will be written. Use {@link #eors} to avoid this.
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @throws IOException
+   * @throws SQLException
+   * @see #write(OutputStream, int)
+   */
+  public void write( final OutputStream out ) throws IOException, SQLException
+  {
+    write(out, 0);
+  }
+
+  /**
+   * <p>
+   * Write records from the result set, UTF-8 encoded, to the specified output
+   * stream. If all rows have already been written, then an empty document
+   * (e.g., just the container, if the output format has one) will be written.
+   * Use {@link #eors} to avoid this.
+   * </p>
+   * 
+   * <p>
+   * This is the fastest way of writing large result sets, as characters are
+   * escaped and encoded straight into a single reusable byte buffer (see
+   * {@link UTF8BufferedWriter}). The output stream is flushed but not closed.
+   * </p>
+   * 
+   * @param out
+   *        The output stream to write to.
+   * @param limit
+   *        The maximum number of (top-level) records to write (or 0 for all
+   *        remaining records).
+   * @return True if there are still more records to be written.
+   * @throws IOException
+   * @throws SQLException
+   */
+  public boolean write( final OutputStream out, final int limit )
+    throws IOException,
+      SQLException
+  {
+    final UTF8BufferedWriter wout = new UTF8BufferedWriter(out);
+    final boolean ret = write(wout, wout, wout, limit, true);
+    wout.flush();
+    return ret;
+  }
+
+  /**
+   * The number of top level records written in the last write operation. If
+   * there is only one record level being used, this will be the same as the
+   * {@link #read()} value.
+   * 
+   * @return Number of top level records written in the last write operation.
+   */
+  public int written()
+  {
+    return (meta == null) ? 0 : meta.written;
+  }
+
+  /**
+   * Converts a date to a string.
+   * 
+   * @param obj
+   * @param column
+   * @param sql_type
+   * @return Date formatted as a string.
+   */
+  protected String getDate( final Object obj, @SuppressWarnings( "unused" )
+  final String column, @SuppressWarnings( "unused" )
+  final int sql_type )
+  {
+    final DatePattern pattern = datePattern;
+    if ( pattern != null )
+      return pattern.format((Date) obj);
+    final DateFormat df = dateFormat;
+    synchronized ( df )
+    {
+      return df.format((Date) obj);
+    }
+  }
+
+  /**
+   * Converts a float or double to a string, trimming any trailing zeros and
+   * decimal point.
+   * 
+   * @param obj
+   * @param column
+   * @param sql_type
+   * @return Double formatted as a string.
+   */
+  protected String getDouble( final Object obj, @SuppressWarnings( "unused" )
+  final String column, @SuppressWarnings( "unused" )
+  final int sql_type )
+  {
+    return trimTrailingZeros(obj.toString());
+  }
+
+  /**
+   * Converts a time to a string, removing any trailing zeros or decimal point.
+   * 
+   * @param obj
+   * @param column
+   * @param sql_type
+   * @return Time formatted as a string.
+   */
+  protected String getTime( final Object obj, @SuppressWarnings( "unused" )
+  final String column, @SuppressWarnings( "unused" )
+  final int sql_type )
+  {
+    final DatePattern pattern = timePattern;
+    if ( pattern != null )
+      return pattern.format((Date) obj);
+    final DateFormat df = timeFormat;
+    synchronized ( df )
+    {
+      return df.format((Date) obj);
+    }
+  }
+
+  /**
+   * Converts a timestamp to a string, removing any trailing zeros or decimal
+   * point.
+   * 
+   * @param obj
+   * @param column
+   * @param sql_type
+   * @return Tiemstamp formatted as a string.
+   */
+  protected String getTimestamp( final Object obj, @SuppressWarnings( "unused" )
+  final String column, @SuppressWarnings( "unused" )
+  final int sql_type )
+  {
+    final DatePattern pattern = timestampPattern;
+    if ( pattern != null )
+      return pattern.format((Date) obj);
+    final DateFormat df = timestampFormat;
+    synchronized ( df )
+    {
+      return df.format((Date) obj);
+    }
+  }
+
+  /**
+   * Converts the object retrieved from the result set to a string. By default
+   * dispatches a float or double to getDouble, a date or time related object to
+   * the appropriate method, otherwise just calls toString on the object passed
+   * in.
+   * 
+   * @param obj
+   *        The object from the result set.
+   * @param column
+   *        The name of the column.
+   * @param sql_type
+   *        The SQL type of the column, a constant from java.sql.Types.
+   * @return The object converted to a string.
+   */
+  protected String getValue( final Object obj, final String column,
+      final int sql_type )
+  {
+    switch ( sql_type )
+    {
+      case Types.DOUBLE:
+      case Types.FLOAT:
+      case Types.DECIMAL:
+        return getDouble(obj, column, sql_type);
+      case Types.DATE:
+        return getDate(obj, column, sql_type);
+      case Types.TIME:
+        return getTime(obj, column, sql_type);
+      case Types.TIMESTAMP:
+        return getTimestamp(obj, column, sql_type);
+    }
+    return obj.toString();
+  }
+
+  /**
+   * Set the object for the specified column.
+   * 
+   * @param name
+   *        The column name.
+   * @param newobj
+   *        The new object to put in it's place.
+   * @return The original object for this column.
+   */
+  protected Object setObject( final String name, final Object newobj )
+  {
+    final Meta md = meta;
+    if ( (md == null) || (!md.gotobjs) )
+      throw new IllegalStateException();
+    for ( int xi = 1; xi < md.columnNames.length; ++xi )
+      if ( name.equalsIgnoreCase(md.columnNames[xi]) )
+      {
+        final Object orig = md.objs[xi];
+        md.objs[xi] = newobj;
+        return orig;
+      }
+    throw new IllegalArgumentException();
+  }
+
+  /**
+   * Utility function that, if the string contains a decimal point, trims
+   * trailing zeros (up to and including the decimal point) off the end of the
+   * string. If the string is in scientific notation only the mantissa is
+   * trimmed, the exponent is left as is.
+   * 
+   * @param str
+   * @return The string with trailing zeros and decimal point trimmed off.
+   */
+  protected String trimTrailingZeros( final String str )
+  {
+    final int decpos = str.indexOf('.');
+    if ( decpos <= 0 )
+      return str;
+    final int len = str.length();
+    int end = decpos + 1;
+    while ( (end < len) && (Character.toUpperCase(str.charAt(end)) != 'E') )
+      ++end;
+    int last_zero = end;
+    while ( last_zero > decpos )
+    {
+      final char ch = str.charAt(last_zero - 1);
+      if ( (ch != '0') && (ch != '.') )
+        break;
+      --last_zero;
+    }
+    if ( last_zero >= end )
+      return str;
+    if ( end >= len )
+      return str.substring(0, last_zero);
+    return str.substring(0, last_zero) + str.substring(end);
+  }
+
+  /**
+   * Called once the column details have been read from the result set, before
+   * anything is written.
+   * 
+   * @param md
+   *        The column details.
+   */
+  void prepare( @SuppressWarnings( "unused" ) final Meta md )
+  {
+    // empty
+  }
+
+  /**
+   * Written between the records of separately written result sets when their
+   * output is stitched together (see {@link ParallelRsWriter}).
+   * 
+   * @return The separator, or an empty string if none is needed.
+   */
+  String recordSeparator()
+  {
+    return "";
+  }
+
+  /**
+   * Writes the whole result set, but with the output split into three parts,
+   * so the records of several result sets can be stitched together in to a
+   * single output.
+   * 
+   * @param start
+   *        Where to write anything that comes before the records (such as an
+   *        XML declaration or a CSV heading).
+   * @param out
+   *        Where to write the records.
+   * @param end
+   *        Where to write anything that comes after the records.
+   * @param utf8
+   *        True if the stitched output will be written to a UTF-8 encoded
+   *        output stream.
+   * @return True if any records were written.
+   */
+  final boolean writeParts( final Writer start, final Writer out,
+      final Writer end, final boolean utf8 ) throws IOException, SQLException
+  {
+    write(start, out, end, 0, utf8);
+    return meta.written > 0;
+  }
+
+  /**
+   * Called at the start of each write, before any records.
+   * 
+   * @param out
+   *        Where we are writing to.
+   * @param utf8
+   *        True if we are writing to a UTF-8 encoded output stream.
+   */
+  abstract void startOutput( Writer out, boolean utf8 ) throws IOException;
+
+  /**
+   * Called when a new record is started at the specified level, before any of
+   * the columns for that level are written.
+   * 
+   * @param out
+   *        Where we are writing to.
+   * @param lvl
+   *        The level of the record.
+   */
+  abstract void startRecord( Writer out, int lvl ) throws IOException;
+
+  /**
+   * Called for each column of the current record.
+   * 
+   * @param out
+   *        Where we are writing to.
+   * @param idx
+   *        The index of the column.
+   */
+  abstract void writeColumn( Writer out, int idx ) throws IOException;
+
+  /**
+   * Called when a record at the specified level is finished, after any
+   * sub-records.
+   * 
+   * @param out
+   *        Where we are writing to.
+   * @param lvl
+   *        The level of the record.
+   */
+  abstract void endRecord( Writer out, int lvl ) throws IOException;
+
+  /**
+   * Called at the end of each write, after all records.
+   * 
+   * @param out
+   *        Where we are writing to.
+   */
+  abstract void endOutput( Writer out ) throws IOException;
+
+  /**
+   * The printable ASCII characters that would need to be escaped or quoted in
+   * the output. Date, time and timestamp values are only written directly if
+   * their pattern can never produce any of these characters.
+   * 
+   * @return The characters that need escaping.
+   */
+  abstract String specialChars();
+
+  /**
+   * Checks if any subclass between the specified class and this one declares a
+   * method of the specified name(s).
+   */
+  static boolean overrides( final Class<?> cls, final String... names )
+  {
+    for ( Class<?> cl = cls; cl != AbstractRsWriter.class; cl = cl
+        .getSuperclass() )
+      for ( Method method : cl.getDeclaredMethods() )
+        for ( String name : names )
+          if ( name.equals(method.getName()) )
+            return true;
+    return false;
+  }
+
+  /**
+   * Writes an integer without creating a string.
+   */
+  static void writeLong( final Writer out, final long value,
+      final char[] digits ) throws IOException
+  {
+    if ( value == Long.MIN_VALUE )
+    {
+      out.write(Long.toString(value));
+      return;
+    }
+    long val = (value < 0) ? -value : value;
+    int pos = digits.length;
+    do
+    {
+      digits[--pos] = (char) ('0' + (val % 10));
+      val /= 10;
+    }
+    while ( val != 0 );
+    if ( value < 0 )
+      digits[--pos] = '-';
+    out.write(digits, pos, digits.length - pos);
+  }
+
+  private void closeLevel( final Writer out, final int lvl ) throws IOException
+  {
+    for ( int xi = meta.lastlevel; xi >= lvl; --xi )
+      endRecord(out, xi);
+
+    if ( lvl <= 0 )
+    {
+      meta.written += 1;
+      meta.totalWritten += 1;
+    }
+  }
+
+  private static DatePattern directPattern( final boolean direct,
+      final DatePattern pattern, final String special )
+  {
+    if ( direct && (pattern != null) && pattern.isSafeFor(special) )
+      return pattern;
+    return null;
+  }
+
+  private Meta getMeta() throws SQLException
+  {
+    Meta md = meta;
+    if ( md == null )
+    {
+      md = new Meta();
+      meta = md;
+      if ( !md.eors )
+        prepare(md);
+    }
+    return md;
+  }
+
+  private void openLevel( final Writer out, final int lvl ) throws IOException
+  {
+    for ( int lvlxi = lvl; lvlxi <= meta.lastlevel; ++lvlxi )
+    {
+      startRecord(out, lvlxi);
+      final int[] cols = meta.cols[lvlxi];
+      for ( int xi = 0; xi < cols.length; ++xi )
+        writeColumn(out, cols[xi]);
+    }
+  }
+
+  private boolean write( final Writer start, final Writer out,
+      final Writer end, final int limit, final boolean utf8 )
+    throws IOException,
+      SQLException
+  {
+    final Meta md = getMeta();
+    md.read = 0;
+    md.written = 0;
+    md.indent = 0;
+    md.first = true;
+
+    final String special = specialChars();
+    md.datePattern = directPattern(md.directDate, datePattern, special);
+    md.timePattern = directPattern(md.directTime, timePattern, special);
+    md.timestampPattern = directPattern(md.directTimestamp, timestampPattern,
+      special);
+
+    startOutput(start, utf8);
+
+    while ( !md.eors )
+    {
+      if ( md.first )
+      {
+        md.first = false;
+        openLevel(out, 0);
+      }
+      else
+      {
+        final int lvl = md.findBreakLevel();
+        closeLevel(out, lvl);
+        if ( (limit > 0) && (md.written >= limit) )
+          break;
+        openLevel(out, lvl);
+      }
+
+      if ( !md.next() )
+        closeLevel(out, 0);
+    }
+
+    endOutput(end);
+
+    return !md.eors;
+  }
+}
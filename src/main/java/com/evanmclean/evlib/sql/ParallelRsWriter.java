@@ -0,0 +1,400 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import com.evanmclean.evlib.exceptions.UnhandledException;
+import com.evanmclean.evlib.io.UTF8BufferedWriter;
+
+/**
+ * <p>
+ * Exports a large query in parallel, by running it for a number of key
+ * ranges at the same time on separate connections, and stitching the output
+ * for each range together, in order, into a single output.
+ * </p>
+ * 
+ * <p>
+ * The query must have two parameters, the inclusive lower bound and the
+ * exclusive upper bound of the key range, and should order its rows by the
+ * key. For example:
+ * </p>
+ * 
+ * <pre>
+ * final RsXml template = new RsXml();
+ * template.setContainerElementName(&quot;orders&quot;);
+ * template.setRecord(&quot;order&quot;);
+ * 
+ * final ParallelRsWriter prw = new ParallelRsWriter(data_source,
+ *     &quot;select * from orders where id &gt;= ? and id &lt; ? order by id&quot;,
+ *     template);
+ * prw.write(out, ParallelRsWriter.split(min_id, max_id + 1, 200));
+ * </pre>
+ * 
+ * <p>
+ * Each range is written using a copy of the template writer (see
+ * {@link AbstractRsWriter#forResultSet(ResultSet)}) into an in-memory buffer,
+ * so the output is the same as if the whole query had been written by the
+ * template, as long as records (including any sub-records) do not span
+ * ranges. The ranges should be small enough that several of them fit
+ * comfortably in memory, as up to twice the number of threads can be
+ * buffered at any time.
+ * </p>
+ * 
+ * <p>
+ * Each range uses its own connection from the data source, which should be
+ * pooled and have enough connections for the number of threads. Some drivers
+ * (such as PostgreSQL) only honour the fetch size if the connection is not in
+ * auto-commit mode.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class ParallelRsWriter
+{
+  /**
+   * The default fetch size (1000) used for each query.
+   */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  private final DataSource dataSource;
+  private final String sql;
+  private final AbstractRsWriter template;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+
+  /**
+   * Creates a parallel writer.
+   * 
+   * @param data_source
+   *        Where to get the connections from.
+   * @param sql
+   *        The query, with the lower and upper bounds of the key range as its
+   *        two parameters.
+   * @param template
+   *        The configured writer used to write the output. It is not modified
+   *        and must not be changed while writing.
+   */
+  public ParallelRsWriter( final DataSource data_source, final String sql,
+      final AbstractRsWriter template )
+  {
+    if ( (data_source == null) || (sql == null) || (template == null) )
+      throw new NullPointerException();
+    this.dataSource = data_source;
+    this.sql = sql;
+    this.template = template;
+  }
+
+  /**
+   * The fetch size used for each query (default {@link #DEFAULT_FETCH_SIZE}).
+   * 
+   * @return The fetch size.
+   */
+  public int getFetchSize()
+  {
+    return fetchSize;
+  }
+
+  /**
+   * The maximum number of queries run at the same time (default is the
+   * number of available processors).
+   * 
+   * @return The number of threads.
+   */
+  public int getThreads()
+  {
+    return threads;
+  }
+
+  /**
+   * The fetch size used for each query (default {@link #DEFAULT_FETCH_SIZE}).
+   * 
+   * @param fetch_size
+   *        The fetch size, or zero to use the driver's default.
+   */
+  public void setFetchSize( final int fetch_size )
+  {
+    if ( fetch_size < 0 )
+      throw new IllegalArgumentException("Fetch size cannot be negative.");
+    fetchSize = fetch_size;
+  }
+
+  /**
+   * The maximum number of queries run at the same time (default is the
+   * number of available processors).
+   * 
+   * @param num_threads
+   *        The number of threads.
+   */
+  public void setThreads( final int num_threads )
+  {
+    if ( num_threads < 1 )
+      throw new IllegalArgumentException("Need at least one thread.");
+    threads = num_threads;
+  }
+
+  /**
+   * Splits a range of long integer keys into a number of evenly sized
+   * partitions, for passing to the write methods.
+   * 
+   * @param lower
+   *        The lowest key (inclusive).
+   * @param upper
+   *        The highest key (exclusive).
+   * @param partitions
+   *        The number of partitions. If more than the number of keys, there
+   *        will be one partition per key.
+   * @return The bounds of the partitions, which is one more than the number of
+   *         partitions.
+   */
+  public static Long[] split( final long lower, final long upper,
+      final int partitions )
+  {
+    if ( upper <= lower )
+      throw new IllegalArgumentException("Upper bound must be above lower.");
+    if ( partitions < 1 )
+      throw new IllegalArgumentException("Need at least one partition.");
+    final long range = upper - lower;
+    final int parts = (int) Math.min(partitions, range);
+    final long step = range / parts;
+    final long rem = range % parts;
+    final Long[] bounds = new Long[parts + 1];
+    for ( int xi = 0; xi <= parts; ++xi )
+      bounds[xi] = Long.valueOf(lower + (xi * step) + Math.min(xi, rem));
+    return bounds;
+  }
+
+  /**
+   * Runs the query for each key range and writes the combined output.
+   * 
+   * @param out
+   *        Where to write the output.
+   * @param bounds
+   *        The bounds of the key ranges (see {@link #split}). Range
+   *        <code>n</code> is from <code>bounds[n]</code> (inclusive) to
+   *        <code>bounds[n + 1]</code> (exclusive).
+   * @throws IOException
+   * @throws SQLException
+   * @throws InterruptedException
+   */
+  public void write( final Writer out, final Object[] bounds )
+    throws IOException,
+      SQLException,
+      InterruptedException
+  {
+    write(out, bounds, false);
+  }
+
+  /**
+   * Runs the query for each key range and writes the combined output in
+   * UTF-8.
+   * 
+   * @param out
+   *        Where to write the output.
+   * @param bounds
+   *        The bounds of the key ranges (see {@link #split}). Range
+   *        <code>n</code> is from <code>bounds[n]</code> (inclusive) to
+   *        <code>bounds[n + 1]</code> (exclusive).
+   * @throws IOException
+   * @throws SQLException
+   * @throws InterruptedException
+   */
+  public void write( final OutputStream out, final Object[] bounds )
+    throws IOException,
+      SQLException,
+      InterruptedException
+  {
+    final UTF8BufferedWriter wout = new UTF8BufferedWriter(out);
+    write(wout, bounds, true);
+    wout.flush();
+  }
+
+  private Chunk get( final Future<Chunk> future ) throws IOException,
+      SQLException,
+      InterruptedException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch ( ExecutionException ex )
+    {
+      final Throwable cause = ex.getCause();
+      if ( cause instanceof IOException )
+        throw (IOException) cause;
+      if ( cause instanceof SQLException )
+        throw (SQLException) cause;
+      if ( cause instanceof RuntimeException )
+        throw (RuntimeException) cause;
+      if ( cause instanceof Error )
+        throw (Error) cause;
+      throw new UnhandledException(cause);
+    }
+  }
+
+  private void write( final Writer out, final Object[] bounds,
+      final boolean utf8 ) throws IOException,
+      SQLException,
+      InterruptedException
+  {
+    if ( (bounds == null) || (bounds.length < 2) )
+      throw new IllegalArgumentException(
+          "Need at least two bounds (one key range).");
+
+    final int parts = bounds.length - 1;
+    final int nthreads = Math.min(threads, parts);
+    final String separator = template.recordSeparator();
+    final ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+    try
+    {
+      // Keep a limited number of ranges queued ahead of the one being
+      // written, so we don't buffer the whole output.
+      final LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+      int next = 0;
+      Chunk first = null;
+      Chunk last = null;
+      boolean started = false;
+      for ( int xi = 0; xi < parts; ++xi )
+      {
+        while ( (next < parts) && (pending.size() < (nthreads * 2)) )
+        {
+          pending.add(exec.submit(new Chunk(bounds[next], bounds[next + 1],
+              utf8)));
+          ++next;
+        }
+
+        final Chunk chunk = get(pending.removeFirst());
+        if ( first == null )
+          first = chunk;
+        last = chunk;
+        if ( chunk.hasRecords )
+        {
+          if ( !started )
+          {
+            chunk.start.writeTo(out);
+            started = true;
+          }
+          else if ( separator.length() > 0 )
+          {
+            out.write(separator);
+          }
+          chunk.body.writeTo(out);
+        }
+        chunk.body = null;
+      }
+      if ( !started )
+        first.start.writeTo(out);
+      last.end.writeTo(out);
+    }
+    finally
+    {
+      exec.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes a single key range into buffers.
+   */
+  private final class Chunk implements Callable<Chunk>
+  {
+    private final Object lower;
+    private final Object upper;
+    private final boolean utf8;
+    final CharArrayWriter start = new CharArrayWriter(256);
+    CharArrayWriter body = new CharArrayWriter(8192);
+    final CharArrayWriter end = new CharArrayWriter(64);
+    boolean hasRecords;
+
+    Chunk( final Object lower, final Object upper, final boolean utf8 )
+    {
+      this.lower = lower;
+      this.upper = upper;
+      this.utf8 = utf8;
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    public Chunk call() throws IOException, SQLException
+    {
+      final Connection conn = dataSource.getConnection();
+      try
+      {
+        final PreparedStatement stmt = conn.prepareStatement(sql);
+        try
+        {
+          stmt.setObject(1, lower);
+          stmt.setObject(2, upper);
+          if ( fetchSize > 0 )
+            stmt.setFetchSize(fetchSize);
+          final ResultSet rs = stmt.executeQuery();
+          try
+          {
+            hasRecords = template.forResultSet(rs).writeParts(start, body,
+              end, utf8);
+          }
+          finally
+          {
+            rs.close();
+          }
+        }
+        finally
+        {
+          stmt.close();
+        }
+      }
+      finally
+      {
+        conn.close();
+      }
+      return this;
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <p>
+ * An implementation of <code>java.sql.Array</code> that holds a java array and
+ * renders it as a Postgresql array literal (e.g.,
+ * <code>{1,2,3}</code>) for use as a parameter in a PreparedStatement. Created
+ * by the various <code>xxxToArray</code> methods of {@link PostgresqlUtils}.
+ * </p>
+ * 
+ * <p>
+ * The literal is only built the first time it is needed (usually when the
+ * driver calls <code>toString()</code>), into a buffer presized from the
+ * length of the array, and is then cached. So binding the same array to
+ * several statements, or re-executing a statement, does not rebuild it.
+ * </p>
+ * 
+ * <p>
+ * Supports <code>int[]</code>, <code>long[]</code>, <code>short[]</code>,
+ * <code>double[]</code>, <code>float[]</code>, <code>boolean[]</code>,
+ * <code>String[]</code>, <code>UUID[]</code> and <code>byte[][]</code> (as an
+ * array of <tt>bytea</tt>), as well as multi-dimensional arrays of any of
+ * these (e.g., <code>int[][]</code>). Any other object is rendered as a
+ * quoted string of its <code>toString()</code> value. Null elements are
+ * rendered as <tt>NULL</tt>.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class PgArray implements Array
+{
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Object arr;
+  private final String baseTypeName;
+  private final int baseType;
+  private volatile String literal;
+
+  PgArray( final Object arr, final String base_type_name, final int base_type )
+  {
+    if ( (arr == null) || (!arr.getClass().isArray()) )
+      throw new IllegalArgumentException("Not an array.");
+    this.arr = arr;
+    this.baseTypeName = base_type_name;
+    this.baseType = base_type;
+  }
+
+  @SuppressWarnings( "unused" )
+  public void free()
+  {
+    literal = null;
+  }
+
+  /**
+   * Returns the original java array this object was created with (not a
+   * copy).
+   */
+  public Object getArray()
+  {
+    return arr;
+  }
+
+  /**
+   * Returns a copy of part of the (first dimension of) the original java
+   * array.
+   * 
+   * @param index
+   *        The index of the first element to retrieve, where the first element
+   *        is at index 1.
+   * @param count
+   *        The number of elements to retrieve.
+   */
+  public Object getArray( final long index, final int count )
+    throws SQLException
+  {
+    final int len = java.lang.reflect.Array.getLength(arr);
+    if ( (index < 1) || (count < 0) || ((index - 1 + count) > len) )
+      throw new SQLException("Index out of range: " + index + " count "
+          + count);
+    final Object ret = java.lang.reflect.Array.newInstance(arr.getClass()
+        .getComponentType(), count);
+    System.arraycopy(arr, (int) (index - 1), ret, 0, count);
+    return ret;
+  }
+
+  /**
+   * Same as {@link #getArray(long, int)}, as the type map is not used.
+   */
+  public Object getArray( final long index, final int count,
+      final Map<String, Class<?>> map ) throws SQLException
+  {
+    return getArray(index, count);
+  }
+
+  /**
+   * Same as {@link #getArray()}, as the type map is not used.
+   */
+  public Object getArray( final Map<String, Class<?>> map )
+  {
+    return getArray();
+  }
+
+  public int getBaseType()
+  {
+    return baseType;
+  }
+
+  public String getBaseTypeName()
+  {
+    return baseTypeName;
+  }
+
+  public ResultSet getResultSet() throws SQLException
+  {
+    throw new SQLException("Not supported.");
+  }
+
+  public ResultSet getResultSet( final long index, final int count )
+    throws SQLException
+  {
+    throw new SQLException("Not supported.");
+  }
+
+  public ResultSet getResultSet( final long index, final int count,
+      final Map<String, Class<?>> map ) throws SQLException
+  {
+    throw new SQLException("Not supported.");
+  }
+
+  public ResultSet getResultSet( final Map<String, Class<?>> map )
+    throws SQLException
+  {
+    throw new SQLException("Not supported.");
+  }
+
+  /**
+   * Returns the array as a Postgresql array literal. Built once then cached.
+   */
+  @Override
+  public String toString()
+  {
+    String ret = literal;
+    if ( ret == null )
+    {
+      final StringBuilder buff = new StringBuilder(estimate(arr));
+      append(buff, arr);
+      literal = ret = buff.toString();
+    }
+    return ret;
+  }
+
+  /**
+   * Works out the base type (as per <code>java.sql.Types</code>) for the
+   * specified Postgresql type name.
+   * 
+   * @param base_type_name
+   *        The Postgresql type name.
+   * @return The matching value from <code>java.sql.Types</code>, or
+   *         <code>Types.OTHER</code>.
+   */
+  static int baseTypeFor( final String base_type_name )
+  {
+    final String name = base_type_name.toLowerCase();
+    if ( name.equals("int4") || name.equals("int") || name.equals("integer") )
+      return Types.INTEGER;
+    if ( name.equals("int8") || name.equals("bigint") )
+      return Types.BIGINT;
+    if ( name.equals("int2") || name.equals("smallint") )
+      return Types.SMALLINT;
+    if ( name.equals("float8") || name.equals("double precision") )
+      return Types.DOUBLE;
+    if ( name.equals("float4") || name.equals("real") )
+      return Types.REAL;
+    if ( name.equals("numeric") || name.equals("decimal") )
+      return Types.NUMERIC;
+    if ( name.equals("bool") || name.equals("boolean") )
+      return Types.BOOLEAN;
+    if ( name.equals("varchar") || name.equals("character varying") )
+      return Types.VARCHAR;
+    if ( name.equals("text") )
+      return Types.VARCHAR;
+    if ( name.equals("char") || name.equals("bpchar")
+        || name.equals("character") )
+      return Types.CHAR;
+    if ( name.equals("bytea") )
+      return Types.BINARY;
+    return Types.OTHER;
+  }
+
+  private static void append( final StringBuilder buff, final Object arr )
+  {
+    buff.append('{');
+    if ( arr instanceof int[] )
+    {
+      final int[] ar = (int[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi]);
+      }
+    }
+    else if ( arr instanceof long[] )
+    {
+      final long[] ar = (long[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi]);
+      }
+    }
+    else if ( arr instanceof double[] )
+    {
+      final double[] ar = (double[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi]);
+      }
+    }
+    else if ( arr instanceof short[] )
+    {
+      final short[] ar = (short[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi]);
+      }
+    }
+    else if ( arr instanceof float[] )
+    {
+      final float[] ar = (float[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi]);
+      }
+    }
+    else if ( arr instanceof boolean[] )
+    {
+      final boolean[] ar = (boolean[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        buff.append(ar[xi] ? 't' : 'f');
+      }
+    }
+    else if ( arr instanceof Object[] )
+    {
+      final Object[] ar = (Object[]) arr;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        if ( xi > 0 )
+          buff.append(',');
+        appendElement(buff, ar[xi]);
+      }
+    }
+    else
+    {
+      throw new IllegalArgumentException("Unsupported array type: "
+          + arr.getClass().getName());
+    }
+    buff.append('}');
+  }
+
+  private static void appendBytea( final StringBuilder buff, final byte[] arr )
+  {
+    // Hex format, with the backslash escaped for the array literal.
+    buff.append("\"\\\\x");
+    for ( int xi = 0; xi < arr.length; ++xi )
+    {
+      final int by = arr[xi];
+      buff.append(HEX[(by >> 4) & 0x0f]);
+      buff.append(HEX[by & 0x0f]);
+    }
+    buff.append('"');
+  }
+
+  private static void appendElement( final StringBuilder buff, final Object obj )
+  {
+    if ( obj == null )
+      buff.append("NULL");
+    else if ( obj instanceof byte[] )
+      appendBytea(buff, (byte[]) obj);
+    else if ( obj.getClass().isArray() )
+      append(buff, obj);
+    else if ( obj instanceof UUID )
+      buff.append(obj.toString());
+    else if ( obj instanceof Number )
+      buff.append(obj.toString());
+    else
+      appendString(buff, obj.toString());
+  }
+
+  private static void appendString( final StringBuilder buff, final String str )
+  {
+    final int len = str.length();
+    buff.append('"');
+    int start = 0;
+    for ( int xi = 0; xi < len; ++xi )
+    {
+      final char ch = str.charAt(xi);
+      if ( (ch == '"') || (ch == '\\') )
+      {
+        buff.append(str, start, xi);
+        buff.append('\\');
+        start = xi;
+      }
+    }
+    buff.append(str, start, len);
+    buff.append('"');
+  }
+
+  /**
+   * Works out a reasonable initial size for the buffer for the literal so it
+   * (usually) does not have to grow while being built.
+   */
+  private static int estimate( final Object arr )
+  {
+    if ( arr instanceof int[] )
+      return 2 + (((int[]) arr).length * 8);
+    if ( arr instanceof long[] )
+      return 2 + (((long[]) arr).length * 12);
+    if ( arr instanceof double[] )
+      return 2 + (((double[]) arr).length * 20);
+    if ( arr instanceof short[] )
+      return 2 + (((short[]) arr).length * 6);
+    if ( arr instanceof float[] )
+      return 2 + (((float[]) arr).length * 14);
+    if ( arr instanceof boolean[] )
+      return 2 + (((boolean[]) arr).length * 2);
+    if ( arr instanceof Object[] )
+    {
+      final Object[] ar = (Object[]) arr;
+      int size = 2;
+      for ( int xi = 0; xi < ar.length; ++xi )
+      {
+        final Object obj = ar[xi];
+        if ( obj == null )
+          size += 5;
+        else if ( obj instanceof byte[] )
+          size += 6 + (((byte[]) obj).length * 2);
+        else if ( obj.getClass().isArray() )
+          size += 1 + estimate(obj);
+        else if ( obj instanceof UUID )
+          size += 37;
+        else if ( obj instanceof String )
+          size += 3 + ((String) obj).length();
+        else
+          size += 16;
+      }
+      return size;
+    }
+    return 16;
+  }
+}
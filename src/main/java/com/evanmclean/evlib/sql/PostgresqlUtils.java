@@ -39,7 +39,8 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Map;
+import java.sql.Types;
+import java.util.UUID;
 
 /**
  * Utilities specific to the Postgres JDBC database.
@@ -50,6 +51,62 @@ import java.util.Map;
  */
 public final class PostgresqlUtils
 {
+  /**
+   * <p>
+   * Converts an array of byte arrays to an Array object that can be used in a
+   * PreparedStatement for Postgresql to set a <tt>bytea[]</tt> column.
+   * </p>
+   * 
+   * <p>
+   * <b>NOTE:</b> Uses the hex format for <tt>bytea</tt> values, which requires
+   * Postgresql 9.0 or later.
+   * </p>
+   * 
+   * @param arr
+   *        The array of byte arrays. Null elements are passed as nulls.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array byteaToArray( final byte[][] arr )
+  {
+    if ( arr == null )
+      return null;
+    return new PgArray(arr, "bytea", Types.BINARY);
+  }
+
+  /**
+   * Converts an array of doubles to an Array object that can be used in a
+   * PreparedStatement for Postgresql to set a <tt>float8[]</tt> column.
+   * 
+   * @param arr
+   *        The array of doubles.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array doubleToArray( final double[] arr )
+  {
+    return doubleToArray(arr, "float8");
+  }
+
+  /**
+   * Converts an array of doubles to an Array object that can be used in a
+   * PreparedStatement for Postgresql.
+   * 
+   * @param arr
+   *        The array of doubles.
+   * @param base_type_name
+   *        The base type of the array column you are trying to set. Will
+   *        usually be <tt>float8</tt>, or one of the other floating point types
+   *        such as <tt>float4</tt>, <tt>real</tt> or <tt>numeric</tt>.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array doubleToArray( final double[] arr,
+      final String base_type_name )
+  {
+    if ( arr == null )
+      return null;
+    return new PgArray(arr, base_type_name,
+        PgArray.baseTypeFor(base_type_name));
+  }
+
   /**
    * Read the current value from a sequence.
    * 
@@ -164,82 +221,41 @@ public final class PostgresqlUtils
   {
     if ( arr == null )
       return null;
-    return new Array() {
-      @SuppressWarnings( "unused" )
-      public void free()
-      {
-        // empty
-      }
-
-      public Object getArray()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final long index, final int count )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final long index, final int count,
-          final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public int getBaseType()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public String getBaseTypeName()
-      {
-        return base_type_name;
-      }
-
-      public ResultSet getResultSet()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public ResultSet getResultSet( final long index, final int count )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public ResultSet getResultSet( final long index, final int count,
-          final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
+    return new PgArray(arr, base_type_name,
+        PgArray.baseTypeFor(base_type_name));
+  }
 
-      public ResultSet getResultSet( final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
+  /**
+   * Converts an array of longs to an Array object that can be used in a
+   * PreparedStatement for Postgresql to set an <tt>int8[]</tt> column.
+   * 
+   * @param arr
+   *        The array of longs.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array longToArray( final long[] arr )
+  {
+    return longToArray(arr, "int8");
+  }
 
-      @Override
-      public String toString()
-      {
-        final StringBuilder buff = new StringBuilder("{");
-        if ( arr.length != 0 )
-        {
-          buff.append(arr[0]);
-          for ( int xi = 1; xi < arr.length; xi++ )
-          {
-            buff.append(',');
-            buff.append(arr[xi]);
-          }
-        }
-        buff.append('}');
-        return buff.toString();
-      }
-    };
+  /**
+   * Converts an array of longs to an Array object that can be used in a
+   * PreparedStatement for Postgresql.
+   * 
+   * @param arr
+   *        The array of longs.
+   * @param base_type_name
+   *        The base type of the array column you are trying to set. Will
+   *        usually be <tt>int8</tt> or <tt>bigint</tt>.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array longToArray( final long[] arr,
+      final String base_type_name )
+  {
+    if ( arr == null )
+      return null;
+    return new PgArray(arr, base_type_name,
+        PgArray.baseTypeFor(base_type_name));
   }
 
   /**
@@ -301,107 +317,51 @@ public final class PostgresqlUtils
   {
     if ( arr == null )
       return null;
-    return new Array() {
-      @SuppressWarnings( "unused" )
-      public void free()
-      {
-        // empty
-      }
-
-      public Object getArray()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final long index, final int count )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final long index, final int count,
-          final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public Object getArray( final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public int getBaseType()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public String getBaseTypeName()
-      {
-        return base_type_name;
-      }
-
-      public ResultSet getResultSet()
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public ResultSet getResultSet( final long index, final int count )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public ResultSet getResultSet( final long index, final int count,
-          final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      public ResultSet getResultSet( final Map<String, Class<?>> map )
-      {
-        throw new RuntimeException("Should never call this.");
-      }
-
-      @Override
-      public String toString()
-      {
-        final StringBuilder buff = new StringBuilder("{");
-        if ( arr.length != 0 )
-        {
-          appendString(buff, arr[0]);
-          for ( int xi = 1; xi < arr.length; xi++ )
-          {
-            buff.append(',');
-            appendString(buff, arr[xi]);
-          }
-        }
-        buff.append('}');
-        return buff.toString();
-      }
-
-      private void appendString( final StringBuilder buff, final String str )
-      {
-        final int len = str.length();
-        buff.append('"');
-        for ( int xi = 0; xi < len; ++xi )
-        {
-          final char ch = str.charAt(xi);
-          switch ( ch )
-          {
-            case '"':
-              buff.append("\\\"");
-              break;
+    return new PgArray(arr, base_type_name,
+        PgArray.baseTypeFor(base_type_name));
+  }
 
-            case '\\':
-              buff.append("\\\\");
-              break;
+  /**
+   * <p>
+   * Converts an array, possibly multi-dimensional, to an Array object that can
+   * be used in a PreparedStatement for Postgresql. For example, an
+   * <code>int[][]</code> for an <tt>int4[][]</tt> column.
+   * </p>
+   * 
+   * <p>
+   * The array can be of any of the types supported by {@link PgArray}. Note
+   * that Postgresql requires multi-dimensional arrays to be rectangular (all
+   * the sub-arrays of a dimension must be the same length).
+   * </p>
+   * 
+   * @param arr
+   *        The array.
+   * @param base_type_name
+   *        The base type of the array column you are trying to set (e.g.,
+   *        <tt>int4</tt>).
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array toArray( final Object arr, final String base_type_name )
+  {
+    if ( arr == null )
+      return null;
+    return new PgArray(arr, base_type_name,
+        PgArray.baseTypeFor(base_type_name));
+  }
 
-            default:
-              buff.append(ch);
-              break;
-          }
-        }
-        buff.append('"');
-      }
-    };
+  /**
+   * Converts an array of UUIDs to an Array object that can be used in a
+   * PreparedStatement for Postgresql to set a <tt>uuid[]</tt> column.
+   * 
+   * @param arr
+   *        The array of UUIDs. Null elements are passed as nulls.
+   * @return The SQL Array object, or null if a null array was specified.
+   */
+  public static Array uuidToArray( final UUID[] arr )
+  {
+    if ( arr == null )
+      return null;
+    return new PgArray(arr, "uuid", Types.OTHER);
   }
 
   private PostgresqlUtils()
@@ -0,0 +1,327 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.util.Date;
+
+import com.evanmclean.evlib.csv.CsvWriter;
+import com.evanmclean.evlib.lang.Str;
+import com.evanmclean.evlib.util.DatePattern;
+
+/**
+ * <p>
+ * Converts a result set to comma separated (CSV) output, with one line for
+ * each input record, optionally preceded by a heading line.
+ * </p>
+ * 
+ * <p>
+ * Column selection, break columns, aliases and limits work exactly the same
+ * as for {@link RsXml}. As CSV is flat, when there are sub-records each line
+ * contains the columns of all the levels, in level order, with the values of
+ * the higher level columns repeated on each line. Limits still apply to the
+ * number of top level records, so a write never stops part way through a
+ * group.
+ * </p>
+ * 
+ * <p>
+ * Fields are written by {@link CsvWriter#writeField}, so are quoted using the
+ * same rules as {@link com.evanmclean.evlib.escape.Esc#csv} (plus if they
+ * contain the separator character), but are escaped directly to the output
+ * without creating intermediate strings. Null values are written as empty
+ * fields.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RsCsv extends AbstractRsWriter
+{
+  /**
+   * The default line separator (&quot;\r\n&quot;), as per RFC 4180.
+   */
+  public static final String DEFAULT_LINE_SEPARATOR = "\r\n";
+
+  /**
+   * The record name used by the constructors that don't take one. Record
+   * names are not written to the CSV output.
+   */
+  public static final String DEFAULT_RECORD_NAME = "record";
+
+  private char separator = ',';
+  private String lineSeparator = DEFAULT_LINE_SEPARATOR;
+  private boolean includeHeading = true;
+  private boolean headingWritten;
+
+  /**
+   * Default constructor. A result set and at least one record name must be
+   * specified before you can write.
+   */
+  public RsCsv()
+  {
+    // empty
+  }
+
+  /**
+   * Sets the record set to be used, writing one line per row returned in the
+   * result set, and including all columns.
+   * 
+   * @param rs
+   *        Result set to use.
+   */
+  public RsCsv( final ResultSet rs )
+  {
+    setResultSet(rs);
+    setRecord(DEFAULT_RECORD_NAME);
+  }
+
+  /**
+   * Sets the record set to be used, writing one line per row returned in the
+   * result set, and including only the specified columns.
+   * 
+   * @param rs
+   *        Result set to use.
+   * @param columns
+   *        The only columns that will be written in the CSV output.
+   */
+  public RsCsv( final ResultSet rs, final String[] columns )
+  {
+    setResultSet(rs);
+    setRecord(DEFAULT_RECORD_NAME, columns);
+  }
+
+  /**
+   * Creates a new writer with the same configuration as this one, to write
+   * the specified result set.
+   * 
+   * @param new_rs
+   *        Result set for the new writer to use.
+   * @return A new writer for the result set.
+   * @see AbstractRsWriter#forResultSet(ResultSet)
+   */
+  @Override
+  public RsCsv forResultSet( final ResultSet new_rs )
+  {
+    return (RsCsv) super.forResultSet(new_rs);
+  }
+
+  /**
+   * The line separator written at the end of each line (default
+   * {@link #DEFAULT_LINE_SEPARATOR}).
+   * 
+   * @return The line separator.
+   */
+  public String getLineSeparator()
+  {
+    return lineSeparator;
+  }
+
+  /**
+   * The character used to separate fields (default comma).
+   * 
+   * @return The separator character.
+   */
+  public char getSeparator()
+  {
+    return separator;
+  }
+
+  /**
+   * Indicates if a heading line, made up of the column names (or aliases), is
+   * written before the first record (default true). The heading is only
+   * written once for each result set, even if it is written using several
+   * calls to write with a limit. No heading is written for an empty result
+   * set.
+   * 
+   * @return True if the heading line is written.
+   */
+  public boolean isIncludeHeading()
+  {
+    return includeHeading;
+  }
+
+  /**
+   * Indicates if a heading line, made up of the column names (or aliases), is
+   * written before the first record (default true).
+   * 
+   * @param include_heading
+   */
+  public void setIncludeHeading( final boolean include_heading )
+  {
+    includeHeading = include_heading;
+  }
+
+  /**
+   * The line separator written at the end of each line (default
+   * {@link #DEFAULT_LINE_SEPARATOR}).
+   * 
+   * @param line_separator
+   *        The line separator string to use. If empty or null then the default
+   *        will be used.
+   */
+  public void setLineSeparator( final String line_separator )
+  {
+    lineSeparator = Str.ifEmpty(line_separator, DEFAULT_LINE_SEPARATOR);
+  }
+
+  /**
+   * The character used to separate fields (default comma). For example, a tab
+   * character for tab separated output.
+   * 
+   * @param sep
+   *        The separator character. May not be a double-quote, carriage return
+   *        or line feed.
+   */
+  public void setSeparator( final char sep )
+  {
+    if ( (sep == '"') || (sep == '\r') || (sep == '\n') )
+      throw new IllegalArgumentException("Invalid separator character.");
+    separator = sep;
+  }
+
+  @Override
+  void endOutput( final Writer out )
+  {
+    // empty
+  }
+
+  @Override
+  void endRecord( final Writer out, final int lvl )
+  {
+    // empty
+  }
+
+  @Override
+  void prepare( final Meta md )
+  {
+    headingWritten = false;
+  }
+
+  @Override
+  String specialChars()
+  {
+    return " \",".concat(String.valueOf(separator));
+  }
+
+  @Override
+  void startOutput( final Writer out, final boolean utf8 ) throws IOException
+  {
+    if ( includeHeading && (!headingWritten) && (!meta.eors) )
+    {
+      boolean first = true;
+      for ( int lvl = 0; lvl <= meta.lastlevel; ++lvl )
+      {
+        final int[] cols = meta.cols[lvl];
+        for ( int xi = 0; xi < cols.length; ++xi )
+        {
+          if ( first )
+            first = false;
+          else
+            out.write(separator);
+          writeField(out, meta.outputNames[cols[xi]]);
+        }
+      }
+      out.write(lineSeparator);
+    }
+    headingWritten = true;
+  }
+
+  @Override
+  void startRecord( final Writer out, final int lvl ) throws IOException
+  {
+    // Each line is written in full once we get to the lowest level.
+    if ( lvl < meta.lastlevel )
+      return;
+
+    boolean first = true;
+    for ( int lvlxi = 0; lvlxi <= meta.lastlevel; ++lvlxi )
+    {
+      final int[] cols = meta.cols[lvlxi];
+      for ( int xi = 0; xi < cols.length; ++xi )
+      {
+        if ( first )
+          first = false;
+        else
+          out.write(separator);
+        writeValue(out, cols[xi]);
+      }
+    }
+    out.write(lineSeparator);
+  }
+
+  @Override
+  void writeColumn( final Writer out, final int idx )
+  {
+    // Columns are written by startRecord.
+  }
+
+  private void writeField( final Writer out, final String str )
+    throws IOException
+  {
+    CsvWriter.writeField(out, str, 0, str.length(), separator);
+  }
+
+  private void writeValue( final Writer out, final int idx )
+    throws IOException
+  {
+    final Object obj = meta.objs[idx];
+    if ( obj == null )
+      return;
+    if ( meta.direct
+        && ((obj instanceof Integer) || (obj instanceof Long)
+            || (obj instanceof Short) || (obj instanceof Byte)) )
+    {
+      writeLong(out, ((Number) obj).longValue(), meta.digits);
+      return;
+    }
+    if ( obj instanceof Date )
+    {
+      final DatePattern pattern = meta.directPattern(meta.columnTypes[idx]);
+      if ( pattern != null )
+      {
+        pattern.format(((Date) obj).getTime(), out);
+        return;
+      }
+    }
+
+    final String val = getValue(obj, meta.columnNames[idx],
+      meta.columnTypes[idx]);
+    if ( val != null )
+      writeField(out, val);
+  }
+}
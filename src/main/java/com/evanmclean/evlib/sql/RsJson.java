@@ -0,0 +1,363 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.util.Date;
+
+import com.evanmclean.evlib.escape.Esc;
+import com.evanmclean.evlib.exceptions.UnhandledException;
+import com.evanmclean.evlib.lang.Str;
+import com.evanmclean.evlib.util.DatePattern;
+
+/**
+ * <p>
+ * Converts a result set to JSON output. In it's simplest form it writes an
+ * array with one object for each input record. It can also output
+ * sub-records to any level, based on break values of columns that can change
+ * for each row, in which case each record contains an array of it's
+ * sub-records named by the record name of the sub-record's level. For
+ * example:
+ * </p>
+ * 
+ * <pre>
+ * [{&quot;grp&quot;:&quot;a&quot;,&quot;item&quot;:[{&quot;id&quot;:1},{&quot;id&quot;:2}]},{&quot;grp&quot;:&quot;b&quot;,&quot;item&quot;:[{&quot;id&quot;:3}]}]
+ * </pre>
+ * 
+ * <p>
+ * Column selection, break columns, aliases and limits work exactly the same
+ * as for {@link RsXml}. Integer, floating point, decimal and boolean columns
+ * are written as JSON numbers and booleans (floating point NaN and infinite
+ * values are written as <code>null</code>), unless {@link #getValue} has been
+ * overridden, in which case all values are written as strings.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RsJson extends AbstractRsWriter
+{
+  /**
+   * The record name used by the constructors that don't take one. The name of
+   * the top level record is not actually written to the JSON output.
+   */
+  public static final String DEFAULT_RECORD_NAME = "record";
+
+  private String containerName;
+
+  // Pre-escaped "name": for each column index.
+  private String[] keys;
+
+  // Pre-escaped "name":[ for each record level.
+  private String[] childKeys;
+
+  // If the current record at each level has had nothing written to it yet.
+  private boolean[] empty;
+
+  // If the array of sub-records at each level has been started.
+  private boolean[] childStarted;
+
+  private boolean topStarted;
+  private int currentLevel;
+
+  /**
+   * Default constructor. A result set and at least one record name must be
+   * specified before you can write.
+   */
+  public RsJson()
+  {
+    // empty
+  }
+
+  /**
+   * Sets the record set to be used, writing one object per row returned in the
+   * result set, and including all columns.
+   * 
+   * @param rs
+   *        Result set to use.
+   */
+  public RsJson( final ResultSet rs )
+  {
+    setResultSet(rs);
+    setRecord(DEFAULT_RECORD_NAME);
+  }
+
+  /**
+   * Sets the record set to be used, writing one object per row returned in the
+   * result set, and including only the specified columns.
+   * 
+   * @param rs
+   *        Result set to use.
+   * @param columns
+   *        The only columns that will be written in the JSON output.
+   */
+  public RsJson( final ResultSet rs, final String[] columns )
+  {
+    setResultSet(rs);
+    setRecord(DEFAULT_RECORD_NAME, columns);
+  }
+
+  /**
+   * No container object will be written on a call to write.
+   */
+  public void clearContainerName()
+  {
+    containerName = null;
+  }
+
+  /**
+   * Creates a new writer with the same configuration as this one, to write
+   * the specified result set.
+   * 
+   * @param new_rs
+   *        Result set for the new writer to use.
+   * @return A new writer for the result set.
+   * @see AbstractRsWriter#forResultSet(ResultSet)
+   */
+  @Override
+  public RsJson forResultSet( final ResultSet new_rs )
+  {
+    return (RsJson) super.forResultSet(new_rs);
+  }
+
+  /**
+   * The name of the container that will be written surrounding all the records
+   * in the next write. If set, the output will be an object with a single
+   * field of this name (e.g., <code>{&quot;name&quot;:[...]}</code>) rather
+   * than just an array. By default this is an empty string, indicating no
+   * container will be written.
+   * 
+   * @return The name of the container.
+   */
+  public String getContainerName()
+  {
+    return Str.ifNull(containerName);
+  }
+
+  /**
+   * The name of the container that will be written surrounding all the records
+   * in the next write. If set, the output will be an object with a single
+   * field of this name (e.g., <code>{&quot;name&quot;:[...]}</code>) rather
+   * than just an array. By default this is an empty string, indicating no
+   * container will be written.
+   * 
+   * @param container_name
+   *        The name of the container, or blank/null to indicate no container
+   *        is to be written.
+   */
+  public void setContainerName( final String container_name )
+  {
+    containerName = Str.trimToNull(container_name);
+  }
+
+  @Override
+  void endOutput( final Writer out ) throws IOException
+  {
+    out.write(']');
+    if ( containerName != null )
+      out.write('}');
+  }
+
+  @Override
+  void endRecord( final Writer out, final int lvl ) throws IOException
+  {
+    if ( (lvl < meta.lastlevel) && childStarted[lvl + 1] )
+    {
+      out.write(']');
+      childStarted[lvl + 1] = false;
+    }
+    out.write('}');
+  }
+
+  @Override
+  void prepare( final Meta md )
+  {
+    final String[] names = md.outputNames;
+    final String[] ks = new String[names.length];
+    for ( int xi = 1; xi < names.length; ++xi )
+      ks[xi] = quote(names[xi]) + ':';
+    keys = ks;
+
+    final String[] cks = new String[recordNames.length];
+    for ( int xi = 1; xi < cks.length; ++xi )
+      cks[xi] = quote(recordNames[xi]) + ":[";
+    childKeys = cks;
+
+    empty = new boolean[recordNames.length];
+    childStarted = new boolean[recordNames.length];
+  }
+
+  @Override
+  String recordSeparator()
+  {
+    return ",";
+  }
+
+  @Override
+  String specialChars()
+  {
+    return "\"\\";
+  }
+
+  @Override
+  void startOutput( final Writer out, final boolean utf8 ) throws IOException
+  {
+    topStarted = false;
+    if ( containerName != null )
+    {
+      out.write('{');
+      writeString(out, containerName);
+      out.write(':');
+    }
+    out.write('[');
+  }
+
+  @Override
+  void startRecord( final Writer out, final int lvl ) throws IOException
+  {
+    if ( lvl <= 0 )
+    {
+      if ( topStarted )
+        out.write(',');
+      topStarted = true;
+    }
+    else if ( childStarted[lvl] )
+    {
+      out.write(',');
+    }
+    else
+    {
+      final int parent = lvl - 1;
+      if ( !empty[parent] )
+        out.write(',');
+      empty[parent] = false;
+      out.write(childKeys[lvl]);
+      childStarted[lvl] = true;
+    }
+    out.write('{');
+    empty[lvl] = true;
+    currentLevel = lvl;
+  }
+
+  @Override
+  void writeColumn( final Writer out, final int idx ) throws IOException
+  {
+    final int lvl = currentLevel;
+    if ( !empty[lvl] )
+      out.write(',');
+    empty[lvl] = false;
+    out.write(keys[idx]);
+
+    final Object obj = meta.objs[idx];
+    if ( obj == null )
+    {
+      out.write("null");
+      return;
+    }
+
+    if ( meta.direct )
+    {
+      if ( (obj instanceof Integer) || (obj instanceof Long)
+          || (obj instanceof Short) || (obj instanceof Byte) )
+      {
+        writeLong(out, ((Number) obj).longValue(), meta.digits);
+        return;
+      }
+      if ( obj instanceof Boolean )
+      {
+        out.write(((Boolean) obj).booleanValue() ? "true" : "false");
+        return;
+      }
+      if ( obj instanceof Date )
+      {
+        final DatePattern pattern = meta.directPattern(meta.columnTypes[idx]);
+        if ( pattern != null )
+        {
+          out.write('"');
+          pattern.format(((Date) obj).getTime(), out);
+          out.write('"');
+          return;
+        }
+      }
+      if ( meta.directNumber && (obj instanceof Number) )
+      {
+        if ( ((obj instanceof Double) && (((Double) obj).isNaN() || ((Double) obj)
+            .isInfinite()))
+            || ((obj instanceof Float) && (((Float) obj).isNaN() || ((Float) obj)
+                .isInfinite())) )
+          out.write("null");
+        else
+          out.write(getValue(obj, meta.columnNames[idx], meta.columnTypes[idx]));
+        return;
+      }
+    }
+
+    final String val = getValue(obj, meta.columnNames[idx],
+      meta.columnTypes[idx]);
+    if ( val == null )
+      out.write("null");
+    else
+      writeString(out, val);
+  }
+
+  private static String quote( final String str )
+  {
+    final StringWriter out = new StringWriter(str.length() + 4);
+    try
+    {
+      writeString(out, str);
+    }
+    catch ( IOException ex )
+    {
+      // Cannot happen with a StringWriter.
+      throw new UnhandledException(ex);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Writes the string as a quoted and escaped JSON string, without creating any
+   * intermediate strings (see {@link Esc#json}).
+   */
+  private static void writeString( final Writer out, final String str )
+    throws IOException
+  {
+    Esc.json.quote(str, out);
+  }
+}
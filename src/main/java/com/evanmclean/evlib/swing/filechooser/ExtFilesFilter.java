@@ -38,7 +38,7 @@ import java.io.File;
 
 import javax.swing.filechooser.FileFilter;
 
-import com.evanmclean.evlib.lang.Str;
+import com.evanmclean.evlib.io.Files;
 import com.evanmclean.evlib.util.TreeSetIgnoreCase;
 
 /**
@@ -85,7 +85,7 @@ public class ExtFilesFilter extends FileFilter
     if ( filesOnly )
       if ( !file.isFile() )
         return false;
-    final String ext = getExtension(file.getName());
+    final String ext = Files.getExtension(file.getName());
     return exts.contains(ext);
   }
 
@@ -164,46 +164,4 @@ public class ExtFilesFilter extends FileFilter
   {
     showFolders = show_folders;
   }
-
-  /**
-   * Get the extension of the file (not including the '.'), or an empty string
-   * if none.
-   * 
-   * @param filename
-   * @return The file extension.
-   */
-  private String getExtension( final String filename )
-  {
-    if ( filename == null )
-      return null;
-    final int extpos = filename.lastIndexOf('.');
-    if ( extpos <= 0 )
-      return Str.EMPTY;
-
-    // Check that we are still in the base file part.
-    final int len = filename.length();
-    for ( int xi = extpos + 1; xi < len; ++xi )
-    {
-      final char ch = filename.charAt(xi);
-      switch ( ch )
-      {
-        case '/':
-        case '\\':
-          return Str.EMPTY;
-      }
-    }
-
-    // Check that we are not at the start of the base file part. (i.e., The base
-    // filename starts with a '.' and has no extension.
-    if ( extpos > 0 )
-      switch ( filename.charAt(extpos - 1) )
-      {
-        case '/':
-        case '\\':
-          return Str.EMPTY;
-      }
-
-    return filename.substring(extpos + 1);
-  }
-
 }
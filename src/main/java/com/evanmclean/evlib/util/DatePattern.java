@@ -0,0 +1,590 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.util;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import com.evanmclean.evlib.exceptions.UnhandledException;
+
+/**
+ * <p>
+ * An immutable, thread-safe date formatter, compiled from a subset of the
+ * {@link SimpleDateFormat} pattern syntax.
+ * </p>
+ * 
+ * <p>
+ * The pattern is parsed once, when the object is created, and formatting
+ * appends the fields straight to a {@link StringBuilder} or any other
+ * {@link Appendable} (such as a {@link java.io.Writer}), without any
+ * intermediate objects. As it holds no mutable state, a single instance can
+ * be shared freely between threads, unlike {@link SimpleDateFormat}.
+ * </p>
+ * 
+ * <p>
+ * The following pattern letters are supported, with the same meaning as for
+ * {@link SimpleDateFormat}: <code>y M d D E a H k K h m s S Z</code>. Text in
+ * single quotes is written literally (two single quotes for a single quote),
+ * as are any other non-letter characters. Any other letter will cause an
+ * {@link IllegalArgumentException}.
+ * </p>
+ * 
+ * <p>
+ * Dates are calculated using the proleptic Gregorian calendar, so will differ
+ * from {@link SimpleDateFormat} for dates before the Gregorian cutover in
+ * 1582. Years before 1 AD are written as zero or negative numbers rather than
+ * using an era.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class DatePattern
+{
+  private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+  private static final int LITERAL = 0;
+  private static final int YEAR = 1;
+  private static final int YEAR2 = 2;
+  private static final int MONTH = 3;
+  private static final int MONTH_TEXT = 4;
+  private static final int DAY = 5;
+  private static final int DAY_OF_YEAR = 6;
+  private static final int DAY_OF_WEEK_TEXT = 7;
+  private static final int AM_PM = 8;
+  private static final int HOUR_0_23 = 9;
+  private static final int HOUR_1_24 = 10;
+  private static final int HOUR_0_11 = 11;
+  private static final int HOUR_1_12 = 12;
+  private static final int MINUTE = 13;
+  private static final int SECOND = 14;
+  private static final int MILLISECOND = 15;
+  private static final int ZONE = 16;
+
+  private static final int[] DAYS_BEFORE_MONTH = new int[] { 0, 31, 59, 90,
+      120, 151, 181, 212, 243, 273, 304, 334 };
+
+  private final String pattern;
+  private final Locale locale;
+  private final TimeZone timeZone;
+  private final int[] kinds;
+  private final int[] widths;
+  private final String[][] texts;
+  private final String outputChars;
+
+  /**
+   * Compiles the pattern for the default locale and time zone.
+   * 
+   * @param pattern
+   *        The pattern, using the {@link SimpleDateFormat} syntax.
+   */
+  public DatePattern( final String pattern )
+  {
+    this(pattern, Locale.getDefault(), TimeZone.getDefault());
+  }
+
+  /**
+   * Compiles the pattern for the specified locale and the default time zone.
+   * 
+   * @param pattern
+   *        The pattern, using the {@link SimpleDateFormat} syntax.
+   * @param locale
+   *        The locale used for month names, day names and AM/PM markers.
+   */
+  public DatePattern( final String pattern, final Locale locale )
+  {
+    this(pattern, locale, TimeZone.getDefault());
+  }
+
+  /**
+   * Compiles the pattern for the specified locale and time zone.
+   * 
+   * @param pattern
+   *        The pattern, using the {@link SimpleDateFormat} syntax.
+   * @param locale
+   *        The locale used for month names, day names and AM/PM markers.
+   * @param time_zone
+   *        The time zone the dates are formatted in.
+   */
+  public DatePattern( final String pattern, final Locale locale,
+      final TimeZone time_zone )
+  {
+    if ( (pattern == null) || (locale == null) || (time_zone == null) )
+      throw new NullPointerException();
+    this.pattern = pattern;
+    this.locale = locale;
+    this.timeZone = (TimeZone) time_zone.clone();
+
+    final DateFormatSymbols symbols = new DateFormatSymbols(locale);
+    final List<Integer> knds = new ArrayList<Integer>();
+    final List<Integer> wdths = new ArrayList<Integer>();
+    final List<String[]> txts = new ArrayList<String[]>();
+    final StringBuilder chars = new StringBuilder();
+    final StringBuilder literal = new StringBuilder();
+
+    final int len = pattern.length();
+    int pos = 0;
+    while ( pos < len )
+    {
+      final char ch = pattern.charAt(pos);
+      if ( ch == '\'' )
+      {
+        ++pos;
+        if ( (pos < len) && (pattern.charAt(pos) == '\'') )
+        {
+          literal.append('\'');
+          ++pos;
+          continue;
+        }
+        while ( true )
+        {
+          if ( pos >= len )
+            throw new IllegalArgumentException("Unterminated quote in pattern: "
+                + pattern);
+          final char qch = pattern.charAt(pos++);
+          if ( qch == '\'' )
+          {
+            if ( (pos < len) && (pattern.charAt(pos) == '\'') )
+            {
+              literal.append('\'');
+              ++pos;
+              continue;
+            }
+            break;
+          }
+          literal.append(qch);
+        }
+        continue;
+      }
+
+      if ( !(((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z'))) )
+      {
+        literal.append(ch);
+        ++pos;
+        continue;
+      }
+
+      int count = 1;
+      while ( ((pos + count) < len) && (pattern.charAt(pos + count) == ch) )
+        ++count;
+      pos += count;
+
+      if ( literal.length() > 0 )
+      {
+        addField(knds, wdths, txts, LITERAL, 0,
+          new String[] { literal.toString() });
+        chars.append(literal);
+        literal.setLength(0);
+      }
+
+      String[] txt = null;
+      final int kind;
+      switch ( ch )
+      {
+        case 'y':
+          kind = (count == 2) ? YEAR2 : YEAR;
+          break;
+        case 'M':
+          if ( count >= 3 )
+          {
+            kind = MONTH_TEXT;
+            txt = (count == 3) ? symbols.getShortMonths() : symbols
+                .getMonths();
+          }
+          else
+          {
+            kind = MONTH;
+          }
+          break;
+        case 'd':
+          kind = DAY;
+          break;
+        case 'D':
+          kind = DAY_OF_YEAR;
+          break;
+        case 'E':
+          kind = DAY_OF_WEEK_TEXT;
+          txt = (count <= 3) ? symbols.getShortWeekdays() : symbols
+              .getWeekdays();
+          break;
+        case 'a':
+          kind = AM_PM;
+          txt = symbols.getAmPmStrings();
+          break;
+        case 'H':
+          kind = HOUR_0_23;
+          break;
+        case 'k':
+          kind = HOUR_1_24;
+          break;
+        case 'K':
+          kind = HOUR_0_11;
+          break;
+        case 'h':
+          kind = HOUR_1_12;
+          break;
+        case 'm':
+          kind = MINUTE;
+          break;
+        case 's':
+          kind = SECOND;
+          break;
+        case 'S':
+          kind = MILLISECOND;
+          break;
+        case 'Z':
+          kind = ZONE;
+          chars.append("+-");
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported pattern letter '"
+              + ch + "' in pattern: " + pattern);
+      }
+      if ( txt != null )
+        for ( String str : txt )
+          if ( str != null )
+            chars.append(str);
+      addField(knds, wdths, txts, kind, count, txt);
+    }
+    if ( literal.length() > 0 )
+    {
+      addField(knds, wdths, txts, LITERAL, 0,
+        new String[] { literal.toString() });
+      chars.append(literal);
+    }
+
+    final int num = knds.size();
+    kinds = new int[num];
+    widths = new int[num];
+    texts = new String[num][];
+    for ( int xi = 0; xi < num; ++xi )
+    {
+      kinds[xi] = knds.get(xi).intValue();
+      widths[xi] = wdths.get(xi).intValue();
+      texts[xi] = txts.get(xi);
+    }
+    outputChars = chars.toString();
+  }
+
+  /**
+   * Formats the date to a string.
+   * 
+   * @param date
+   *        The date to format.
+   * @return The formatted date.
+   */
+  public String format( final Date date )
+  {
+    return format(date.getTime());
+  }
+
+  /**
+   * Formats the date to a string.
+   * 
+   * @param millis
+   *        The date to format, as milliseconds since the epoch.
+   * @return The formatted date.
+   */
+  public String format( final long millis )
+  {
+    return format(millis, new StringBuilder(pattern.length() + 8)).toString();
+  }
+
+  /**
+   * Appends the formatted date to the output.
+   * 
+   * @param millis
+   *        The date to format, as milliseconds since the epoch.
+   * @param out
+   *        Where to write the formatted date.
+   * @throws IOException
+   */
+  public void format( final long millis, final Appendable out )
+    throws IOException
+  {
+    final int offset = timeZone.getOffset(millis);
+    final long local = millis + offset;
+    long days = local / MILLIS_PER_DAY;
+    int ms = (int) (local % MILLIS_PER_DAY);
+    if ( ms < 0 )
+    {
+      ms += MILLIS_PER_DAY;
+      --days;
+    }
+
+    // Convert days since the epoch to the Gregorian year, month and day.
+    final long zdays = days + 719468L;
+    final long era = ((zdays >= 0) ? zdays : (zdays - 146096L)) / 146097L;
+    final int doe = (int) (zdays - (era * 146097L));
+    final int yoe = (doe - (doe / 1460) + (doe / 36524) - (doe / 146096)) / 365;
+    final int doy = doe - ((365 * yoe) + (yoe / 4) - (yoe / 100));
+    final int mp = ((5 * doy) + 2) / 153;
+    final int day = doy - (((153 * mp) + 2) / 5) + 1;
+    final int month = (mp < 10) ? (mp + 3) : (mp - 9);
+    final long year = yoe + (era * 400L) + ((month <= 2) ? 1 : 0);
+
+    final int hour = ms / 3600000;
+    final int minute = (ms / 60000) % 60;
+    final int second = (ms / 1000) % 60;
+
+    for ( int xi = 0; xi < kinds.length; ++xi )
+    {
+      final int width = widths[xi];
+      switch ( kinds[xi] )
+      {
+        case LITERAL:
+          out.append(texts[xi][0]);
+          break;
+        case YEAR:
+          appendNumber(out, year, width);
+          break;
+        case YEAR2:
+          appendNumber(out, ((year % 100) + 100) % 100, 2);
+          break;
+        case MONTH:
+          appendNumber(out, month, width);
+          break;
+        case MONTH_TEXT:
+          out.append(texts[xi][month - 1]);
+          break;
+        case DAY:
+          appendNumber(out, day, width);
+          break;
+        case DAY_OF_YEAR:
+        {
+          int dyear = DAYS_BEFORE_MONTH[month - 1] + day;
+          if ( (month > 2) && isLeapYear(year) )
+            ++dyear;
+          appendNumber(out, dyear, width);
+          break;
+        }
+        case DAY_OF_WEEK_TEXT:
+        {
+          // The epoch was a Thursday, and Calendar.SUNDAY is 1.
+          int dow = (int) ((days + 4) % 7);
+          if ( dow < 0 )
+            dow += 7;
+          out.append(texts[xi][dow + 1]);
+          break;
+        }
+        case AM_PM:
+          out.append(texts[xi][(hour < 12) ? 0 : 1]);
+          break;
+        case HOUR_0_23:
+          appendNumber(out, hour, width);
+          break;
+        case HOUR_1_24:
+          appendNumber(out, (hour == 0) ? 24 : hour, width);
+          break;
+        case HOUR_0_11:
+          appendNumber(out, hour % 12, width);
+          break;
+        case HOUR_1_12:
+          appendNumber(out, ((hour % 12) == 0) ? 12 : (hour % 12), width);
+          break;
+        case MINUTE:
+          appendNumber(out, minute, width);
+          break;
+        case SECOND:
+          appendNumber(out, second, width);
+          break;
+        case MILLISECOND:
+          appendNumber(out, ms % 1000, width);
+          break;
+        case ZONE:
+        {
+          int mins = offset / 60000;
+          if ( mins < 0 )
+          {
+            out.append('-');
+            mins = -mins;
+          }
+          else
+          {
+            out.append('+');
+          }
+          appendNumber(out, mins / 60, 2);
+          appendNumber(out, mins % 60, 2);
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends the formatted date to the string builder.
+   * 
+   * @param millis
+   *        The date to format, as milliseconds since the epoch.
+   * @param sb
+   *        Where to write the formatted date.
+   * @return The string builder passed in.
+   */
+  public StringBuilder format( final long millis, final StringBuilder sb )
+  {
+    try
+    {
+      format(millis, (Appendable) sb);
+    }
+    catch ( IOException ex )
+    {
+      // Cannot happen with a StringBuilder.
+      throw new UnhandledException(ex);
+    }
+    return sb;
+  }
+
+  /**
+   * The locale used for month names, day names and AM/PM markers.
+   * 
+   * @return The locale used for month names, day names and AM/PM markers.
+   */
+  public Locale getLocale()
+  {
+    return locale;
+  }
+
+  /**
+   * The pattern this object was compiled from.
+   * 
+   * @return The pattern this object was compiled from.
+   */
+  public String getPattern()
+  {
+    return pattern;
+  }
+
+  /**
+   * The time zone the dates are formatted in.
+   * 
+   * @return A copy of the time zone the dates are formatted in.
+   */
+  public TimeZone getTimeZone()
+  {
+    return (TimeZone) timeZone.clone();
+  }
+
+  /**
+   * Indicates if the formatted output can only contain digits and printable
+   * ASCII characters that are not in the string of special characters. Used
+   * to determine if the output needs to be escaped or quoted before being
+   * written.
+   * 
+   * @param special
+   *        Characters that would need escaping.
+   * @return True if the formatted output will never contain characters outside
+   *         the printable ASCII range or any of the special characters.
+   */
+  public boolean isSafeFor( final String special )
+  {
+    final String chars = outputChars;
+    final int len = chars.length();
+    for ( int xi = 0; xi < len; ++xi )
+    {
+      final char ch = chars.charAt(xi);
+      if ( (ch < ' ') || (ch > '~') || (special.indexOf(ch) >= 0) )
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Creates a new {@link SimpleDateFormat} using the same pattern, locale and
+   * time zone as this object.
+   * 
+   * @return A new {@link SimpleDateFormat}.
+   */
+  public DateFormat toDateFormat()
+  {
+    final SimpleDateFormat df = new SimpleDateFormat(pattern, locale);
+    df.setTimeZone(getTimeZone());
+    return df;
+  }
+
+  /**
+   * Returns the pattern this object was compiled from.
+   */
+  @Override
+  public String toString()
+  {
+    return pattern;
+  }
+
+  private static void addField( final List<Integer> knds,
+      final List<Integer> wdths, final List<String[]> txts, final int kind,
+      final int width, final String[] txt )
+  {
+    knds.add(Integer.valueOf(kind));
+    wdths.add(Integer.valueOf(width));
+    txts.add(txt);
+  }
+
+  private static void appendNumber( final Appendable out, final long num,
+      final int width ) throws IOException
+  {
+    long val = num;
+    if ( val < 0 )
+    {
+      out.append('-');
+      val = -val;
+    }
+    int digits = 1;
+    for ( long xi = val; xi >= 10; xi /= 10 )
+      ++digits;
+    for ( int xi = digits; xi < width; ++xi )
+      out.append('0');
+    long div = 1;
+    for ( int xi = 1; xi < digits; ++xi )
+      div *= 10;
+    while ( div > 0 )
+    {
+      out.append((char) ('0' + ((val / div) % 10)));
+      div /= 10;
+    }
+  }
+
+  private static boolean isLeapYear( final long year )
+  {
+    return ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+  }
+}
@@ -85,6 +85,16 @@ public abstract class AbstractResultSetMethodizer
       return get(column_index);
     }
 
+    /**
+     * The methodizer this row belongs to.
+     * 
+     * @return The methodizer this row belongs to.
+     */
+    AbstractResultSetMethodizer getMethodizer()
+    {
+      return AbstractResultSetMethodizer.this;
+    }
+
     /**
      * Retrieve the object based on the column index.
      * 
@@ -181,6 +191,20 @@ public abstract class AbstractResultSetMethodizer
     return coll;
   }
 
+  /**
+   * The column index for a property name.
+   * 
+   * @param property_name
+   *        The property name (case-insensitive).
+   * @return The column index, starting from one, or zero if there is no such
+   *         property.
+   */
+  int getColumnIndex( final String property_name )
+  {
+    final Integer column_index = columnMapping.get(property_name);
+    return (column_index == null) ? 0 : column_index.intValue();
+  }
+
   private void addMapping( String name, int column_index ) throws SQLException
   {
     if ( columnMapping.put(name, column_index) != null )
@@ -0,0 +1,203 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.directive.Directive;
+import org.apache.velocity.runtime.parser.node.Node;
+
+import com.evanmclean.evlib.cache.CacheManager;
+import com.evanmclean.evlib.cache.ConcurrentHashMapCache;
+
+/**
+ * <p>
+ * A Velocity block directive that caches the rendered output of its body, so
+ * fragments that are rendered over and over with the same inputs (such as
+ * menus and lookup tables) can skip rendering entirely.
+ * </p>
+ * 
+ * <pre>
+ * #cache( &quot;menu-$user.Role&quot; )
+ *   ... expensive fragment ...
+ * #end
+ * 
+ * #cache( $key, 60 )
+ *   ... cached for 60 seconds instead of the cache's time-to-live ...
+ * #end
+ * </pre>
+ * 
+ * <p>
+ * The key is the first argument (converted to a string), and must include
+ * everything the fragment depends on. An optional second argument overrides
+ * the time-to-live of the cache, in seconds (a value of zero or less means the
+ * fragment is rendered but not cached). If the key is <code>null</code> the
+ * fragment is rendered without caching.
+ * </p>
+ * 
+ * <p>
+ * The rendered output is stored as a character array in a
+ * {@link ConcurrentHashMapCache} created from a {@link CacheManager}, which
+ * controls the default time-to-live and maximum number of fragments. Register
+ * the directive and the cache with the engine before it is initialised:
+ * </p>
+ * 
+ * <pre>
+ * final ConcurrentHashMapCache&lt;String, char[]&gt; cache = cache_manager
+ *     .builder().ttl(5, TimeUnit.MINUTES).max(1000).build(&quot;fragments&quot;);
+ * CacheDirective.register(engine, cache);
+ * engine.init();
+ * </pre>
+ * 
+ * <p>
+ * If the directive is loaded without a cache having been registered, the
+ * fragments are simply rendered each time.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CacheDirective extends Directive
+{
+  /**
+   * The name of the application attribute that holds the cache.
+   */
+  public static final String CACHE_ATTRIBUTE = CacheDirective.class.getName();
+
+  /**
+   * Registers the directive and the cache it uses with a Velocity engine. Must
+   * be called before the engine is initialised.
+   * 
+   * @param engine
+   *        The engine to use the directive.
+   * @param cache
+   *        The cache to store the rendered fragments in.
+   */
+  public static void register( final VelocityEngine engine,
+      final ConcurrentHashMapCache<String, char[]> cache )
+  {
+    engine.setApplicationAttribute(CACHE_ATTRIBUTE, cache);
+    engine.addProperty("userdirective", CacheDirective.class.getName());
+  }
+
+  private ConcurrentHashMapCache<String, char[]> cache;
+
+  @Override
+  public String getName()
+  {
+    return "cache";
+  }
+
+  @Override
+  public int getType()
+  {
+    return BLOCK;
+  }
+
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public void init( final RuntimeServices rs,
+      final InternalContextAdapter context, final Node node )
+    throws TemplateInitException
+  {
+    super.init(rs, context, node);
+    final int args = node.jjtGetNumChildren() - 1;
+    if ( (args < 1) || (args > 2) )
+      throw new TemplateInitException(
+          "#cache() requires a key and an optional time-to-live.", context
+              .getCurrentTemplateName(), node.getColumn(), node.getLine());
+    cache = (ConcurrentHashMapCache<String, char[]>) rs
+        .getApplicationAttribute(CACHE_ATTRIBUTE);
+  }
+
+  @Override
+  public boolean render( final InternalContextAdapter context,
+      final Writer writer, final Node node ) throws IOException
+  {
+    final int args = node.jjtGetNumChildren() - 1;
+    final Node block = node.jjtGetChild(args);
+    final Object key = node.jjtGetChild(0).value(context);
+    if ( (cache == null) || (key == null) )
+      return block.render(context, writer);
+
+    final String name = key.toString();
+    char[] out = cache.get(name);
+    if ( out == null )
+    {
+      final CharArrayWriter buff = new CharArrayWriter();
+      block.render(context, buff);
+      out = buff.toCharArray();
+      if ( args < 2 )
+      {
+        cache.put(name, out);
+      }
+      else
+      {
+        final long ttl = ttl(node.jjtGetChild(1).value(context), node);
+        if ( ttl > 0 )
+          cache.put(name, out, ttl, TimeUnit.SECONDS);
+      }
+    }
+    writer.write(out);
+    return true;
+  }
+
+  private long ttl( final Object ttl, final Node node )
+  {
+    if ( ttl instanceof Number )
+      return ((Number) ttl).longValue();
+    if ( ttl != null )
+      try
+      {
+        return Long.parseLong(ttl.toString().trim());
+      }
+      catch ( NumberFormatException ex )
+      {
+        // Fall through.
+      }
+    throw new VelocityException("Invalid #cache() time-to-live '" + ttl
+        + "' at " + getTemplateName() + " line " + node.getLine() + ", column "
+        + node.getColumn());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import org.apache.velocity.util.introspection.AbstractChainableUberspector;
+import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.VelPropertyGet;
+
+/**
+ * <p>
+ * A Velocity uberspector that resolves the property names used on the rows of
+ * a {@link ResultSetMethodizer} or {@link RowSetMethodizer} to a column index
+ * once, rather than looking the name up for every row.
+ * </p>
+ * 
+ * <p>
+ * Velocity caches the property getter for each reference in a template (for
+ * the duration of a merge), so something like <code>$row.FirstName</code>
+ * inside a <code>#foreach</code> has its name resolved on the first row, and
+ * is then just an array index (or a call to
+ * {@link java.sql.ResultSet#getObject(int)}) for the remaining rows. Anything
+ * that is not a methodizer row is passed on to the wrapped uberspector.
+ * </p>
+ * 
+ * <p>
+ * Chain it after the default uberspector in your Velocity configuration:
+ * </p>
+ * 
+ * <pre>
+ * runtime.introspector.uberspect = org.apache.velocity.util.introspection.UberspectImpl, com.evanmclean.evlib.velocity.MethodizerUberspect
+ * </pre>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class MethodizerUberspect extends AbstractChainableUberspector
+{
+  @Override
+  public VelPropertyGet getPropertyGet( final Object obj,
+      final String identifier, final Info info ) throws Exception
+  {
+    if ( obj instanceof AbstractResultSetMethodizer.Row )
+      return new ColumnGet(identifier);
+    return super.getPropertyGet(obj, identifier, info);
+  }
+
+  /**
+   * Gets a column by index, resolving the index from the property name the
+   * first time it is used (and again if used with the rows of a different
+   * methodizer).
+   */
+  private static final class ColumnGet implements VelPropertyGet
+  {
+    private final String name;
+    private volatile Column column;
+
+    ColumnGet( final String name )
+    {
+      this.name = name;
+    }
+
+    public String getMethodName()
+    {
+      return "get";
+    }
+
+    public Object invoke( final Object obj )
+    {
+      final AbstractResultSetMethodizer.Row row =
+        (AbstractResultSetMethodizer.Row) obj;
+      final AbstractResultSetMethodizer methodizer = row.getMethodizer();
+      Column col = column;
+      if ( (col == null) || (col.methodizer != methodizer) )
+      {
+        final int column_index = methodizer.getColumnIndex(name);
+        if ( column_index <= 0 )
+          return row.get(name); // Throws the usual exception.
+        col = new Column(methodizer, column_index);
+        column = col;
+      }
+      return row.get(col.index);
+    }
+
+    public boolean isCacheable()
+    {
+      return true;
+    }
+  }
+
+  private static final class Column
+  {
+    final AbstractResultSetMethodizer methodizer;
+    final int index;
+
+    Column( final AbstractResultSetMethodizer methodizer, final int index )
+    {
+      this.methodizer = methodizer;
+      this.index = index;
+    }
+  }
+}
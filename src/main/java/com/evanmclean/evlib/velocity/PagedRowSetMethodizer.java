@@ -0,0 +1,302 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import org.apache.velocity.exception.VelocityException;
+
+/**
+ * <p>
+ * A wrapper around the JDBC ResultSet that allows Velocity templates to access
+ * the columns in a template friendly way, reading the result set a page of
+ * rows at a time.
+ * </p>
+ * 
+ * <p>
+ * Unlike {@link RowSetMethodizer}, which reads the entire result set up front,
+ * this only ever holds two pages of rows: the one being rendered and the next
+ * one (read when the template checks if there are more rows, such as at the
+ * end of a <code>#foreach</code> loop or with <code>$foreach.hasNext</code>).
+ * Columns that the driver returns as integers, longs or doubles are stored in
+ * primitive arrays, and only boxed when the template asks for them. So even
+ * very large result sets can be rendered with little memory.
+ * </p>
+ * 
+ * <p>
+ * The result set must remain open while the template is merged, and each row
+ * is only valid until the next row is retrieved (so don't hold on to a row
+ * past the current iteration). The page size is also passed on to the driver
+ * as the fetch size.
+ * </p>
+ * 
+ * <p>
+ * See {@link ResultSetMethodizer} for more details.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class PagedRowSetMethodizer extends AbstractResultSetMethodizer
+{
+  /**
+   * The default number of rows read at a time (256).
+   */
+  public static final int DEFAULT_PAGE_SIZE = 256;
+
+  private static final int OBJECT = 0;
+  private static final int INT = 1;
+  private static final int LONG = 2;
+  private static final int DOUBLE = 3;
+
+  private final class Page
+  {
+    // For each column, an Object[], int[], long[] or double[] of the values.
+    final Object[] columns;
+    // For each primitive column, which of the values are null.
+    final boolean[][] nulls;
+    int count;
+    int pos;
+
+    final Row row = new Row() {
+      @Override
+      Object get( final int column_index )
+      {
+        return Page.this.get(column_index - 1, pos - 1);
+      }
+    };
+
+    Page( final int page_size )
+    {
+      final int numcols = types.length;
+      columns = new Object[numcols];
+      nulls = new boolean[numcols][];
+      for ( int xi = 0; xi < numcols; ++xi )
+        switch ( types[xi] )
+        {
+          case INT:
+            columns[xi] = new int[page_size];
+            nulls[xi] = new boolean[page_size];
+            break;
+          case LONG:
+            columns[xi] = new long[page_size];
+            nulls[xi] = new boolean[page_size];
+            break;
+          case DOUBLE:
+            columns[xi] = new double[page_size];
+            nulls[xi] = new boolean[page_size];
+            break;
+          default:
+            columns[xi] = new Object[page_size];
+        }
+    }
+
+    /**
+     * Reads the next page of rows from the result set.
+     */
+    @SuppressWarnings( "synthetic-access" )
+    void fill() throws SQLException
+    {
+      final Object[] cols = columns;
+      final int numcols = types.length;
+      final int size = pageSize;
+      int num = 0;
+      while ( (num < size) && rs.next() )
+      {
+        for ( int xi = 0; xi < numcols; ++xi )
+        {
+          final int cidx = xi + 1;
+          switch ( types[xi] )
+          {
+            case INT:
+              ((int[]) cols[xi])[num] = rs.getInt(cidx);
+              nulls[xi][num] = rs.wasNull();
+              break;
+            case LONG:
+              ((long[]) cols[xi])[num] = rs.getLong(cidx);
+              nulls[xi][num] = rs.wasNull();
+              break;
+            case DOUBLE:
+              ((double[]) cols[xi])[num] = rs.getDouble(cidx);
+              nulls[xi][num] = rs.wasNull();
+              break;
+            default:
+              ((Object[]) cols[xi])[num] = rs.getObject(cidx);
+          }
+        }
+        ++num;
+      }
+      // Let go of the objects from the last page.
+      for ( int xi = 0; xi < numcols; ++xi )
+        if ( types[xi] == OBJECT )
+          for ( int yi = num; yi < count; ++yi )
+            ((Object[]) cols[xi])[yi] = null;
+      count = num;
+      pos = 0;
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    Object get( final int col, final int idx )
+    {
+      final Object column = columns[col];
+      switch ( types[col] )
+      {
+        case INT:
+          return nulls[col][idx] ? null : Integer.valueOf(((int[]) column)[idx]);
+        case LONG:
+          return nulls[col][idx] ? null : Long.valueOf(((long[]) column)[idx]);
+        case DOUBLE:
+          return nulls[col][idx] ? null : Double
+              .valueOf(((double[]) column)[idx]);
+        default:
+          return ((Object[]) column)[idx];
+      }
+    }
+  }
+
+  private final ResultSet rs;
+  private final int pageSize;
+  private final int[] types;
+  // The page with the row last returned by next().
+  private Page current;
+  // The page read by hasNext() once the current page ran out.
+  private Page ahead;
+  // A page no longer in use, to read the next page in to.
+  private Page spare;
+  private boolean done;
+
+  /**
+   * Wraps the result set, reading {@link #DEFAULT_PAGE_SIZE} rows at a time.
+   * 
+   * @param rs
+   *        The result set to wrap.
+   * @throws SQLException
+   */
+  public PagedRowSetMethodizer( final ResultSet rs ) throws SQLException
+  {
+    this(rs, DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Wraps the result set, reading the specified number of rows at a time.
+   * 
+   * @param rs
+   *        The result set to wrap.
+   * @param page_size
+   *        The number of rows to read at a time.
+   * @throws SQLException
+   */
+  public PagedRowSetMethodizer( final ResultSet rs, final int page_size )
+    throws SQLException
+  {
+    super(rs);
+    if ( page_size <= 0 )
+      throw new IllegalArgumentException("Page size must be positive: "
+          + page_size);
+    this.rs = rs;
+    this.pageSize = page_size;
+
+    final ResultSetMetaData meta = rs.getMetaData();
+    final int numcols = meta.getColumnCount();
+    types = new int[numcols];
+    for ( int xi = 0; xi < numcols; ++xi )
+    {
+      final String cls = meta.getColumnClassName(xi + 1);
+      if ( Integer.class.getName().equals(cls) )
+        types[xi] = INT;
+      else if ( Long.class.getName().equals(cls) )
+        types[xi] = LONG;
+      else if ( Double.class.getName().equals(cls) )
+        types[xi] = DOUBLE;
+      else
+        types[xi] = OBJECT;
+    }
+
+    try
+    {
+      rs.setFetchSize(page_size);
+    }
+    catch ( SQLException ex )
+    {
+      // Only a hint, so ignore drivers that don't like it.
+    }
+  }
+
+  public boolean hasNext()
+  {
+    if ( (current != null) && (current.pos < current.count) )
+      return true;
+    if ( ahead == null )
+    {
+      if ( done )
+        return false;
+      // Never read into the current page, as its last row is still in use.
+      Page page = spare;
+      spare = null;
+      if ( page == null )
+        page = new Page(pageSize);
+      try
+      {
+        page.fill();
+      }
+      catch ( SQLException ex )
+      {
+        throw new VelocityException(ex);
+      }
+      if ( page.count < pageSize )
+        done = true;
+      ahead = page;
+    }
+    return ahead.count > 0;
+  }
+
+  public Row next()
+  {
+    if ( !hasNext() )
+      throw new NoSuchElementException();
+    if ( (current == null) || (current.pos >= current.count) )
+    {
+      spare = current;
+      current = ahead;
+      ahead = null;
+    }
+    ++current.pos;
+    return current.row;
+  }
+}
@@ -38,7 +38,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.parser.node.ASTIdentifier;
+import org.apache.velocity.runtime.parser.node.ASTIndex;
+import org.apache.velocity.runtime.parser.node.ASTMethod;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.Node;
 
 /**
  * <p>
@@ -50,7 +62,14 @@ import java.util.Iterator;
  * This class reads and stores the entire result set from within the
  * constructor, so you can close the result set after instantiation. You do not
  * need to keep the result set (or the statement it came from) open while
- * templates are merged.
+ * templates are merged. For result sets too large to hold in memory all at
+ * once, use {@link PagedRowSetMethodizer}.
+ * </p>
+ * 
+ * <p>
+ * By default every column is read. If the template only uses a few of them,
+ * pass the template (or the property names it uses) to the constructor so
+ * only those columns are read.
  * </p>
  * 
  * <p>
@@ -63,6 +82,10 @@ import java.util.Iterator;
  */
 public class RowSetMethodizer extends AbstractResultSetMethodizer
 {
+  // Matches the property names in a reference inside an interpolated string.
+  private static final Pattern INTERPOLATED_PROPERTIES = Pattern
+      .compile("\\$!?\\{?[a-zA-Z][\\w-]*((?:\\.[a-zA-Z][\\w-]*)+)");
+
   private class RowSet extends Row
   {
     private final Object[] data;
@@ -72,31 +95,136 @@ public class RowSetMethodizer extends AbstractResultSetMethodizer
       this.data = data;
     }
 
+    @SuppressWarnings( "synthetic-access" )
     @Override
     Object get( int column_index )
     {
+      if ( (read != null) && (!read[column_index - 1]) )
+        throw new VelocityException("Column " + column_index
+            + " was not read from the result set.");
       return data[column_index - 1];
     }
   }
 
   private final Iterator<RowSet> it;
+  // Which columns were read, or null if all of them were.
+  private final boolean[] read;
 
   public RowSetMethodizer( final ResultSet rs ) throws SQLException
+  {
+    this(rs, (Collection<String>) null);
+  }
+
+  /**
+   * <p>
+   * Only reads the columns for the specified property names from the result
+   * set. Use this when the template only uses a few of the columns, as it
+   * avoids the cost of getting the other columns from the result set
+   * (especially for things like LOB, array and timestamp columns).
+   * </p>
+   * 
+   * <p>
+   * Using the property of a column that was not read throws a
+   * VelocityException. Property names that do not match a column are ignored.
+   * </p>
+   * 
+   * @param rs
+   *        The result set to read.
+   * @param property_names
+   *        The names of the properties the template will use (in any case), or
+   *        <code>null</code> to read all the columns.
+   * @throws SQLException
+   */
+  public RowSetMethodizer( final ResultSet rs,
+      final Collection<String> property_names ) throws SQLException
   {
     super(rs);
     final int numcols = rs.getMetaData().getColumnCount();
+    final int[] columns;
+    if ( property_names == null )
+    {
+      read = null;
+      columns = new int[numcols];
+      for ( int xi = 0; xi < numcols; ++xi )
+        columns[xi] = xi + 1;
+    }
+    else
+    {
+      read = new boolean[numcols];
+      int count = 0;
+      for ( String name : property_names )
+      {
+        final int column_index = getColumnIndex(name);
+        if ( (column_index > 0) && (!read[column_index - 1]) )
+        {
+          read[column_index - 1] = true;
+          ++count;
+        }
+      }
+      columns = new int[count];
+      count = 0;
+      for ( int xi = 0; xi < numcols; ++xi )
+        if ( read[xi] )
+          columns[count++] = xi + 1;
+    }
+
     final Collection<RowSet> rows = new ArrayList<RowSet>();
     while ( rs.next() )
     {
       final Object[] data = new Object[numcols];
-      for ( int xi = 1; xi <= numcols; ++xi )
-        data[xi - 1] = rs.getObject(xi);
+      for ( int column_index : columns )
+        data[column_index - 1] = rs.getObject(column_index);
       rows.add(new RowSet(data));
     }
 
     it = rows.iterator();
   }
 
+  /**
+   * Only reads the columns for the properties referenced in the template (see
+   * {@link #getReferencedProperties(Template)}).
+   * 
+   * @param rs
+   *        The result set to read.
+   * @param template
+   *        The template that will be merged.
+   * @throws SQLException
+   */
+  public RowSetMethodizer( final ResultSet rs, final Template template )
+    throws SQLException
+  {
+    this(rs, getReferencedProperties(template));
+  }
+
+  /**
+   * <p>
+   * Gets the name of every property referenced in the template, such as
+   * <code>name</code> in <code>$row.name</code>, along with the names passed
+   * to <code>get</code> methods or used as an index as a string literal (e.g.,
+   * <code>$row.get('name')</code> or <code>$row['name']</code>). Properties
+   * are included no matter what they are referenced on, so the result will
+   * usually include more than just the columns used.
+   * </p>
+   * 
+   * <p>
+   * Only the template itself is scanned, not any templates it includes with
+   * <code>#parse</code>, or macros defined elsewhere. Names that are only
+   * known when the template is rendered (e.g., <code>$row.get($col)</code>)
+   * cannot be found, so for such templates use
+   * {@link #RowSetMethodizer(ResultSet, Collection)} with the names instead.
+   * </p>
+   * 
+   * @param template
+   *        The template to scan.
+   * @return The property names referenced in the template.
+   */
+  public static Set<String> getReferencedProperties( final Template template )
+  {
+    final Set<String> names = new HashSet<String>();
+    addReferencedProperties((Node) template.getData(), names);
+    return names;
+  }
+
   public boolean hasNext()
   {
     return it.hasNext();
@@ -106,4 +234,52 @@ public class RowSetMethodizer extends AbstractResultSetMethodizer
   {
     return it.next();
   }
+
+  private static void addReferencedProperties( final Node node,
+      final Set<String> names )
+  {
+    if ( node instanceof ASTIdentifier )
+    {
+      names.add(node.getFirstToken().image);
+    }
+    else if ( node instanceof ASTMethod )
+    {
+      // The first child is the method name, followed by the arguments.
+      if ( "get".equals(((ASTMethod) node).getMethodName())
+          && (node.jjtGetNumChildren() == 2) )
+        addLiteral(node.jjtGetChild(1), names);
+    }
+    else if ( node instanceof ASTIndex )
+    {
+      // The only child is the index, e.g., $row['name'].
+      if ( node.jjtGetNumChildren() == 1 )
+        addLiteral(node.jjtGetChild(0), names);
+    }
+    else if ( node instanceof ASTStringLiteral )
+    {
+      // References in interpolated strings are only parsed when rendered.
+      final Matcher matcher = INTERPOLATED_PROPERTIES
+          .matcher(node.literal());
+      while ( matcher.find() )
+        for ( String name : matcher.group(1).substring(1).split("\\.") )
+          names.add(name);
+    }
+
+    final int num = node.jjtGetNumChildren();
+    for ( int xi = 0; xi < num; ++xi )
+      addReferencedProperties(node.jjtGetChild(xi), names);
+  }
+
+  /**
+   * Adds the value of the node if it is a string literal.
+   */
+  private static void addLiteral( final Node node, final Set<String> names )
+  {
+    if ( node instanceof ASTStringLiteral )
+    {
+      final String literal = node.literal();
+      if ( literal.length() >= 2 )
+        names.add(literal.substring(1, literal.length() - 1));
+    }
+  }
 }
@@ -0,0 +1,129 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity.event;
+
+import java.util.regex.Pattern;
+
+import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.util.RuntimeServicesAware;
+
+import com.evanmclean.evlib.lang.Str;
+
+/**
+ * <p>
+ * Base class for reference insertion event handlers that escape every value
+ * inserted into a template with one of the {@link com.evanmclean.evlib.escape}
+ * escapers, so templates are safe by default without having to call
+ * <code>$esc.html(...)</code> on each reference.
+ * </p>
+ * 
+ * <p>
+ * Register the handler for the output being generated in your Velocity
+ * configuration, for example:
+ * </p>
+ * 
+ * <pre>
+ * eventhandler.referenceinsertion.class = com.evanmclean.evlib.velocity.event.EscapeHtmlReference
+ * </pre>
+ * 
+ * <p>
+ * By default every reference is escaped. To only escape some of them, set the
+ * handler's match property to a regular expression that is searched for in
+ * the reference as it appears in the template (e.g., <code>$user.Name</code>).
+ * Several handlers can then be used together for different contexts, as long
+ * as their expressions do not overlap:
+ * </p>
+ * 
+ * <pre>
+ * eventhandler.referenceinsertion.class = com.evanmclean.evlib.velocity.event.EscapeHtmlReference, com.evanmclean.evlib.velocity.event.EscapeJavascriptReference
+ * evlib.escape.html.match = ^\$!?\{?(?!js)
+ * evlib.escape.javascript.match = ^\$!?\{?js
+ * </pre>
+ * 
+ * <p>
+ * Values that do not need escaping are inserted as they are, without creating
+ * a new string. Don't use <code>$esc</code> on references that are escaped by
+ * a handler, or they will be escaped twice.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public abstract class EscapeReference
+    implements ReferenceInsertionEventHandler, RuntimeServicesAware
+{
+  private final String matchProperty;
+  private Pattern match;
+
+  /**
+   * @param match_property
+   *        The name of the configuration property that holds the regular
+   *        expression that references must match to be escaped.
+   */
+  protected EscapeReference( final String match_property )
+  {
+    this.matchProperty = match_property;
+  }
+
+  /**
+   * Escapes the value if the reference matches (or there is no match
+   * expression).
+   */
+  public Object referenceInsert( final String reference, final Object value )
+  {
+    if ( value == null )
+      return null;
+    if ( (match != null) && (!match.matcher(reference).find()) )
+      return value;
+    return escape(value);
+  }
+
+  public void setRuntimeServices( final RuntimeServices rs )
+  {
+    final String regex = Str.trimToNull(rs.getString(matchProperty));
+    match = (regex == null) ? null : Pattern.compile(regex);
+  }
+
+  /**
+   * Escapes the value being inserted.
+   * 
+   * @param value
+   *        The value being inserted (never <code>null</code>).
+   * @return The escaped value.
+   */
+  protected abstract String escape( Object value );
+}
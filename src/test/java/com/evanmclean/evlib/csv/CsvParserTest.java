@@ -0,0 +1,205 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.csv;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CsvParserTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testParse() throws IOException
+  {
+    final String text = "a,b,c\r\n" + "1,\"two, 2\",\"say \"\"hi\"\"\"\n"
+        + "\n" + ",\"multi\r\nline\",\r" + "\"\"\"\",\"x\"y,\"unterminated";
+    final List<List<String>> rows = parse(new CsvParser(text.toCharArray(),
+      0, text.length()));
+    assertEquals(5, rows.size());
+    assertEquals(Arrays.asList("a", "b", "c"), rows.get(0));
+    assertEquals(Arrays.asList("1", "two, 2", "say \"hi\""), rows.get(1));
+    assertEquals(Arrays.asList(""), rows.get(2));
+    assertEquals(Arrays.asList("", "multi\r\nline", ""), rows.get(3));
+    assertEquals(Arrays.asList("\"", "xy", "unterminated"), rows.get(4));
+
+    // The same again through a reader with a tiny buffer.
+    assertEquals(rows, parse(new CsvParser(new StringReader(text), 1)));
+  }
+
+  public void testFields() throws IOException
+  {
+    final char[] buf = "xx,abc;\"d;e\"\nyy".toCharArray();
+    final CsvParser csv = new CsvParser(buf, 3, buf.length - 6);
+    csv.setSeparator(';');
+    assertEquals(0, csv.getRow());
+    assertTrue(csv.next());
+    assertEquals(1, csv.getRow());
+    assertEquals(2, csv.getFieldCount());
+    final CharSequence field = csv.getField(0);
+    assertEquals(3, field.length());
+    assertEquals('b', field.charAt(1));
+    assertEquals("bc", field.subSequence(1, 3).toString());
+    assertEquals("d;e", csv.getString(1));
+    try
+    {
+      csv.getField(2);
+      fail("Got a field that does not exist.");
+    }
+    catch ( IndexOutOfBoundsException ex )
+    {
+      // expected
+    }
+    assertFalse(csv.next());
+    assertFalse(csv.next());
+  }
+
+  public void testParallel() throws Exception
+  {
+    final String text = write(random(new Random(42), 2000));
+    final char[] buf = text.toCharArray();
+    final List<List<String>> expected = parse(new CsvParser(buf, 0,
+      buf.length));
+    assertEquals(2000, expected.size());
+
+    final int[] bounds = CsvParser.split(buf, 0, buf.length, 7);
+    assertEquals(8, bounds.length);
+    final ExecutorService exec = Executors.newFixedThreadPool(4);
+    try
+    {
+      final List<Future<List<List<String>>>> futures = new ArrayList<Future<List<List<String>>>>();
+      for ( int xi = 0; xi < (bounds.length - 1); ++xi )
+      {
+        final int start = bounds[xi];
+        final int end = bounds[xi + 1];
+        futures.add(exec.submit(new Callable<List<List<String>>>() {
+          public List<List<String>> call() throws IOException
+          {
+            return parse(new CsvParser(buf, start, end - start));
+          }
+        }));
+      }
+      final List<List<String>> actual = new ArrayList<List<String>>();
+      for ( final Future<List<List<String>>> future : futures )
+        actual.addAll(future.get());
+      assertEquals(expected, actual);
+    }
+    finally
+    {
+      exec.shutdown();
+    }
+
+    assertTrue(Arrays.equals(new int[] { 0, 2 }, CsvParser.split(
+      "a\n".toCharArray(), 0, 2, 5)));
+    assertTrue(Arrays.equals(new int[] { 0 }, CsvParser.split(new char[0], 0,
+      0, 5)));
+  }
+
+  public void testRoundTrip() throws IOException
+  {
+    final Random rand = new Random(1);
+    for ( int test = 0; test < 50; ++test )
+    {
+      final List<List<String>> rows = random(rand, rand.nextInt(20));
+      final String text = write(rows);
+      assertEquals(rows, parse(new CsvParser(text.toCharArray(), 0, text
+          .length())));
+      assertEquals(rows, parse(new CsvParser(new StringReader(text),
+        1 + rand.nextInt(16))));
+    }
+  }
+
+  private static List<List<String>> parse( final CsvParser csv )
+    throws IOException
+  {
+    final List<List<String>> rows = new ArrayList<List<String>>();
+    while ( csv.next() )
+    {
+      final List<String> row = new ArrayList<String>();
+      for ( int xi = 0; xi < csv.getFieldCount(); ++xi )
+        row.add(csv.getString(xi));
+      rows.add(row);
+    }
+    csv.close();
+    return rows;
+  }
+
+  private static List<List<String>> random( final Random rand, final int num )
+  {
+    final String alphabet = "abc ,\"\r\n\u00E9";
+    final List<List<String>> rows = new ArrayList<List<String>>();
+    for ( int row = 0; row < num; ++row )
+    {
+      final List<String> fields = new ArrayList<String>();
+      final int count = 1 + rand.nextInt(5);
+      for ( int col = 0; col < count; ++col )
+      {
+        final StringBuilder buff = new StringBuilder();
+        final int len = rand.nextInt(8);
+        for ( int xi = 0; xi < len; ++xi )
+          buff.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+        fields.add(buff.toString());
+      }
+      rows.add(fields);
+    }
+    return rows;
+  }
+
+  private static String write( final List<List<String>> rows )
+    throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    final CsvWriter csv = new CsvWriter(out);
+    for ( final List<String> row : rows )
+      csv.row(row.toArray());
+    csv.close();
+    return out.toString();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import com.evanmclean.evlib.escape.Esc;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CsvWriterTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testFields() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    final CsvWriter csv = new CsvWriter(out);
+    csv.row("id", "name", "note");
+    csv.field(1);
+    csv.field("Fred");
+    csv.field(null);
+    csv.endRow();
+    csv.field(Long.MIN_VALUE);
+    csv.field(-42L);
+    csv.field(new StringBuilder("say \"hi\", then go"));
+    csv.endRow();
+    csv.field("abcdef".toCharArray(), 1, 3);
+    csv.field("x y", 0, 1);
+    csv.field("caf\u00E9");
+    csv.endRow();
+    csv.row((Object) null);
+    csv.close();
+    assertEquals("id,name,note\r\n" + "1,Fred,\r\n"
+        + "-9223372036854775808,-42,\"say \"\"hi\"\", then go\"\r\n"
+        + "bcd,x,\"caf\u00E9\"\r\n" + "\r\n", out.toString());
+  }
+
+  public void testEscCsv() throws IOException
+  {
+    final String[] values = new String[] { "", "plain", "a,b", "a\"b",
+        " lead", "tab\there", "new\nline", "\u00E9" };
+    for ( final String value : values )
+    {
+      final StringWriter out = new StringWriter();
+      final CsvWriter csv = new CsvWriter(out);
+      csv.field(value);
+      csv.flush();
+      assertEquals(Esc.csv.text(value), out.toString());
+    }
+  }
+
+  public void testSeparator() throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final CsvWriter csv = new CsvWriter(bytes);
+    csv.setSeparator(';');
+    csv.setLineSeparator("\n");
+    csv.row("a;b", "c,d", "\u20AC");
+    csv.close();
+    assertEquals("\"a;b\";\"c,d\";\"\u20AC\"\n", new String(bytes
+        .toByteArray(), "UTF-8"));
+  }
+}
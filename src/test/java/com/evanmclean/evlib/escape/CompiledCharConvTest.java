@@ -0,0 +1,78 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CompiledCharConvTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testMatchesSource()
+  {
+    final CharConv[] convs = new CharConv[] { HtmlConv.HTML_MIN,
+        HtmlConv.HTML_MIN_ATTR, HtmlConv.HTML_BASIC, HtmlConv.HTML_BASIC_ATTR,
+        HtmlConv.HTML_FULL, HtmlConv.HTML_FULL_ATTR, HtmlConv.HTML_ASCII,
+        HtmlConv.HTML_ASCII_ATTR, XmlConv.XML, XmlConv.XML_ATTR,
+        XmlConv.XML_ASCII, XmlConv.XML_ASCII_ATTR, JavaConv.JAVA,
+        JavaConv.JAVASCRIPT };
+    for ( CharConv conv : convs )
+    {
+      final CharConv source = ((CompiledCharConv) conv).getSource();
+      for ( int ch = Character.MIN_VALUE; ch <= Character.MAX_VALUE; ++ch )
+        assertEquals("Character " + ch, source.conv((char) ch), conv
+            .conv((char) ch));
+    }
+  }
+
+  public void testSharesSubstitutions()
+  {
+    final CharConv conv = CompiledCharConv.compile(new CharConv() {
+      public String conv( final char ch )
+      {
+        return (ch == '\u20AC') ? "&#" + ((int) ch) + ';' : null;
+      }
+    });
+    assertEquals("&#8364;", conv.conv('\u20AC'));
+    assertSame(conv.conv('\u20AC'), conv.conv('\u20AC'));
+    assertNull(conv.conv('\u20AD'));
+    assertNull(conv.conv('a'));
+  }
+}
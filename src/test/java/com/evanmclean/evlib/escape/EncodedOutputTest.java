@@ -0,0 +1,143 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.evanmclean.evlib.charset.Charsets;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class EncodedOutputTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String TEXT = "Plain <b>bold</b> & \"quoted\" caf\u00E9 "
+      + "\u201Csmart\u201D \u20AC10 \uD83D\uDE00 done";
+
+  public void testAscii() throws IOException
+  {
+    check(Charsets.USASCII, Esc.htmlAscii);
+    check(Charsets.USASCII, Esc.xmlAscii);
+  }
+
+  public void testIso() throws IOException
+  {
+    check(Charsets.ISO88591, Esc.htmlAscii);
+    check(Charsets.ISO88591, Esc.htmlFull);
+
+    // A dangling high surrogate at the end is only written once.
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final EncodedOutput out = new EncodedOutput(bytes, Charsets.ISO88591);
+    out.write("ab\uD83D");
+    out.close();
+    assertEquals("ab?", bytes.toString("ISO-8859-1"));
+  }
+
+  public void testUnsupported()
+  {
+    try
+    {
+      new EncodedOutput(new ByteArrayOutputStream(), Charsets.UTF16);
+      fail("Accepted UTF-16.");
+    }
+    catch ( IllegalArgumentException ex )
+    {
+      // expected
+    }
+  }
+
+  public void testUtf8() throws IOException
+  {
+    check(Charsets.UTF8, Esc.html);
+    check(Charsets.UTF8, Esc.htmlAscii);
+
+    // A surrogate pair split across writes, and unpaired surrogates.
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final EncodedOutput out = new EncodedOutput(bytes, Charsets.UTF8);
+    out.write('\uD83D');
+    out.write("\uDE00x\uDE00\uD83D");
+    out.close();
+    assertTrue(Arrays.equals("\uD83D\uDE00x??".getBytes("UTF-8"),
+      bytes.toByteArray()));
+  }
+
+  /**
+   * Escapes the text in various ways straight to an encoded output with a
+   * small buffer, and checks it is the same as escaping to a string and then
+   * encoding it.
+   */
+  private static void check( final Charset charset, final EscHtml esc )
+    throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final EncodedOutput out = new EncodedOutput(bytes, charset, 16);
+    final StringBuilder expected = new StringBuilder();
+    for ( int xi = 0; xi < 20; ++xi )
+    {
+      esc.text(TEXT, out);
+      expected.append(esc.text(TEXT));
+      esc.attr(TEXT.toCharArray(), xi, 10, out);
+      expected.append(esc.attr(TEXT.substring(xi, xi + 10)));
+      esc.textbr(TEXT + "\r\n", out);
+      expected.append(esc.textbr(TEXT + "\r\n"));
+      out.write(TEXT, xi, 5);
+      expected.append(TEXT, xi, xi + 5);
+    }
+    out.close();
+    assertTrue(Arrays.equals(expected.toString().getBytes(charset.name()),
+      bytes.toByteArray()));
+  }
+
+  private static void check( final Charset charset, final EscXml esc )
+    throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final EncodedOutput out = new EncodedOutput(bytes, charset, 16);
+    esc.text(TEXT, out);
+    esc.cdata(TEXT, out);
+    out.close();
+    assertTrue(Arrays.equals((esc.text(TEXT) + esc.cdata(TEXT))
+        .getBytes(charset.name()), bytes.toByteArray()));
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * <p>
+ * Measures the throughput and allocation rate of the escapers over a set of
+ * sample texts, alongside the commons-lang equivalents, and prints the results
+ * as a table. Not part of the unit tests: run with <code>ant bench</code>.
+ * </p>
+ * 
+ * <p>
+ * Each escaper is run against each text for a warm up period, then measured
+ * for <code>bench.millis</code> milliseconds (a system property, default
+ * 1000). The allocation rate is only shown if the JVM can report the number of
+ * bytes allocated by the thread.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class EscBenchmark extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "PERF";
+
+  private static final int SHORT = 16;
+  private static final int LONG = 4096;
+
+  private static final String ASCII = "abcdefghijklmnopqrstuvwxyz"
+      + "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789     .";
+  private static final String MARKUP = "<>&\"'";
+  private static final String UNICODE = "\u0430\u0431\u0432\u0433\u0434"
+      + "\u0435\u0436\u0437\u03B1\u03B2\u03B3\u03B4\u4E00\u4E8C\u4E09\u56DB"
+      + "\u65E5\u672C\u8A9E\u3042\u3044\u3046   ";
+
+  private static final Method allocatedBytes = allocatedBytesMethod();
+  private static final Object threadBean = ManagementFactory
+      .getThreadMXBean();
+
+  // Stops the escaping being optimised away.
+  private int sink;
+
+  public void testEscape() throws Exception
+  {
+    final Map<String, String> texts = texts();
+    final Map<String, Escaper> escapers = escapers();
+    final long millis = Long.getLong("bench.millis", 1000L).longValue();
+
+    System.out.println();
+    System.out.println(String.format("%-22s %-14s %12s %10s %12s",
+      "Escaper", "Text", "ns/op", "chars/us", "bytes/op"));
+    for ( final Map.Entry<String, Escaper> escaper : escapers.entrySet() )
+      for ( final Map.Entry<String, String> text : texts.entrySet() )
+      {
+        final String str = text.getValue();
+        run(escaper.getValue(), str, Math.max(100L, millis / 5));
+        final Result res = run(escaper.getValue(), str, millis);
+        final double ns = (double) res.nanos / res.ops;
+        System.out.println(String.format("%-22s %-14s %12.1f %10.1f %12s",
+          escaper.getKey(), text.getKey(), ns, (str.length() * 1000.0) / ns,
+          (res.bytes < 0) ? "n/a" : String.valueOf(res.bytes / res.ops)));
+      }
+    System.out.println();
+    assertTrue(sink != 0);
+  }
+
+  private Result run( final Escaper escaper, final String str,
+      final long millis ) throws Exception
+  {
+    final Thread thread = Thread.currentThread();
+    final long stop = System.nanoTime() + (millis * 1000000L);
+    final long bytes = allocated(thread);
+    final long start = System.nanoTime();
+    long now = start;
+    long ops = 0;
+    int batch = 16;
+    do
+    {
+      for ( int xi = 0; xi < batch; ++xi )
+        sink += escaper.escape(str).length();
+      ops += batch;
+      if ( batch < 65536 )
+        batch <<= 1;
+      now = System.nanoTime();
+    }
+    while ( now < stop );
+    final long after = allocated(thread);
+    return new Result(ops, now - start, ((bytes < 0) || (after < 0)) ? -1
+        : (after - bytes));
+  }
+
+  private static long allocated( final Thread thread )
+  {
+    if ( allocatedBytes == null )
+      return -1;
+    try
+    {
+      return ((Long) allocatedBytes.invoke(threadBean, Long.valueOf(thread
+          .getId()))).longValue();
+    }
+    catch ( Exception ex )
+    {
+      return -1;
+    }
+  }
+
+  /**
+   * The <code>getThreadAllocatedBytes</code> method of the Sun/Oracle thread
+   * bean if available, otherwise <code>null</code>.
+   */
+  private static Method allocatedBytesMethod()
+  {
+    try
+    {
+      final Class<?> cls = Class.forName("com.sun.management.ThreadMXBean");
+      if ( !cls.isInstance(ManagementFactory.getThreadMXBean()) )
+        return null;
+      return cls.getMethod("getThreadAllocatedBytes", long.class);
+    }
+    catch ( Exception ex )
+    {
+      return null;
+    }
+  }
+
+  private static Map<String, Escaper> escapers()
+  {
+    final Map<String, Escaper> escapers = new LinkedHashMap<String, Escaper>();
+    escapers.put("Esc.html", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.html.text(str);
+      }
+    });
+    final StringBuilder buff = new StringBuilder();
+    escapers.put("Esc.html (reused sb)", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        buff.setLength(0);
+        return Esc.html.text(str, buff);
+      }
+    });
+    escapers.put("commons html", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return StringEscapeUtils.escapeHtml(str);
+      }
+    });
+    escapers.put("Esc.xml", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.xml.text(str);
+      }
+    });
+    escapers.put("commons xml", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return StringEscapeUtils.escapeXml(str);
+      }
+    });
+    escapers.put("Esc.javascript", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.javascript.text(str);
+      }
+    });
+    escapers.put("commons javascript", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return StringEscapeUtils.escapeJavaScript(str);
+      }
+    });
+    escapers.put("Esc.json", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.json.text(str);
+      }
+    });
+    escapers.put("Esc.url", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.url.text(str);
+      }
+    });
+    escapers.put("URLEncoder", new Escaper() {
+      public CharSequence escape( final String str ) throws Exception
+      {
+        return URLEncoder.encode(str, "UTF-8");
+      }
+    });
+    escapers.put("Esc.csv", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return Esc.csv.text(str);
+      }
+    });
+    escapers.put("commons csv", new Escaper() {
+      public CharSequence escape( final String str )
+      {
+        return StringEscapeUtils.escapeCsv(str);
+      }
+    });
+    return escapers;
+  }
+
+  /**
+   * Generates a string of random characters from the alphabet, with roughly
+   * one in <code>every</code> characters taken from the extra characters
+   * instead.
+   */
+  private static String text( final Random rand, final int len,
+      final String alphabet, final String extra, final int every )
+  {
+    final StringBuilder buff = new StringBuilder(len);
+    for ( int xi = 0; xi < len; ++xi )
+      if ( (extra != null) && (rand.nextInt(every) == 0) )
+        buff.append(extra.charAt(rand.nextInt(extra.length())));
+      else
+        buff.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+    return buff.toString();
+  }
+
+  private static Map<String, String> texts()
+  {
+    final Random rand = new Random(1);
+    final Map<String, String> texts = new LinkedHashMap<String, String>();
+    for ( final int len : new int[] { SHORT, LONG } )
+    {
+      final String size = (len == SHORT) ? " short" : " long";
+      texts.put("ascii" + size, text(rand, len, ASCII, null, 0));
+      texts.put("html" + size, text(rand, len, ASCII, MARKUP, 50));
+      texts.put("entities" + size, text(rand, len, ASCII, MARKUP, 2));
+      texts.put("unicode" + size, text(rand, len, UNICODE, null, 0));
+    }
+    return texts;
+  }
+
+  private interface Escaper
+  {
+    CharSequence escape( String str ) throws Exception;
+  }
+
+  private static final class Result
+  {
+    final long ops;
+    final long nanos;
+    final long bytes;
+
+    Result( final long ops, final long nanos, final long bytes )
+    {
+      this.ops = ops;
+      this.nanos = nanos;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -34,6 +34,9 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import junit.framework.TestCase;
 
 /**
@@ -45,6 +48,22 @@ public class EscCsvTest extends TestCase
 {
   public static final String TEST_ALL_TEST_TYPE = "UNIT";
 
+  public void testAppendable() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    Esc.csv.text("plain", out);
+    Esc.csv.text(null, out);
+    Esc.csv.text("with, comma", out);
+    Esc.csv.text("say \"hi\"", out);
+    assertEquals(Esc.csv.text("plain") + Esc.csv.text("with, comma")
+        + Esc.csv.text("say \"hi\""), out.toString());
+
+    final StringBuilder sb = new StringBuilder();
+    Esc.csv.text("ab, \"cd\" ef", 1, 8, sb);
+    Esc.csv.text("xyz".toCharArray(), 1, 1, sb);
+    assertEquals("\"b, \"\"cd\"\"\"y", sb.toString());
+  }
+
   public void testCsv()
   {
     assertEquals("\"a, b, c\"", Esc.csv.text("a, b, c"));
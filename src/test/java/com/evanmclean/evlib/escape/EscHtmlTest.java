@@ -34,6 +34,9 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import junit.framework.TestCase;
 
 /**
@@ -45,6 +48,31 @@ public class EscHtmlTest extends TestCase
 {
   public static final String TEST_ALL_TEST_TYPE = "UNIT";
 
+  public void testAppendable() throws IOException
+  {
+    final String str = "one <two>\r\nthree & \"four\"\rfive\nsix -- \u00A0";
+    final StringWriter out = new StringWriter();
+    Esc.xhtml.text(str, out);
+    Esc.xhtml.textbr(str, out);
+    Esc.xhtml.textbr(str, true, out);
+    Esc.xhtml.attr(str, out);
+    Esc.xhtml.comment(str, out);
+    Esc.xhtml.textbr(null, out);
+    assertEquals(
+      Esc.xhtml.text(str) + Esc.xhtml.textbr(str)
+          + Esc.xhtml.textbr(str, true) + Esc.xhtml.attr(str)
+          + Esc.xhtml.comment(str), out.toString());
+
+    final StringBuilder sb = new StringBuilder("x");
+    assertSame(sb, Esc.html.textbr(str, false, sb));
+    assertEquals("x" + Esc.html.textbr(str), sb.toString());
+
+    sb.setLength(0);
+    Esc.htmlAscii.text(str.toCharArray(), 4, 5, sb);
+    Esc.htmlAscii.attr(str, 19, 25, sb);
+    assertEquals("&lt;two&gt;&quot;four&quot;", sb.toString());
+  }
+
   public void testHtml()
   {
     assertEquals(
@@ -0,0 +1,104 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class EscJsonTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testAppendable() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    Esc.json.quote("a\"b", out);
+    out.write(',');
+    Esc.json.quote(null, out);
+    out.write(',');
+    Esc.json.text("x\ty".toCharArray(), 1, 2, out);
+    out.write(',');
+    Esc.json.text("\\\\\\", 1, 2, out);
+    assertEquals("\"a\\\"b\",null,\\ty,\\\\", out.toString());
+
+    assertEquals("</\\u003c", Esc.jsonScript.text("<", new StringBuilder(
+        "</")).toString());
+
+    final StringWriter wout = new StringWriter();
+    final EscapingWriter wtr = Esc.jsonAscii.textWriter(wout);
+    wtr.write("caf\u00E9\n");
+    wtr.close();
+    assertEquals("caf\\u00e9\\n", wout.toString());
+  }
+
+  public void testJson()
+  {
+    assertEquals("\\\\ \\\"Don't go\\r\\nback there\\\" \\u0000\\u001f\\b\\f",
+      Esc.json.text("\\ \"Don't go\r\nback there\" \u0000\u001F\b\f"));
+    assertEquals("\u201Chello \u4E16\u754C\u201D \\u2028\\u2029\u007F",
+      Esc.json.text("\u201Chello \u4E16\u754C\u201D \u2028\u2029\u007F"));
+    assertEquals("\\u201chello \\u4e16\\u754c\\u201d \\u2028\\u2029\\u007f",
+      Esc.jsonAscii.text("\u201Chello \u4E16\u754C\u201D \u2028\u2029\u007F"));
+    assertEquals(
+      "\\u003c/script\\u003e\\u003c!-- \\u0026 \\u0027 \u00E9 \\u2028\\\"",
+      Esc.jsonScript.text("</script><!-- & ' \u00E9 \u2028\""));
+  }
+
+  public void testNull()
+  {
+    assertNull(Esc.json.text(null));
+    assertEquals("null", Esc.json.quote(null));
+  }
+
+  public void testQuote()
+  {
+    assertEquals("\"\"", Esc.json.quote(""));
+    assertEquals("\"it's \\\"42\\\"\"", Esc.json.quote("it's \"42\""));
+    assertEquals("\"42\"", Esc.json.quote(Integer.valueOf(42)));
+  }
+
+  public void testUnchanged()
+  {
+    final String unchanged = "abc def \u00E9 it's";
+    assertSame(unchanged, Esc.json.text(unchanged));
+  }
+}
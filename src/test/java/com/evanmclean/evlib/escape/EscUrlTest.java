@@ -34,6 +34,14 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
 import com.evanmclean.evlib.charset.Charsets;
@@ -47,11 +55,76 @@ public class EscUrlTest extends TestCase
 {
   public static final String TEST_ALL_TEST_TYPE = "UNIT";
 
+  public void testAppendable() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    Esc.url.text("a b", out);
+    Esc.url.text(null, out);
+    Esc.url.text("\u00E9", Charsets.ISO88591, out);
+    Esc.url.decode("x+%C3%A9", Charsets.UTF8, out);
+    assertEquals("a%20b%E9x \u00E9", out.toString());
+    assertEquals("<a%2Fb", Esc.url.text("a/b", Charsets.UTF8,
+      new StringBuilder("<")).toString());
+  }
+
+  public void testDecode()
+  {
+    assertNull(Esc.url.decode(null));
+    final String unchanged = "abc def";
+    assertSame(unchanged, Esc.url.decode(unchanged));
+    assertEquals("a b c", Esc.url.decode("a+b%20c"));
+    assertEquals("The \u201Ctest\u201D",
+      Esc.url.decode("The%20%E2%80%9Ctest%E2%80%9d"));
+    assertEquals("caf\u00E9", Esc.url.decode("caf%E9", Charsets.ISO88591));
+    assertEquals("caf\uFFFD", Esc.url.decode("caf%E9", "US-ASCII"));
+
+    // Invalid escapes are left alone, invalid UTF-8 is replaced.
+    assertEquals("100% %z1 %4", Esc.url.decode("100%25 %z1 %4"));
+    assertEquals("100% %z1 %4", Esc.url.decode("100% %z1 %4"));
+    assertEquals("%\u0661\u0662 %\uFF21\uFF21", Esc.url
+        .decode("%\u0661\u0662 %\uFF21\uFF21"));
+    assertEquals("a\uFFFDb", Esc.url.decode("a%E2%80b"));
+  }
+
   public void testNull()
   {
     assertNull(Esc.url.text(null));
   }
 
+  public void testRandom() throws UnsupportedEncodingException
+  {
+    // UTF-16 is not compared as URLEncoder encodes each run separately,
+    // each with its own byte order mark.
+    final Charset[] charsets = new Charset[] { Charsets.UTF8,
+        Charsets.ISO88591, Charsets.USASCII };
+    final String alphabet = "abcXYZ019.-*_ +/%&=?~\u00E9\u00FF\u0100\u201C"
+        + "\uD83D\uDE00";
+    final Random rand = new Random(42);
+    for ( int test = 0; test < 1000; ++test )
+    {
+      final StringBuilder buff = new StringBuilder();
+      final int len = rand.nextInt(20);
+      for ( int xi = 0; xi < len; ++xi )
+      {
+        final int idx = rand.nextInt(alphabet.length() - 1);
+        if ( Character.isLowSurrogate(alphabet.charAt(idx)) )
+          continue;
+        buff.append(alphabet.charAt(idx));
+        if ( Character.isHighSurrogate(alphabet.charAt(idx)) )
+          buff.append(alphabet.charAt(idx + 1));
+      }
+      final String str = buff.toString();
+      for ( final Charset cs : charsets )
+      {
+        final String encoded = Esc.url.text(str, cs);
+        assertEquals(str,
+          URLEncoder.encode(str, cs.name()).replace("+", "%20"), encoded);
+        assertEquals(str, URLDecoder.decode(encoded, cs.name()),
+          Esc.url.decode(encoded, cs));
+      }
+    }
+  }
+
   public void testUnchanged()
   {
     final String unchanged = "abcdef";
@@ -34,6 +34,9 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.evanmclean.evlib.escape;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import junit.framework.TestCase;
 
 /**
@@ -45,6 +48,33 @@ public class EscXmlTest extends TestCase
 {
   public static final String TEST_ALL_TEST_TYPE = "UNIT";
 
+  public void testAppendable() throws IOException
+  {
+    final String str = "a < b && c > \"d\" ]]> e -- f --- g \u201Ch\u201D";
+    final StringWriter out = new StringWriter();
+    Esc.xmlAscii.text(str, out);
+    Esc.xmlAscii.attr(str, out);
+    Esc.xmlAscii.cdata(str, out);
+    Esc.xml.text(null, out);
+    assertEquals(Esc.xmlAscii.text(str) + Esc.xmlAscii.attr(str)
+        + Esc.xmlAscii.cdata(str), out.toString());
+
+    assertEquals("x" + Esc.xml.text(str),
+      Esc.xml.text(str, new StringBuilder("x")).toString());
+    assertEquals("x", Esc.xml.text(null, new StringBuilder("x")).toString());
+    assertEquals(Esc.xml.comment("a -- b"),
+      Esc.xml.comment("a -- b", new StringBuilder()).toString());
+    assertEquals("a -_-_- b",
+      Esc.xml.comment("a --- b", new StringBuilder()).toString());
+    assertEquals(Esc.xml.cdata("]]]>]]>"),
+      Esc.xml.cdata("]]]>]]>", new StringBuilder()).toString());
+
+    final StringBuilder sb = new StringBuilder();
+    Esc.xml.text(str, 2, 8, sb);
+    Esc.xml.attr(str.toCharArray(), 9, 5, sb);
+    assertEquals("&lt; b &amp;&amp;c &gt; &quot;", sb.toString());
+  }
+
   public void testNull()
   {
     assertNull(Esc.xml.attr(null));
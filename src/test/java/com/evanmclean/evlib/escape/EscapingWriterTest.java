@@ -0,0 +1,174 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class EscapingWriterTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String TEXT = "one <two>\r\nthree & \"four\"\r\rfive\n\n"
+      + "six -- seven --- ]]> eight ]]]>> nine, \u201Cten\u201D\r";
+
+  public void testCdata() throws IOException
+  {
+    for ( int chunk = 1; chunk <= 4; ++chunk )
+    {
+      final StringWriter out = new StringWriter();
+      write(Esc.xml.cdataWriter(out), TEXT, chunk);
+      assertEquals(Esc.xml.cdata(TEXT), out.toString());
+    }
+  }
+
+  public void testComment() throws IOException
+  {
+    for ( int chunk = 1; chunk <= 4; ++chunk )
+    {
+      final StringWriter out = new StringWriter();
+      write(Esc.xhtml.commentWriter(out), TEXT, chunk);
+      assertEquals(Esc.xhtml.comment(TEXT, new StringBuilder()).toString(),
+        out.toString());
+    }
+    final StringWriter out = new StringWriter();
+    write(Esc.xml.commentWriter(out), "a---b", 1);
+    assertEquals("a-_-_-b", out.toString());
+  }
+
+  public void testCsv() throws IOException
+  {
+    final String[] fields = new String[] { "plain", "", "with, comma",
+        "say \"hi\"", "long text with no special characters at the end,",
+        TEXT };
+    for ( int chunk = 1; chunk <= 4; ++chunk )
+      for ( final String field : fields )
+      {
+        final StringWriter out = new StringWriter();
+        write(Esc.csv.textWriter(out), field, chunk);
+        assertEquals(Esc.csv.text(field), out.toString());
+      }
+
+    // Longer than the buffer, so quoted even though it does not need to be.
+    final StringWriter out = new StringWriter();
+    final EscapingWriter wtr = Esc.csv.textWriter(out, 4);
+    wtr.write("abc");
+    wtr.finish();
+    out.write(',');
+    wtr.write("abcdef");
+    wtr.finish();
+    out.write(',');
+    wtr.write("ab\"c");
+    wtr.close();
+    assertEquals("abc,\"abcdef\",\"ab\"\"c\"", out.toString());
+  }
+
+  public void testText() throws IOException
+  {
+    for ( int chunk = 1; chunk <= 4; ++chunk )
+    {
+      StringWriter out = new StringWriter();
+      write(Esc.xmlAscii.textWriter(out), TEXT, chunk);
+      assertEquals(Esc.xmlAscii.text(TEXT), out.toString());
+
+      out = new StringWriter();
+      write(Esc.htmlAscii.attrWriter(out), TEXT, chunk);
+      assertEquals(Esc.htmlAscii.attr(TEXT), out.toString());
+
+      out = new StringWriter();
+      write(Esc.java.textWriter(out), TEXT, chunk);
+      assertEquals(Esc.java.text(TEXT), out.toString());
+
+      out = new StringWriter();
+      write(Esc.xhtml.textbrWriter(out), TEXT, chunk);
+      assertEquals(Esc.xhtml.textbr(TEXT), out.toString());
+
+      out = new StringWriter();
+      write(Esc.xhtml.textbrWriter(out, true), TEXT, chunk);
+      assertEquals(Esc.xhtml.textbr(TEXT, true), out.toString());
+    }
+  }
+
+  public void testWrites() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    final EscapingWriter wtr = Esc.xml.textWriter(out);
+    wtr.write('<');
+    wtr.write("a&b", 1, 2);
+    wtr.write(new char[] { 'x', '>', 'y' }, 1, 1);
+    wtr.append("\"q\"", 1, 2);
+    wtr.append(new StringBuilder("<"));
+    wtr.close();
+    wtr.close();
+    assertEquals("&lt;&amp;b&gt;q&lt;", out.toString());
+    try
+    {
+      wtr.write('x');
+      fail("Wrote to closed writer.");
+    }
+    catch ( IOException ex )
+    {
+      // expected
+    }
+  }
+
+  /**
+   * Writes the string to the escaping writer in chunks of the specified size
+   * (alternating between strings and character arrays), then closes it.
+   */
+  private static void write( final EscapingWriter wtr, final String str,
+      final int chunk ) throws IOException
+  {
+    final char[] chars = str.toCharArray();
+    boolean array = false;
+    for ( int xi = 0; xi < str.length(); xi += chunk )
+    {
+      final int len = Math.min(chunk, str.length() - xi);
+      if ( array )
+        wtr.write(chars, xi, len);
+      else
+        wtr.write(str, xi, len);
+      array = !array;
+    }
+    wtr.close();
+  }
+}
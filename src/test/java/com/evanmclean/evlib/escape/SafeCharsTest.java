@@ -0,0 +1,96 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class SafeCharsTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testBitSet()
+  {
+    final BitSet bits = new BitSet();
+    bits.set('a', 'z' + 1);
+    bits.set(0x100);
+    final SafeChars safe = new SafeChars(bits);
+    assertTrue(safe.isSafe('a'));
+    assertFalse(safe.isSafe('A'));
+    assertFalse(safe.isSafe((char) 0x100));
+    assertEquals(20, safe.scan("abcdefghijklmnopqrstuvwxyz", 3, 20));
+    assertEquals(17, safe.scan("abcdefghijklmnopqRstuvwxyz", 3, 20));
+    assertEquals(0, safe.scan("", 0, 0));
+  }
+
+  public void testScan()
+  {
+    final CharConv conv = XmlConv.XML_ASCII;
+    final SafeChars safe = new SafeChars(conv);
+    final char[] alphabet = "abcdefgh <&>\"'\u00E9\u201C\u201D 0123456789"
+        .toCharArray();
+    final Random rand = new Random(42);
+    for ( int test = 0; test < 2000; ++test )
+    {
+      // Mostly safe characters, with the odd one that is not.
+      final StringBuilder buff = new StringBuilder();
+      final int len = rand.nextInt(40);
+      for ( int xi = 0; xi < len; ++xi )
+        buff.append(alphabet[rand.nextInt((rand.nextInt(10) == 0)
+            ? alphabet.length : 8)]);
+      final String str = buff.toString();
+      final int start = (len > 0) ? rand.nextInt(len) : 0;
+      int expected = start;
+      while ( (expected < len) && (conv.conv(str.charAt(expected)) == null) )
+        ++expected;
+      assertEquals(str, expected, safe.scan(str, start, len));
+    }
+  }
+
+  public void testUnchanged()
+  {
+    final String str = "A long string with nothing in it that needs escaping \u00E9";
+    assertSame(str, Esc.html.text(str));
+    assertSame(str, Esc.xml.text(str));
+    assertNotSame(str, Esc.xmlAscii.text(str));
+  }
+}
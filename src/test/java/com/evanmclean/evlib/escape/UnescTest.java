@@ -0,0 +1,133 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.escape;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class UnescTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testHtml()
+  {
+    assertNull(Unesc.html.text(null));
+    final String unchanged = "Nothing to see here";
+    assertSame(unchanged, Unesc.html.text(unchanged));
+
+    assertEquals("<a> & \"b\" \u00A0\u00E9\u2665 'c'",
+      Unesc.html.text("&lt;a&gt; &amp; &quot;b&quot; &nbsp;&eacute;&hearts; "
+          + "&apos;c&apos;"));
+    assertEquals("AAA\u20AC\uD83D\uDE00",
+      Unesc.html.text("&#65;&#x41;&#X41;&#8364;&#x1F600;"));
+
+    // Not valid references.
+    final String invalid = "& &amp &bogus; &#; &#x; &#xZZ; &#0; "
+        + "&#x110000; &#123456789; &#xF0000041; &#x80000000; &#xFFFFFFFF; "
+        + "&#4294967361; &#\u0661\u0662; &#x\uFF21; &lt &; &&;";
+    assertEquals(invalid, Unesc.html.text(invalid));
+    assertEquals("&<&", Unesc.html.text("&&lt;&"));
+  }
+
+  public void testRandom() throws IOException
+  {
+    final String alphabet = "ab <>&\"'\u00A0\u00E9\u2665\u20AC\u0100\uD83D";
+    final Random rand = new Random(42);
+    for ( int test = 0; test < 500; ++test )
+    {
+      final StringBuilder buff = new StringBuilder();
+      final int len = rand.nextInt(30);
+      for ( int xi = 0; xi < len; ++xi )
+      {
+        final char ch = alphabet.charAt(rand.nextInt(alphabet.length()));
+        buff.append(ch);
+        if ( Character.isHighSurrogate(ch) )
+          buff.append('\uDE00');
+      }
+      final String str = buff.toString();
+      assertEquals(str, Unesc.html.text(Esc.htmlFull.text(str)));
+      assertEquals(str, Unesc.html.text(Esc.htmlAscii.attr(str)));
+      assertEquals(str, Unesc.xml.text(Esc.xmlAscii.text(str)));
+      assertEquals(str, read(Unesc.html.reader(new StringReader(Esc.htmlAscii
+          .text(str))), 1 + rand.nextInt(5)));
+    }
+  }
+
+  public void testReader() throws IOException
+  {
+    final StringBuilder buff = new StringBuilder();
+    final StringBuilder expected = new StringBuilder();
+    for ( int xi = 0; xi < 5000; ++xi )
+    {
+      buff.append("x&amp;y&#x3C;z&bogus;&");
+      expected.append("x&y<z&bogus;&");
+    }
+    assertEquals(expected.toString(),
+      read(Unesc.html.reader(new StringReader(buff.toString())), 7));
+    assertEquals(expected.toString(),
+      read(Unesc.html.reader(new StringReader(buff.toString())), 10000));
+  }
+
+  public void testXml()
+  {
+    assertEquals("<>&\"' &nbsp;", Unesc.xml
+        .text("&lt;&gt;&amp;&quot;&apos; &nbsp;"));
+  }
+
+  /**
+   * Reads everything from the reader, a few characters at a time, where the
+   * underlying reader also only supplies a few at a time.
+   */
+  private static String read( final Reader rdr, final int chunk )
+    throws IOException
+  {
+    final StringBuilder buff = new StringBuilder();
+    final char[] cbuf = new char[chunk];
+    int num;
+    while ( (num = rdr.read(cbuf)) >= 0 )
+      buff.append(cbuf, 0, num);
+    rdr.close();
+    return buff.toString();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * Measures how long each {@link CopyStrategy} takes to copy files of various
+ * sizes, with and without syncing, and prints the results as a table. Not part
+ * of the unit tests: run with <code>ant bench</code>.
+ * </p>
+ * 
+ * <p>
+ * Each strategy copies each file repeatedly for a warm up period, then is
+ * measured for <code>bench.millis</code> milliseconds (a system property,
+ * default 1000). The files are created in the temporary folder (the
+ * <code>java.io.tmpdir</code> system property), so set that to measure a
+ * particular file system. The results for the larger files mostly show how
+ * fast the operating system's cache is unless they are bigger than it.
+ * </p>
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CopyBenchmark extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "PERF";
+
+  private static final int[] SIZES = new int[] { 1024, 16 * 1024, 256 * 1024,
+      16 * 1024 * 1024 };
+
+  public void testCopy() throws IOException
+  {
+    final long millis = Long.getLong("bench.millis", 1000L).longValue();
+    final File tmp = Folders.createTempFolder("copybench", null);
+    try
+    {
+      System.out.println();
+      System.out.println(String.format("%-14s %-5s %10s %12s %10s",
+        "Strategy", "Sync", "Size", "us/copy", "MB/s"));
+      final Random rand = new Random(1);
+      for ( int size : SIZES )
+      {
+        final byte[] data = new byte[size];
+        rand.nextBytes(data);
+        final File from = new File(tmp, "from");
+        final FileOutputStream out = new FileOutputStream(from);
+        try
+        {
+          out.write(data);
+        }
+        finally
+        {
+          out.close();
+        }
+        final File to = new File(tmp, "to");
+
+        for ( final boolean sync : new boolean[] { false, true } )
+          for ( CopyStrategy strategy : CopyStrategy.values() )
+          {
+            run(from, to, strategy, sync, Math.max(100L, millis / 5));
+            final double us = run(from, to, strategy, sync, millis) / 1000.0;
+            System.out.println(String.format("%-14s %-5s %10d %12.1f %10.1f",
+              strategy, Boolean.valueOf(sync), Integer.valueOf(size),
+              Double.valueOf(us), Double.valueOf(size / us)));
+          }
+      }
+      System.out.println();
+    }
+    finally
+    {
+      Folders.del(tmp);
+    }
+  }
+
+  /**
+   * Copies the file over and over for the specified time.
+   * 
+   * @return The average nanoseconds per copy.
+   */
+  private static double run( final File from, final File to,
+      final CopyStrategy strategy, final boolean sync, final long millis )
+    throws IOException
+  {
+    final long start = System.nanoTime();
+    final long stop = start + (millis * 1000000L);
+    long now = start;
+    long ops = 0;
+    do
+    {
+      Files.copy(from, to, false, strategy, sync);
+      ++ops;
+      now = System.nanoTime();
+    }
+    while ( now < stop );
+    return (double) (now - start) / ops;
+  }
+}
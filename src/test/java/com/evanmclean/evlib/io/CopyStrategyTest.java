@@ -0,0 +1,115 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CopyStrategyTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private File tmp;
+
+  public void testCopy() throws IOException
+  {
+    final Random rand = new Random(1);
+    final int[] sizes = new int[] { 0, 1, 1000,
+        (int) CopyStrategy.AUTO_THRESHOLD - 1,
+        (int) CopyStrategy.AUTO_THRESHOLD,
+        (int) CopyStrategy.BUFFER_SIZE * 3 + 7 };
+    for ( int size : sizes )
+    {
+      final byte[] data = new byte[size];
+      rand.nextBytes(data);
+      final File from = new File(tmp, "from" + size);
+      TestFiles.write(from, data);
+      from.setLastModified(from.lastModified() - 60000L);
+      for ( CopyStrategy strategy : CopyStrategy.values() )
+      {
+        final File to = new File(tmp, "to" + size + strategy);
+        // Overwrites anything already there.
+        TestFiles.write(to, new byte[size + 10]);
+        Files.copy(from, to, true, strategy, size == 1000);
+        assertTrue(strategy + " " + size, Arrays.equals(data, read(to)));
+        assertEquals(from.lastModified(), to.lastModified());
+      }
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    tmp = Folders.createTempFolder("cstest", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    Folders.del(tmp);
+  }
+
+  private static byte[] read( final File file ) throws IOException
+  {
+    final byte[] data = new byte[(int) file.length()];
+    final FileInputStream in = new FileInputStream(file);
+    try
+    {
+      int pos = 0;
+      while ( pos < data.length )
+      {
+        final int read = in.read(data, pos, data.length - pos);
+        assertTrue(read > 0);
+        pos += read;
+      }
+      assertEquals(-1, in.read());
+    }
+    finally
+    {
+      in.close();
+    }
+    return data;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class FileStructureCopierTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private File tmp;
+
+  public void testErrors() throws IOException
+  {
+    final File from = new File(tmp, "from");
+    makeTree(from);
+    final File to = new File(tmp, "to");
+    // A file in the way of one of the folders.
+    Folders.mks(to);
+    TestFiles.write(new File(to, "d1"), 1);
+
+    final Set<String> errors = Collections
+        .synchronizedSet(new HashSet<String>());
+    final FileStructureCopier copier = new FileStructureCopier() {
+      @Override
+      protected void errorHandler( final File efrom, final File eto,
+          final IOException exception )
+      {
+        errors.add(efrom.getName());
+      }
+    };
+    assertFalse(copier.copy(from, to, 4));
+    assertEquals(Collections.singleton("d1"), errors);
+    assertTrue(new File(to, "f119").isFile());
+    assertTrue(new File(to, "empty1").isDirectory());
+
+    // The default error handler throws.
+    try
+    {
+      new FileStructureCopier().copy(from, to, 4);
+      fail("Copied over a file.");
+    }
+    catch ( IOException ex )
+    {
+      // expected
+    }
+  }
+
+  public void testParallel() throws IOException
+  {
+    final File from = new File(tmp, "from");
+    makeTree(from);
+
+    final Set<String> copied = Collections
+        .synchronizedSet(new HashSet<String>());
+    final FileStructureCopier copier = new FileStructureCopier() {
+      @Override
+      protected boolean filter( final File ffrom, final File fto )
+      {
+        return !ffrom.getName().equals("skip");
+      }
+
+      @Override
+      protected void postCopy( final File pfrom, final File pto )
+      {
+        assertTrue(pto.exists());
+        copied.add(pto.getPath());
+      }
+    };
+
+    final File seq = new File(tmp, "seq");
+    assertTrue(copier.copy(from, seq));
+    final int count = copied.size();
+    copied.clear();
+
+    final File par = new File(tmp, "par");
+    assertTrue(copier.copy(from, par, 4));
+    assertEquals(count, copied.size());
+    assertFalse(new File(par, "skip").exists());
+    TestFiles.assertSameTree(seq, par);
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    tmp = Folders.createTempFolder("fsctest", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    Folders.del(tmp);
+  }
+
+  /**
+   * Creates a few levels of folders with a varying number of files in each.
+   */
+  private static void makeTree( final File root ) throws IOException
+  {
+    Folders.mks(root);
+    File dir = root;
+    for ( int level = 1; level <= 3; ++level )
+    {
+      for ( int xi = 0; xi < (level * 20); ++xi )
+        TestFiles.write(new File(dir, "f" + level + xi), xi);
+      final File skip = new File(dir, "skip");
+      Folders.mks(skip);
+      TestFiles.write(new File(skip, "f"), 1);
+      Folders.mks(new File(dir, "empty" + level));
+      dir = new File(dir, "d" + level);
+      Folders.mks(dir);
+    }
+  }
+}
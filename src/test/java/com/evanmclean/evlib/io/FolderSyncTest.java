@@ -0,0 +1,166 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class FolderSyncTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private File tmp;
+  private File from;
+  private File to;
+
+  public void testContents() throws IOException
+  {
+    final FolderSync sync = new FolderSync();
+    sync.setCompareContents(true);
+    sync.sync(from, to);
+
+    // Same contents, different date: not copied, but the date is fixed.
+    final File touched = new File(to, "a");
+    touched.setLastModified(touched.lastModified() - 60000L);
+    // Different contents, same size and date.
+    final File changed = new File(to, "sub/c");
+    final long mod = changed.lastModified();
+    TestFiles.write(changed, "xxx");
+    changed.setLastModified(mod);
+
+    final FolderSync.Report report = sync.sync(from, to);
+    assertEquals(Collections.singletonList(changed), report.getCopied());
+    assertEquals(2, report.getUnchanged());
+    assertEquals(new File(from, "a").lastModified(), touched.lastModified());
+    TestFiles.assertSameTree(from, to, true);
+  }
+
+  public void testDryRun() throws IOException
+  {
+    final FolderSync sync = new FolderSync();
+    sync.setDryRun(true);
+    sync.setDeleteOrphans(true);
+    FolderSync.Report report = sync.sync(from, to);
+    assertTrue(report.isDryRun());
+    assertEquals(3, report.getCopied().size());
+    assertEquals(Arrays.asList(to, new File(to, "sub")),
+      report.getCreatedFolders());
+    assertFalse(to.exists());
+
+    sync.setDryRun(false);
+    sync.sync(from, to);
+    TestFiles.write(new File(to, "orphan"), "o");
+    TestFiles.write(new File(from, "a"), "changed");
+    sync.setDryRun(true);
+    report = sync.sync(from, to);
+    assertEquals(Collections.singletonList(new File(to, "a")),
+      report.getCopied());
+    assertEquals(Collections.singletonList(new File(to, "orphan")),
+      report.getDeleted());
+    assertTrue(new File(to, "orphan").exists());
+    assertTrue(report.toString().contains("delete "
+        + new File(to, "orphan")));
+  }
+
+  public void testIncremental() throws IOException
+  {
+    final FolderSync sync = new FolderSync();
+    FolderSync.Report report = sync.sync(from, to);
+    assertEquals(3, report.getCopied().size());
+    assertEquals(0, report.getUnchanged());
+    assertEquals(6L, report.getBytesCopied());
+    assertTrue(report.isOkay());
+    TestFiles.assertSameTree(from, to, true);
+
+    report = sync.sync(from, to);
+    assertEquals(0, report.getCopied().size());
+    assertEquals(3, report.getUnchanged());
+
+    final File orphan = new File(to, "orphan");
+    TestFiles.write(orphan, "o");
+    TestFiles.write(new File(from, "b"), "bigger");
+    report = sync.sync(from, to);
+    assertEquals(Collections.singletonList(new File(to, "b")),
+      report.getCopied());
+    assertEquals(2, report.getUnchanged());
+    assertTrue(orphan.exists());
+
+    sync.setDeleteOrphans(true);
+    report = sync.sync(from, to);
+    assertEquals(0, report.getCopied().size());
+    assertEquals(Collections.singletonList(orphan), report.getDeleted());
+    TestFiles.assertSameTree(from, to, true);
+  }
+
+  public void testInTheWay() throws IOException
+  {
+    Folders.mks(new File(to, "a"));
+    TestFiles.write(new File(to, "a/x"), "x");
+    TestFiles.write(new File(to, "sub"), "x");
+    final List<File> deleted = new FolderSync().sync(from, to).getDeleted();
+    assertEquals(new HashSet<File>(Arrays.asList(new File(to, "a"), new File(
+        to, "sub"))), new HashSet<File>(deleted));
+    TestFiles.assertSameTree(from, to, true);
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    tmp = Folders.createTempFolder("fstest", null);
+    from = new File(tmp, "from");
+    to = new File(tmp, "to");
+    Folders.mks(new File(from, "sub"));
+    TestFiles.write(new File(from, "a"), "a");
+    TestFiles.write(new File(from, "b"), "bb");
+    TestFiles.write(new File(from, "sub/c"), "ccc");
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    Folders.del(tmp);
+  }
+}
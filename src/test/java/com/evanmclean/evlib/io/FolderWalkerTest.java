@@ -0,0 +1,191 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class FolderWalkerTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private File tmp;
+
+  public void testEmptiness() throws IOException
+  {
+    final File root = new File(tmp, "root");
+    assertTrue(Folders.isAllEmpty(root));
+    assertTrue(Folders.isOnlyFolders(root));
+
+    Folders.mks(new File(root, "a/b/c"));
+    Folders.mks(new File(root, "d"));
+    assertTrue(Folders.isAllEmpty(root));
+    assertTrue(Folders.isOnlyFolders(root));
+
+    TestFiles.write(new File(root, "a/empty"), 0);
+    assertTrue(Folders.isAllEmpty(root));
+    assertFalse(Folders.isOnlyFolders(root));
+    assertTrue(Folders.isNotOnlyFolders(root));
+
+    // A non-empty file after an empty one in the same folder.
+    TestFiles.write(new File(root, "a/zfull"), 1);
+    assertFalse(Folders.isAllEmpty(root));
+    assertTrue(Folders.isNotAllEmpty(root));
+  }
+
+  public void testFilters() throws IOException
+  {
+    final File root = makeTree();
+
+    FolderWalker walker = new FolderWalker(root);
+    walker.setExtensions("TXT", "log");
+    assertEquals(names("a.txt", "sub", "sub/b.LOG", "sub/deep", "sub/deep/e.txt",
+      "sub/deep/f"), walk(root, walker));
+
+    walker.setIncludeFolders(false);
+    walker.setMaxDepth(2);
+    assertEquals(names("a.txt", "sub/b.LOG"), walk(root, walker));
+
+    walker = new FolderWalker(root);
+    walker.setGlob("?.t*");
+    walker.setFolderFilter(new FileFilter() {
+      public boolean accept( final File file )
+      {
+        return !file.getName().equals("deep");
+      }
+    });
+    assertEquals(names("a.txt", "sub", "sub/deep", "sub/c.tmp"), walk(root,
+      walker));
+
+    walker = new FolderWalker(root);
+    walker.setFilter(new FileFilter() {
+      public boolean accept( final File file )
+      {
+        return file.isFile() && (file.length() > 0);
+      }
+    });
+    assertEquals(names("sub/c.tmp", "sub/deep/e.txt"), walk(root, walker));
+  }
+
+  public void testWalk() throws IOException
+  {
+    final File root = makeTree();
+    assertEquals(names("a.txt", "sub", "sub/b.LOG", "sub/c.tmp", "sub/deep",
+      "sub/deep/e.txt", "sub/deep/f", "x.y.tar.gz", ".hidden"),
+      walk(root, new FolderWalker(root)));
+
+    final FolderWalker walker = new FolderWalker(root);
+    walker.setMaxDepth(1);
+    assertEquals(names("a.txt", "sub", "x.y.tar.gz", ".hidden"), walk(root,
+      walker));
+
+    // Folders come before their contents.
+    File last = null;
+    for ( File file : new FolderWalker(root) )
+    {
+      if ( file.getParentFile().equals(new File(root, "sub")) )
+        assertNotNull(last);
+      if ( file.getName().equals("sub") )
+        last = file;
+    }
+
+    assertFalse(new FolderWalker(new File(root, "a.txt")).iterator().hasNext());
+    final Iterator<File> it = new FolderWalker(new File(tmp, "nothing"))
+        .iterator();
+    assertFalse(it.hasNext());
+    try
+    {
+      it.next();
+      fail("Returned something from nothing.");
+    }
+    catch ( NoSuchElementException ex )
+    {
+      // expected
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    tmp = Folders.createTempFolder("fwtest", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    Folders.del(tmp);
+  }
+
+  private File makeTree() throws IOException
+  {
+    final File root = new File(tmp, "root");
+    Folders.mks(new File(root, "sub/deep/f"));
+    TestFiles.write(new File(root, "a.txt"), 0);
+    TestFiles.write(new File(root, "x.y.tar.gz"), 0);
+    TestFiles.write(new File(root, ".hidden"), 0);
+    TestFiles.write(new File(root, "sub/b.LOG"), 0);
+    TestFiles.write(new File(root, "sub/c.tmp"), 1);
+    TestFiles.write(new File(root, "sub/deep/e.txt"), 2);
+    return root;
+  }
+
+  private static Set<String> names( final String... names )
+  {
+    return new HashSet<String>(Arrays.asList(names));
+  }
+
+  private static Set<String> walk( final File root, final FolderWalker walker )
+  {
+    final int len = root.getPath().length() + 1;
+    final Set<String> names = new HashSet<String>();
+    for ( File file : walker )
+      assertTrue(names.add(file.getPath().substring(len)
+          .replace(File.separatorChar, '/')));
+    return names;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RecursiveDeleteTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private File tmp;
+
+  public void testDeleteAll() throws IOException
+  {
+    final File root = new File(tmp, "root");
+    for ( int threads = 1; threads <= 4; threads += 3 )
+    {
+      makeTree(root);
+      assertTrue(new RecursiveDelete().deleteAll(root, threads));
+      assertFalse(root.exists());
+      assertTrue(new RecursiveDelete().deleteAll(root, threads));
+    }
+
+    // A plain file.
+    final File file = new File(tmp, "file");
+    TestFiles.write(file, 0);
+    assertTrue(new RecursiveDelete().deleteAll(file, 4));
+    assertFalse(file.exists());
+  }
+
+  public void testDeleteChildren() throws IOException
+  {
+    final File root = new File(tmp, "root");
+    for ( int threads = 1; threads <= 4; threads += 3 )
+    {
+      makeTree(root);
+      assertTrue(new RecursiveDelete().deleteChildren(root, threads));
+      assertTrue(root.isDirectory());
+      assertTrue(Folders.isEmpty(root));
+    }
+
+    makeTree(root);
+    Folders.mksClear(root, 4);
+    assertTrue(Folders.isEmpty(root));
+    makeTree(root);
+    Folders.clear(root, 4);
+    assertTrue(Folders.isEmpty(root));
+    makeTree(root);
+    Folders.del(root, 4);
+    assertFalse(root.exists());
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    tmp = Folders.createTempFolder("rdtest", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    Folders.del(tmp);
+  }
+
+  /**
+   * A tree that is both deep and wide, with more files in some folders than
+   * are deleted in one batch.
+   */
+  private static void makeTree( final File root ) throws IOException
+  {
+    File dir = root;
+    for ( int level = 1; level <= 4; ++level )
+    {
+      assertTrue(dir.mkdirs() || dir.isDirectory());
+      for ( int xi = 0; xi < (level * 100); ++xi )
+        TestFiles.write(new File(dir, "f" + xi), 0);
+      for ( int xi = 0; xi < 5; ++xi )
+      {
+        final File sub = new File(dir, "s" + xi);
+        assertTrue(sub.mkdir());
+        TestFiles.write(new File(sub, "f"), 0);
+      }
+      assertTrue(new File(dir, "empty").mkdir());
+      dir = new File(dir, "d" + level);
+    }
+  }
+}
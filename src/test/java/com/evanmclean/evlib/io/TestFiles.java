@@ -0,0 +1,151 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.Assert;
+
+/**
+ * Creates and compares files and folder structures for the io unit tests.
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class TestFiles
+{
+  /**
+   * Asserts that both folders contain the same structure, with files of the
+   * same length.
+   * 
+   * @param lhs
+   * @param rhs
+   */
+  public static void assertSameTree( final File lhs, final File rhs )
+  {
+    assertSameTree(lhs, rhs, false);
+  }
+
+  /**
+   * Asserts that both folders contain the same structure, with files of the
+   * same length.
+   * 
+   * @param lhs
+   * @param rhs
+   * @param modified
+   *        Also assert that the files have the same last modified time.
+   */
+  public static void assertSameTree( final File lhs, final File rhs,
+      final boolean modified )
+  {
+    final String[] lnames = lhs.list();
+    Assert.assertNotNull(lnames);
+    Assert.assertEquals(new HashSet<String>(Arrays.asList(lnames)),
+      new HashSet<String>(Arrays.asList(rhs.list())));
+    for ( String name : lnames )
+    {
+      final File lfile = new File(lhs, name);
+      final File rfile = new File(rhs, name);
+      if ( lfile.isDirectory() )
+      {
+        Assert.assertTrue(rfile.isDirectory());
+        assertSameTree(lfile, rfile, modified);
+      }
+      else
+      {
+        Assert.assertEquals(lfile.length(), rfile.length());
+        if ( modified )
+          Assert.assertEquals(lfile.lastModified(), rfile.lastModified());
+      }
+    }
+  }
+
+  /**
+   * Writes a file of the specified data.
+   * 
+   * @param file
+   * @param data
+   * @throws IOException
+   */
+  public static void write( final File file, final byte[] data )
+    throws IOException
+  {
+    final FileOutputStream out = new FileOutputStream(file);
+    try
+    {
+      out.write(data);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a file of the specified length, filled with zeros.
+   * 
+   * @param file
+   * @param len
+   * @throws IOException
+   */
+  public static void write( final File file, final int len )
+    throws IOException
+  {
+    write(file, new byte[len]);
+  }
+
+  /**
+   * Writes a file containing the (ASCII) string.
+   * 
+   * @param file
+   * @param str
+   * @throws IOException
+   */
+  public static void write( final File file, final String str )
+    throws IOException
+  {
+    write(file, str.getBytes("US-ASCII"));
+  }
+
+  private TestFiles()
+  {
+    // empty
+  }
+}
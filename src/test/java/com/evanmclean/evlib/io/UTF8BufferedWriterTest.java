@@ -0,0 +1,109 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.evanmclean.evlib.charset.Charsets;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class UTF8BufferedWriterTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String MIXED = "abc \u00E9t\u00E9 \u20AC100 \uD834\uDD1E end";
+
+  public void testAscii() throws IOException
+  {
+    assertEquals("hello world", roundTrip("hello world", 16));
+  }
+
+  public void testLong() throws IOException
+  {
+    final StringBuilder buff = new StringBuilder();
+    for ( int xi = 0; xi < 1000; ++xi )
+      buff.append(MIXED);
+    final String str = buff.toString();
+    assertEquals(str, roundTrip(str, 16));
+    assertEquals(str, roundTrip(str, 8192));
+  }
+
+  public void testMixed() throws IOException
+  {
+    assertEquals(MIXED, roundTrip(MIXED, 16));
+    assertEquals(MIXED, roundTrip(MIXED, 8192));
+  }
+
+  public void testSingleChars() throws IOException
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final UTF8BufferedWriter out = new UTF8BufferedWriter(bout, 16);
+    for ( int xi = 0; xi < MIXED.length(); ++xi )
+      out.write(MIXED.charAt(xi));
+    out.close();
+    assertEquals(MIXED, new String(bout.toByteArray(), Charsets.UTF8_NAME));
+  }
+
+  public void testSplitSurrogate() throws IOException
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final UTF8BufferedWriter out = new UTF8BufferedWriter(bout);
+    out.write("a\ud834");
+    out.write("\udd1eb");
+    out.write("\ud834c");
+    out.close();
+    assertEquals("a\uD834\uDD1Eb?c", new String(bout.toByteArray(),
+        Charsets.UTF8_NAME));
+  }
+
+  private String roundTrip( final String str, final int bufsize )
+    throws IOException
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final UTF8BufferedWriter out = new UTF8BufferedWriter(bout, bufsize);
+    out.write(str);
+    out.flush();
+    assertEquals(str, new String(bout.toByteArray(), Charsets.UTF8_NAME));
+    out.close();
+    return new String(bout.toByteArray(), Charsets.UTF8_NAME);
+  }
+}
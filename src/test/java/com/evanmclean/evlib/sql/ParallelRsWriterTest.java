@@ -0,0 +1,200 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class ParallelRsWriterTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String SQL = "select id, grp, name from nums"
+      + " where id >= ? and id < ? order by id";
+
+  private static final int ROWS = 1000;
+
+  private String url;
+  private Connection conn;
+
+  public void testCsv() throws Exception
+  {
+    check(new RsCsv());
+  }
+
+  public void testEmptyRanges() throws Exception
+  {
+    final RsCsv csv = new RsCsv();
+    csv.setRecord("num");
+    final ParallelRsWriter prw = new ParallelRsWriter(
+        TestDb.dataSource(url), SQL, csv);
+    prw.setThreads(3);
+
+    // Empty ranges at either end and in the middle.
+    final StringWriter out = new StringWriter();
+    prw.write(out, new Object[] { Long.valueOf(-200), Long.valueOf(-100),
+        Long.valueOf(0), Long.valueOf(500), Long.valueOf(500),
+        Long.valueOf(ROWS), Long.valueOf(ROWS + 100) });
+    assertEquals(serial(csv, 0, ROWS), out.toString());
+
+    // Nothing at all.
+    final StringWriter none = new StringWriter();
+    prw.write(none, ParallelRsWriter.split(ROWS, ROWS + 100, 4));
+    assertEquals("", none.toString());
+  }
+
+  public void testJson() throws Exception
+  {
+    final RsJson json = new RsJson();
+    json.setContainerName("nums");
+    check(json);
+
+    final StringWriter none = new StringWriter();
+    new ParallelRsWriter(TestDb.dataSource(url), SQL, json).write(none,
+      ParallelRsWriter.split(-10, 0, 3));
+    assertEquals("{\"nums\":[]}", none.toString());
+  }
+
+  public void testOutputStream() throws Exception
+  {
+    final RsXml xml = new RsXml();
+    xml.setContainerElementName("nums");
+    xml.setRecord("num");
+    final ParallelRsWriter prw = new ParallelRsWriter(
+        TestDb.dataSource(url), SQL, xml);
+    prw.setThreads(4);
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    prw.write(bout, ParallelRsWriter.split(0, ROWS, 9));
+
+    final PreparedStatement stmt = conn.prepareStatement(SQL);
+    stmt.setLong(1, 0);
+    stmt.setLong(2, ROWS);
+    final ResultSet rs = stmt.executeQuery();
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    xml.forResultSet(rs).write(expected);
+    stmt.close();
+
+    assertTrue(Arrays.equals(expected.toByteArray(), bout.toByteArray()));
+  }
+
+  public void testSplit()
+  {
+    assertTrue(Arrays.equals(new Long[] { Long.valueOf(0), Long.valueOf(4),
+        Long.valueOf(7), Long.valueOf(10) }, ParallelRsWriter.split(0, 10, 3)));
+    assertTrue(Arrays.equals(new Long[] { Long.valueOf(5), Long.valueOf(6),
+        Long.valueOf(7) }, ParallelRsWriter.split(5, 7, 10)));
+  }
+
+  public void testXml() throws Exception
+  {
+    final RsXml xml = new RsXml();
+    xml.setContainerElementName("nums");
+    xml.setRecord("num");
+    xml.setPrettyPrint(true);
+    check(xml);
+  }
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    url = TestDb.newUrl();
+    conn = TestDb.connect(url);
+    final Statement stmt = conn.createStatement();
+    stmt.execute("create table nums (id integer not null primary key,"
+        + " grp integer, name varchar(20))");
+    stmt.close();
+
+    final PreparedStatement ins = conn
+        .prepareStatement("insert into nums values (?, ?, ?)");
+    for ( int xi = 0; xi < ROWS; ++xi )
+    {
+      ins.setInt(1, xi);
+      ins.setInt(2, xi / 10);
+      ins.setString(3, "Name <" + xi + ">, \"" + (xi * 7) + '"');
+      ins.executeUpdate();
+    }
+    ins.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    conn.close();
+  }
+
+  private void check( final AbstractRsWriter template ) throws Exception
+  {
+    if ( template.getRecordNames().length <= 0 )
+      template.setRecord("num");
+    final ParallelRsWriter prw = new ParallelRsWriter(
+        TestDb.dataSource(url), SQL, template);
+    prw.setThreads(4);
+    prw.setFetchSize(50);
+    final StringWriter out = new StringWriter();
+    prw.write(out, ParallelRsWriter.split(0, ROWS, 23));
+    assertEquals(serial(template, 0, ROWS), out.toString());
+  }
+
+  private String serial( final AbstractRsWriter template, final long lower,
+      final long upper ) throws Exception
+  {
+    final PreparedStatement stmt = conn.prepareStatement(SQL);
+    try
+    {
+      stmt.setLong(1, lower);
+      stmt.setLong(2, upper);
+      final ResultSet rs = stmt.executeQuery();
+      final StringWriter out = new StringWriter();
+      template.forResultSet(rs).write(out);
+      return out.toString();
+    }
+    finally
+    {
+      stmt.close();
+    }
+  }
+}
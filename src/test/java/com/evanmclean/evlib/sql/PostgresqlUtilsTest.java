@@ -0,0 +1,125 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class PostgresqlUtilsTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testBytea() throws SQLException
+  {
+    final Array arr = PostgresqlUtils.byteaToArray(new byte[][] {
+        new byte[] { 0x01, (byte) 0xab }, null, new byte[0] });
+    assertEquals("{\"\\\\x01ab\",NULL,\"\\\\x\"}", arr.toString());
+    assertEquals("bytea", arr.getBaseTypeName());
+  }
+
+  public void testCached()
+  {
+    final Array arr = PostgresqlUtils.intToArray(new int[] { 1, 2, 3 });
+    final String str = arr.toString();
+    assertSame(str, arr.toString());
+  }
+
+  public void testDouble()
+  {
+    assertEquals("{1.5,-2.0,NaN,Infinity}",
+      PostgresqlUtils.doubleToArray(
+        new double[] { 1.5, -2.0, Double.NaN, Double.POSITIVE_INFINITY })
+          .toString());
+  }
+
+  public void testGetArray() throws SQLException
+  {
+    final long[] src = new long[] { 10, 20, 30, 40 };
+    final Array arr = PostgresqlUtils.longToArray(src);
+    assertSame(src, arr.getArray());
+    final long[] part = (long[]) arr.getArray(2, 2);
+    assertEquals(2, part.length);
+    assertEquals(20, part[0]);
+    assertEquals(30, part[1]);
+    assertEquals(Types.BIGINT, arr.getBaseType());
+  }
+
+  public void testInt()
+  {
+    assertNull(PostgresqlUtils.intToArray(null));
+    assertEquals("{}", PostgresqlUtils.intToArray(new int[0]).toString());
+    assertEquals("{1,-2,3}",
+      PostgresqlUtils.intToArray(new int[] { 1, -2, 3 }).toString());
+  }
+
+  public void testLong()
+  {
+    assertEquals("{1,9223372036854775807}",
+      PostgresqlUtils.longToArray(new long[] { 1, Long.MAX_VALUE }).toString());
+  }
+
+  public void testMulti()
+  {
+    assertEquals("{{1,2},{3,4}}",
+      PostgresqlUtils.toArray(new int[][] { { 1, 2 }, { 3, 4 } }, "int4")
+          .toString());
+    assertEquals("{{\"a\",NULL},{\"b\\\"\",\"c\"}}",
+      PostgresqlUtils.toArray(new String[][] { { "a", null }, { "b\"", "c" } },
+        "varchar").toString());
+  }
+
+  public void testString()
+  {
+    assertEquals("{\"abc\",\"a\\\"b\\\\c\",NULL}",
+      PostgresqlUtils.stringToArray(new String[] { "abc", "a\"b\\c", null })
+          .toString());
+  }
+
+  public void testUuid()
+  {
+    final UUID uuid = UUID.fromString("a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11");
+    assertEquals("{a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11,NULL}",
+      PostgresqlUtils.uuidToArray(new UUID[] { uuid, null }).toString());
+  }
+}
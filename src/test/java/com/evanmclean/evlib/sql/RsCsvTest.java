@@ -0,0 +1,187 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RsCsvTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testBreak() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select grp, id, qty from items order by grp, id");
+      final RsCsv csv = new RsCsv();
+      csv.setResultSet(rs);
+      csv.setRecords(new String[] { "group", "item" },
+        new String[][] { new String[] { "grp" } }, new String[][] {
+            new String[] { "grp" }, new String[] { "id", "qty" } });
+      csv.setColumnAliases(new String[][] { new String[] { "grp", "Group" } });
+      csv.setLineSeparator("\n");
+      final StringWriter out = new StringWriter();
+      csv.write(out);
+      assertEquals("Group,id,qty\na,1,10\na,2,\nb,3,-5\n", out.toString());
+      assertEquals(2, csv.totalWritten());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testEmpty() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id from items where id < 0");
+      final StringWriter out = new StringWriter();
+      new RsCsv(rs).write(out);
+      assertEquals("", out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testLimit() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id from items order by id");
+      final RsCsv csv = new RsCsv(rs);
+      StringWriter out = new StringWriter();
+      assertTrue(csv.write(out, 2));
+      assertEquals("id\r\n1\r\n2\r\n", out.toString());
+      out = new StringWriter();
+      assertFalse(csv.write(out, 2));
+      assertEquals("3\r\n", out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testNumbers() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id, amount from items order by id");
+      final StringWriter out = new StringWriter();
+      new RsCsv(rs).write(out);
+      assertEquals("id,amount\r\n1,1E10\r\n2,\r\n3,1.5E20\r\n",
+        out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testQuoting() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select name from items order by id");
+      final RsCsv csv = new RsCsv(rs);
+      csv.setIncludeHeading(false);
+      final StringWriter out = new StringWriter();
+      csv.write(out);
+      assertEquals("Apple\r\n\"Banana, Big\"\r\n\"Say \"\"hi\"\"\"\r\n",
+        out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testSeparator() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id, name from items where id = 1");
+      final RsCsv csv = new RsCsv(rs);
+      csv.setSeparator('\t');
+      csv.setLowercase(true);
+      final StringWriter out = new StringWriter();
+      csv.write(out);
+      assertEquals("id\tname\r\n1\tApple\r\n", out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+}
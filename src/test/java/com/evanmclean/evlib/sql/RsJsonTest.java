@@ -0,0 +1,185 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RsJsonTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testBreak() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select grp, id, name from items order by grp, id");
+      final RsJson json = new RsJson();
+      json.setResultSet(rs);
+      json.setRecords(new String[] { "group", "item" },
+        new String[][] { new String[] { "grp" } }, new String[][] {
+            new String[] { "grp" }, new String[] { "id", "name" } });
+      final StringWriter out = new StringWriter();
+      json.write(out);
+      assertEquals("[{\"grp\":\"a\",\"item\":[{\"id\":1,\"name\":\"Apple\"},"
+          + "{\"id\":2,\"name\":\"Banana, Big\"}]},"
+          + "{\"grp\":\"b\",\"item\":[{\"id\":3,\"name\":\"Say \\\"hi\\\"\"}]}]",
+        out.toString());
+      assertEquals(2, json.totalWritten());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testContainer() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id, qty from items order by id");
+      final RsJson json = new RsJson(rs);
+      json.setContainerName("items");
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      json.write(out);
+      assertEquals("{\"items\":[{\"id\":1,\"qty\":10},{\"id\":2,\"qty\":null},"
+          + "{\"id\":3,\"qty\":-5}]}", out.toString("UTF-8"));
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testEmpty() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id from items where id < 0");
+      final StringWriter out = new StringWriter();
+      new RsJson(rs).write(out);
+      assertEquals("[]", out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testLimit() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final ResultSet rs = stmt
+          .executeQuery("select id from items order by id");
+      final RsJson json = new RsJson(rs);
+      StringWriter out = new StringWriter();
+      assertTrue(json.write(out, 2));
+      assertEquals("[{\"id\":1},{\"id\":2}]", out.toString());
+      out = new StringWriter();
+      assertFalse(json.write(out, 2));
+      assertEquals("[{\"id\":3}]", out.toString());
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testNumbers() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+
+      // Written as JSON numbers.
+      StringWriter out = new StringWriter();
+      new RsJson(stmt.executeQuery("select id, amount from items order by id"))
+          .write(out);
+      assertEquals("[{\"id\":1,\"amount\":1E10},{\"id\":2,\"amount\":null},"
+          + "{\"id\":3,\"amount\":1.5E20}]", out.toString());
+
+      // Formatted by a subclass, so written as strings.
+      final RsJson formatted = new RsJson(stmt
+          .executeQuery("select id, amount from items where id = 1")) {
+        @Override
+        protected String getDouble( final Object obj, final String column,
+            final int sql_type )
+        {
+          return String.format(Locale.US, "%,.1f", obj);
+        }
+      };
+      out = new StringWriter();
+      formatted.write(out);
+      assertEquals("[{\"id\":1,\"amount\":\"10,000,000,000.0\"}]",
+        out.toString());
+
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+}
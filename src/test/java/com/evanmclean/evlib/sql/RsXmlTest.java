@@ -0,0 +1,253 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RsXmlTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String POSITIONED_XML = "<items><item><id>2</id>"
+      + "<added /><stamp /></item><item><id>3</id><added>1999-12-31</added>"
+      + "<stamp>1999-12-31 23:59:59.000</stamp></item></items>";
+
+  private static final String DATES_XML = "<items><item><id>1</id>"
+      + "<added>2011-03-04</added><stamp>2011-03-04 05:06:07.080</stamp>"
+      + "</item><item><id>2</id><added /><stamp /></item><item><id>3</id>"
+      + "<added>1999-12-31</added><stamp>1999-12-31 23:59:59.000</stamp>"
+      + "</item></items>";
+
+  public void testDateFormat() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final RsXml xml = template(new RsXml());
+      ((SimpleDateFormat) xml.getDateFormat()).applyPattern("dd/MM/yyyy");
+      assertNull(xml.getDatePattern());
+      assertNotNull(xml.getTimestampPattern());
+      xml.setResultSet(stmt
+          .executeQuery("select id, added from items where id = 1"));
+      final StringWriter out = new StringWriter();
+      xml.write(out);
+      assertEquals("<items><item><id>1</id><added>04/03/2011</added></item>"
+          + "</items>", stripDeclaration(out.toString()));
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testDates() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+
+      // Written directly.
+      final RsXml xml = template(new RsXml());
+      xml.setResultSet(stmt
+          .executeQuery("select id, added, stamp from items order by id"));
+      StringWriter out = new StringWriter();
+      xml.write(out);
+      assertEquals(DATES_XML, stripDeclaration(out.toString()));
+
+      // Written through getValue.
+      final RsXml slow = template(new RsXml() {
+        @Override
+        protected String getValue( final Object obj, final String column,
+            final int sql_type )
+        {
+          return super.getValue(obj, column, sql_type);
+        }
+      });
+      slow.setResultSet(stmt
+          .executeQuery("select id, added, stamp from items order by id"));
+      out = new StringWriter();
+      slow.write(out);
+      assertEquals(DATES_XML, stripDeclaration(out.toString()));
+
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testNumbers() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      final RsXml xml = template(new RsXml());
+      xml.setResultSet(stmt
+          .executeQuery("select id, amount from items order by id"));
+      final StringWriter out = new StringWriter();
+      xml.write(out);
+      assertEquals("<items><item><id>1</id><amount>1E10</amount></item>"
+          + "<item><id>2</id><amount /></item><item><id>3</id>"
+          + "<amount>1.5E20</amount></item></items>",
+        stripDeclaration(out.toString()));
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testPositioned() throws IOException, SQLException
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+
+      // Already on a row, so writes from that row on.
+      final RsXml xml = template(new RsXml());
+      final ResultSet rs = stmt
+          .executeQuery("select id, added, stamp from items order by id");
+      assertTrue(rs.next());
+      assertTrue(rs.next());
+      xml.setResultSet(rs);
+      StringWriter out = new StringWriter();
+      xml.write(out);
+      assertEquals(POSITIONED_XML, stripDeclaration(out.toString()));
+
+      // Already read everything.
+      xml.setResultSet(rs);
+      out = new StringWriter();
+      xml.write(out);
+      assertEquals("<items></items>", stripDeclaration(out.toString()));
+
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  public void testForResultSet() throws Exception
+  {
+    final RsXml template = template(new RsXml());
+    final List<Thread> threads = new ArrayList<Thread>();
+    final List<String> results = new ArrayList<String>();
+    final List<Exception> errors = new ArrayList<Exception>();
+    for ( int xi = 0; xi < 8; ++xi )
+      threads.add(new Thread() {
+        @Override
+        public void run()
+        {
+          try
+          {
+            final Connection conn = TestDb.create();
+            try
+            {
+              final Statement stmt = conn.createStatement();
+              for ( int yi = 0; yi < 20; ++yi )
+              {
+                final ResultSet rs = stmt
+                    .executeQuery("select id, added, stamp from items order by id");
+                final StringWriter out = new StringWriter();
+                template.forResultSet(rs).write(out);
+                rs.close();
+                synchronized ( results )
+                {
+                  results.add(out.toString());
+                }
+              }
+              stmt.close();
+            }
+            finally
+            {
+              conn.close();
+            }
+          }
+          catch ( Exception ex )
+          {
+            synchronized ( errors )
+            {
+              errors.add(ex);
+            }
+          }
+        }
+      });
+    for ( Thread thread : threads )
+      thread.start();
+    for ( Thread thread : threads )
+      thread.join();
+
+    if ( !errors.isEmpty() )
+      throw errors.get(0);
+    assertEquals(160, results.size());
+    for ( String result : results )
+      assertEquals(DATES_XML, stripDeclaration(result));
+  }
+
+  private static String stripDeclaration( final String xml )
+  {
+    return xml.substring(xml.indexOf("?>") + 2).trim();
+  }
+
+  private static RsXml template( final RsXml xml )
+  {
+    xml.setContainerElementName("items");
+    xml.setRecord("item");
+    return xml;
+  }
+}
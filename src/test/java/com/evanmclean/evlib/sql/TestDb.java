@@ -0,0 +1,152 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.hsqldb.jdbc.jdbcDataSource;
+
+/**
+ * Creates small in-memory HSQLDB databases for the SQL unit tests.
+ * 
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public final class TestDb
+{
+  private static final String USER = "sa";
+
+  private static int counter;
+
+  /**
+   * Connects to an in-memory database, creating it if it does not exist.
+   * 
+   * @param url
+   *        The database URL, from {@link #newUrl()}.
+   * @return A connection to the database. The database is dropped when the
+   *         last connection to it is closed.
+   * @throws SQLException
+   */
+  public static Connection connect( final String url ) throws SQLException
+  {
+    try
+    {
+      Class.forName("org.hsqldb.jdbcDriver");
+    }
+    catch ( ClassNotFoundException ex )
+    {
+      throw new SQLException(ex.toString());
+    }
+    return DriverManager.getConnection(url, USER, "");
+  }
+
+  /**
+   * Creates a new, uniquely named, in-memory database with an
+   * <code>items</code> table containing the following rows:
+   * 
+   * <pre>
+   * grp | id | name        | qty  | added      | stamp                   | amount
+   * ----+----+-------------+------+------------+-------------------------+-------
+   * a   | 1  | Apple       | 10   | 2011-03-04 | 2011-03-04 05:06:07.080 | 1.0E10
+   * a   | 2  | Banana, Big | null | null       | null                    | null
+   * b   | 3  | Say "hi"    | -5   | 1999-12-31 | 1999-12-31 23:59:59.000 | 1.5E20
+   * </pre>
+   * 
+   * @return A connection to the new database. Close it to drop the database.
+   * @throws SQLException
+   */
+  public static Connection create() throws SQLException
+  {
+    final Connection conn = connect(newUrl());
+    final Statement stmt = conn.createStatement();
+    try
+    {
+      stmt.execute("create table items (grp varchar(10) not null,"
+          + " id integer not null primary key, name varchar(40),"
+          + " qty integer, added date, stamp timestamp, amount double)");
+      stmt.execute("insert into items values ('a', 1, 'Apple', 10,"
+          + " '2011-03-04', '2011-03-04 05:06:07.08', 1.0E10)");
+      stmt.execute("insert into items values ('a', 2, 'Banana, Big', null,"
+          + " null, null, null)");
+      stmt.execute("insert into items values ('b', 3, 'Say \"hi\"', -5,"
+          + " '1999-12-31', '1999-12-31 23:59:59', 1.5E20)");
+    }
+    finally
+    {
+      stmt.close();
+    }
+    return conn;
+  }
+
+  /**
+   * A data source for the in-memory database.
+   * 
+   * @param url
+   *        The database URL, from {@link #newUrl()}.
+   * @return A data source for the database.
+   */
+  public static DataSource dataSource( final String url )
+  {
+    final jdbcDataSource ds = new jdbcDataSource();
+    ds.setDatabase(url);
+    ds.setUser(USER);
+    ds.setPassword("");
+    return ds;
+  }
+
+  /**
+   * A URL for a new, uniquely named, in-memory database.
+   * 
+   * @return The database URL.
+   */
+  public static String newUrl()
+  {
+    synchronized ( TestDb.class )
+    {
+      return "jdbc:hsqldb:mem:evlibtest" + (++counter) + ";shutdown=true";
+    }
+  }
+
+  private TestDb()
+  {
+    // empty
+  }
+}
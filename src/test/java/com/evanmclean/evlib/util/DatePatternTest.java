@@ -0,0 +1,127 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class DatePatternTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String[] PATTERNS = new String[] { "yyyy-MM-dd",
+      "HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss.SSS", "yy/M/d h:m:s a",
+      "EEE, d MMM yyyy HH:mm:ss Z", "EEEE d MMMM yyyy", "D k K S",
+      "'Date:' yyyyMMdd 'at' HH'h' ''" };
+
+  public void testBadPattern()
+  {
+    try
+    {
+      new DatePattern("yyyy-MM-dd Q");
+      fail("Unsupported letter accepted.");
+    }
+    catch ( IllegalArgumentException ex )
+    {
+      // expected
+    }
+    try
+    {
+      new DatePattern("yyyy 'oops");
+      fail("Unterminated quote accepted.");
+    }
+    catch ( IllegalArgumentException ex )
+    {
+      // expected
+    }
+  }
+
+  public void testIsSafeFor()
+  {
+    final DatePattern dp = new DatePattern("yyyy-MM-dd HH:mm:ss",
+        Locale.ENGLISH);
+    assertTrue(dp.isSafeFor("&<>"));
+    assertFalse(dp.isSafeFor(" ,\""));
+    assertFalse(new DatePattern("'<'yyyy'>'").isSafeFor("&<>"));
+    assertFalse(new DatePattern("d MMMM", Locale.FRENCH).isSafeFor(""));
+  }
+
+  public void testMatchesSimpleDateFormat()
+  {
+    final TimeZone[] zones = new TimeZone[] { TimeZone.getTimeZone("UTC"),
+        TimeZone.getTimeZone("Australia/Melbourne"),
+        TimeZone.getTimeZone("America/New_York") };
+    final Random rnd = new Random(20111104L);
+    // 1900-01-01 to 2100-01-01.
+    final long start = -2208988800000L;
+    final long range = 6311433600000L;
+
+    for ( String pattern : PATTERNS )
+      for ( TimeZone zone : zones )
+      {
+        final DatePattern dp = new DatePattern(pattern, Locale.ENGLISH, zone);
+        final SimpleDateFormat sdf = new SimpleDateFormat(pattern,
+            Locale.ENGLISH);
+        sdf.setTimeZone(zone);
+        for ( int xi = 0; xi < 2000; ++xi )
+        {
+          final long millis = start + (long) (rnd.nextDouble() * range);
+          assertEquals(pattern + " " + millis, sdf.format(new Date(millis)),
+            dp.format(millis));
+        }
+      }
+  }
+
+  public void testStringBuilder()
+  {
+    final DatePattern dp = new DatePattern("yyyy-MM-dd", Locale.ENGLISH,
+        TimeZone.getTimeZone("UTC"));
+    final StringBuilder sb = new StringBuilder("x");
+    assertSame(sb, dp.format(0L, sb));
+    assertEquals("x1970-01-01", sb.toString());
+    assertEquals("yyyy-MM-dd", dp.toString());
+    assertEquals("1970-01-01", dp.toDateFormat().format(new Date(0L)));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogChute;
+
+import com.evanmclean.evlib.cache.CacheManager;
+import com.evanmclean.evlib.cache.ConcurrentHashMapCache;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class CacheDirectiveTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public static class Counter
+  {
+    private int count;
+
+    public int getNext()
+    {
+      return ++count;
+    }
+  }
+
+  public void testCache() throws Exception
+  {
+    final CacheManager cm = new CacheManager();
+    final ConcurrentHashMapCache<String, char[]> cache = cm.builder().ttl(1,
+      TimeUnit.HOURS).max(10).build("fragments");
+    final VelocityEngine engine = engine();
+    CacheDirective.register(engine, cache);
+    engine.init();
+
+    final String template = "#cache( \"a$key\" )[$counter.next]#end"
+        + "#cache( $nokey )[$counter.next]#end"
+        + "#cache( \"b$key\", $ttl )[$counter.next]#end";
+    final VelocityContext ctx = new VelocityContext();
+    ctx.put("counter", new Counter());
+    ctx.put("key", "1");
+    ctx.put("ttl", Integer.valueOf(60));
+    assertEquals("[1][2][3]", merge(engine, template, ctx));
+    assertEquals("[1][4][3]", merge(engine, template, ctx));
+    assertEquals(2, cache.size());
+    assertEquals("[1]", new String(cache.get("a1")));
+
+    ctx.put("key", "2");
+    ctx.put("ttl", "0");
+    assertEquals("[5][6][7]", merge(engine, template, ctx));
+    assertEquals("[5][8][9]", merge(engine, template, ctx));
+    assertEquals(3, cache.size());
+
+    cache.clear();
+    ctx.put("key", "1");
+    assertEquals("[10][11][12]", merge(engine, template, ctx));
+
+    ctx.put("ttl", "soon");
+    ctx.put("key", "3");
+    try
+    {
+      merge(engine, template, ctx);
+      fail("Accepted an invalid time-to-live.");
+    }
+    catch ( VelocityException ex )
+    {
+      // expected
+    }
+    cm.removeAllCaches();
+  }
+
+  public void testNoCache() throws Exception
+  {
+    final VelocityEngine engine = engine();
+    engine.addProperty("userdirective", CacheDirective.class.getName());
+    engine.init();
+    final VelocityContext ctx = new VelocityContext();
+    ctx.put("counter", new Counter());
+    assertEquals("[1]", merge(engine, "#cache( 'a' )[$counter.next]#end", ctx));
+    assertEquals("[2]", merge(engine, "#cache( 'a' )[$counter.next]#end", ctx));
+  }
+
+  private static VelocityEngine engine()
+  {
+    final VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+      NullLogChute.class.getName());
+    return engine;
+  }
+
+  private static String merge( final VelocityEngine engine,
+      final String template, final VelocityContext ctx )
+  {
+    final StringWriter out = new StringWriter();
+    engine.evaluate(ctx, out, "test", template);
+    return out.toString();
+  }
+}
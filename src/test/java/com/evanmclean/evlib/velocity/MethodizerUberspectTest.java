@@ -0,0 +1,139 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogChute;
+import org.apache.velocity.util.introspection.UberspectImpl;
+
+import com.evanmclean.evlib.sql.TestDb;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class MethodizerUberspectTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testColumns() throws Exception
+  {
+    // The same references used with rows from both methodizers.
+    final String template = "#foreach( $q in [$a, $b] )"
+        + "#foreach( $r in $q )$r.Id:$r.NAME:$!r.qty;#end|#end";
+    final String expected = "1:Apple:10;2:Banana, Big:;3:Say \"hi\":-5;|"
+        + "3:Say \"hi\":-5;2:Banana, Big:;1:Apple:10;|";
+
+    final Connection conn = TestDb.create();
+    try
+    {
+      assertEquals(expected, merge(engine(false), template, conn));
+      assertEquals(expected, merge(engine(true), template, conn));
+      try
+      {
+        merge(engine(true), "#foreach( $r in $a )$r.nosuch#end", conn);
+        fail("Got an unknown property.");
+      }
+      catch ( VelocityException ex )
+      {
+        // expected
+      }
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  private static VelocityEngine engine( final boolean uberspect )
+    throws Exception
+  {
+    final VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+      NullLogChute.class.getName());
+    if ( uberspect )
+      engine.setProperty(RuntimeConstants.UBERSPECT_CLASSNAME,
+        UberspectImpl.class.getName() + ','
+            + MethodizerUberspect.class.getName());
+    engine.init();
+    return engine;
+  }
+
+  private static String merge( final VelocityEngine engine,
+      final String template, final Connection conn ) throws Exception
+  {
+    final VelocityContext ctx = new VelocityContext();
+    final Statement stmt = conn.createStatement();
+    try
+    {
+      ctx.put("a", methodize(stmt,
+        "SELECT id, name, qty FROM items ORDER BY id"));
+      ctx.put("b", methodize(stmt,
+        "SELECT name, qty, id FROM items ORDER BY id DESC"));
+    }
+    finally
+    {
+      stmt.close();
+    }
+    final StringWriter out = new StringWriter();
+    engine.evaluate(ctx, out, "test", template);
+    return out.toString();
+  }
+
+  private static RowSetMethodizer methodize( final Statement stmt,
+      final String sql ) throws Exception
+  {
+    final ResultSet rs = stmt.executeQuery(sql);
+    try
+    {
+      return new RowSetMethodizer(rs);
+    }
+    finally
+    {
+      rs.close();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+import com.evanmclean.evlib.sql.TestDb;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class PagedRowSetMethodizerTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String SQL = "SELECT grp, id, name, qty,"
+      + " CAST(qty AS BIGINT) AS big, CAST(qty AS DOUBLE) AS dbl, added, stamp"
+      + " FROM items ORDER BY id";
+  private static final String[] COLUMNS = new String[] { "grp", "id", "name",
+      "qty", "big", "dbl", "added", "stamp" };
+
+  public void testPages() throws Exception
+  {
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      ResultSet rs = stmt.executeQuery(SQL);
+      final List<List<Object>> expected = read(new RowSetMethodizer(rs), false);
+      rs.close();
+      assertEquals(3, expected.size());
+      assertEquals(Long.valueOf(10), expected.get(0).get(4));
+      assertEquals(Double.valueOf(10), expected.get(0).get(5));
+      assertNull(expected.get(1).get(3));
+
+      for ( int page_size = 1; page_size <= 4; ++page_size )
+        for ( final boolean lookahead : new boolean[] { false, true } )
+        {
+          rs = stmt.executeQuery(SQL);
+          final PagedRowSetMethodizer rows = new PagedRowSetMethodizer(rs,
+            page_size);
+          assertEquals(expected, read(rows, lookahead));
+          assertFalse(rows.hasNext());
+          try
+          {
+            rows.next();
+            fail("Got a row past the end.");
+          }
+          catch ( NoSuchElementException ex )
+          {
+            // expected
+          }
+          rs.close();
+        }
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+
+  /**
+   * Reads all the rows, optionally checking if there is another row before
+   * getting the values from each one.
+   */
+  private static List<List<Object>> read(
+      final AbstractResultSetMethodizer rows, final boolean lookahead )
+  {
+    final List<List<Object>> list = new ArrayList<List<Object>>();
+    while ( rows.hasNext() )
+    {
+      final AbstractResultSetMethodizer.Row row = rows.next();
+      if ( lookahead )
+        rows.hasNext();
+      final Object[] values = new Object[COLUMNS.length];
+      for ( int xi = 0; xi < COLUMNS.length; ++xi )
+        values[xi] = row.get(COLUMNS[xi]);
+      list.add(Arrays.asList(values));
+    }
+    return list;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogChute;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+import com.evanmclean.evlib.sql.TestDb;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class RowSetMethodizerTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  private static final String SQL = "SELECT grp, id, name, qty, added"
+      + " FROM items ORDER BY id";
+
+  public void testReferencedProperties() throws Exception
+  {
+    final VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+      NullLogChute.class.getName());
+    engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "string");
+    engine.setProperty("string.resource.loader.class",
+      StringResourceLoader.class.getName());
+    engine.init();
+    final StringResourceRepository repo = StringResourceLoader
+        .getRepository();
+    repo.putStringResource("test.vm", "#foreach( $row in $rows )"
+        + "$row.Id:$row.get('NAME')#if( $row['qty'] )x#end"
+        + "#set( $s = \"${row.grp}-$!{other.thing.deep}\" )$s;#end");
+    final Template template = engine.getTemplate("test.vm");
+
+    final Set<String> expected = new HashSet<String>(Arrays.asList("Id",
+      "NAME", "qty", "grp", "thing", "deep"));
+    final Set<String> actual = RowSetMethodizer
+        .getReferencedProperties(template);
+    assertTrue(actual.toString(), actual.containsAll(expected));
+    assertFalse(actual.contains("added"));
+
+    final Connection conn = TestDb.create();
+    try
+    {
+      final Statement stmt = conn.createStatement();
+      ResultSet rs = stmt.executeQuery(SQL);
+      final RowSetMethodizer rows = new RowSetMethodizer(rs, template);
+      rs.close();
+      final VelocityContext ctx = new VelocityContext();
+      ctx.put("rows", rows);
+      final StringWriter out = new StringWriter();
+      template.merge(ctx, out);
+      assertEquals("1:Applexa-;2:Banana, Biga-;3:Say \"hi\"xb-;", out
+          .toString());
+
+      rs = stmt.executeQuery(SQL);
+      final RowSetMethodizer some = new RowSetMethodizer(rs, Arrays.asList(
+        "NAME", "nosuch"));
+      rs.close();
+      final AbstractResultSetMethodizer.Row row = some.next();
+      assertEquals("Apple", row.get("name"));
+      try
+      {
+        row.get("id");
+        fail("Got a column that was not read.");
+      }
+      catch ( VelocityException ex )
+      {
+        // expected
+      }
+      stmt.close();
+    }
+    finally
+    {
+      conn.close();
+    }
+  }
+}
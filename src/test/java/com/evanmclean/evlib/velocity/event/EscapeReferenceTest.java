@@ -0,0 +1,104 @@
+/*
+ * = License =
+
+McLean Computer Services Open Source Software License
+
+(Looks like the BSD license, but less restrictive.)
+
+Copyright (c) 2006-2011 Evan McLean. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Neither the names "Evan McLean", "McLean Computer Services", "EvLib" nor the
+names of any contributors may be used to endorse or promote products derived
+from this software without prior written permission.
+
+3. Products derived from this software may not be called "Evlib", nor may
+"Evlib" appear in their name, without prior written permission.
+
+THIS SOFTWARE IS PROVIDED "AS IS" AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE AUTHOR
+BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+= License =
+ */
+package com.evanmclean.evlib.velocity.event;
+
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.log.NullLogChute;
+
+/**
+ * @author Evan M<sup>c</sup>Lean <a href="http://evanmclean.com/"
+ *         target="_blank">M<sup>c</sup>Lean Computer Services</a> (see the
+ *         overview for copyright and licensing.)
+ */
+public class EscapeReferenceTest extends TestCase
+{
+  public static final String TEST_ALL_TEST_TYPE = "UNIT";
+
+  public void testEscape() throws Exception
+  {
+    final VelocityContext ctx = new VelocityContext();
+    ctx.put("name", "Tom & \"Jerry\" <cat's>");
+    ctx.put("jsname", "it's \"here\"\n");
+    ctx.put("plain", "plain");
+    final String template = "<a title=\"$name\">$name</a>$!nothing $plain"
+        + "<script>var s = '$jsname';</script>";
+
+    assertEquals("<a title=\"Tom &amp; &quot;Jerry&quot; &lt;cat's&gt;\">"
+        + "Tom &amp; &quot;Jerry&quot; &lt;cat's&gt;</a> plain"
+        + "<script>var s = 'it's &quot;here&quot;\n';</script>", merge(
+      engine(EscapeHtmlReference.class), template, ctx));
+
+    final VelocityEngine engine = engine(EscapeHtmlAttrReference.class,
+      EscapeJavascriptReference.class);
+    engine.setProperty("evlib.escape.htmlattr.match", "^\\$!?\\{?(?!js)");
+    engine.setProperty("evlib.escape.javascript.match", "^\\$!?\\{?js");
+    assertEquals("<a title=\"Tom &amp; &quot;Jerry&quot; &lt;cat&#39;s&gt;\">"
+        + "Tom &amp; &quot;Jerry&quot; &lt;cat&#39;s&gt;</a> plain"
+        + "<script>var s = 'it\\'s \\\"here\\\"\\n';</script>", merge(engine,
+      template, ctx));
+
+    ctx.put("name", "\u201Chi\u201D\t<");
+    assertEquals("\u201Chi\u201D\\t<", merge(engine(EscapeJsonReference.class),
+      "$name", ctx));
+    assertEquals("\u201Chi\u201D\t&lt;", merge(
+      engine(EscapeXmlReference.class), "$name", ctx));
+  }
+
+  private static VelocityEngine engine( final Class<?>... handlers )
+  {
+    final VelocityEngine engine = new VelocityEngine();
+    engine.setProperty(RuntimeConstants.RUNTIME_LOG_LOGSYSTEM_CLASS,
+      NullLogChute.class.getName());
+    for ( final Class<?> handler : handlers )
+      engine.addProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION,
+        handler.getName());
+    return engine;
+  }
+
+  private static String merge( final VelocityEngine engine,
+      final String template, final VelocityContext ctx ) throws Exception
+  {
+    engine.init();
+    final StringWriter out = new StringWriter();
+    engine.evaluate(ctx, out, "test", template);
+    return out.toString();
+  }
+}